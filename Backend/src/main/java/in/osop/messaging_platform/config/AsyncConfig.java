@@ -16,8 +16,11 @@ public class AsyncConfig {
     @Bean(name = "emailTaskExecutor")
     public Executor emailTaskExecutor() {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(2);
-        executor.setMaxPoolSize(5);
+        // Threads beyond the core size only start once the queue is full, so size the core
+        // for the SMTP concurrency the adaptive limit may grow to and let idle threads go
+        executor.setCorePoolSize(8);
+        executor.setMaxPoolSize(8);
+        executor.setAllowCoreThreadTimeOut(true);
         executor.setQueueCapacity(100);
         executor.setThreadNamePrefix("EmailTask-");
         executor.setWaitForTasksToCompleteOnShutdown(true);
@@ -0,0 +1,48 @@
+package in.osop.messaging_platform.config;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Applies V8 (nullable email_events.email) where Flyway does not run.
+ *
+ * Events recorded from a tracking token have no email address. With Flyway
+ * off, ddl-auto=update creates new columns but never relaxes NOT NULL on an
+ * existing one, so databases created before V8 would reject every tracked
+ * open and click.
+ */
+@Component
+@ConditionalOnProperty(name = "spring.flyway.enabled", havingValue = "false")
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@RequiredArgsConstructor
+@Slf4j
+public class EmailEventSchemaPatch implements CommandLineRunner {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void run(String... args) {
+        try {
+            List<String> nullable = jdbcTemplate.queryForList(
+                "SELECT IS_NULLABLE FROM information_schema.COLUMNS "
+                    + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'email_events' AND COLUMN_NAME = 'email'",
+                String.class);
+            if (nullable.isEmpty() || !"NO".equals(nullable.get(0))) {
+                return;
+            }
+            jdbcTemplate.execute("ALTER TABLE email_events MODIFY email VARCHAR(255) NULL");
+            log.info("Made email_events.email nullable for token-tracked events");
+        } catch (Exception e) {
+            log.warn("Could not make email_events.email nullable, token-tracked events may fail to save: {}",
+                e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package in.osop.messaging_platform.config;
+
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.DirectExchange;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Topology for queue-dispatched campaign sends.
+ *
+ * Batches are published to {@code campaign.send.batches}. Batches of a paused
+ * campaign, and batches whose send failed, are parked in {@code campaign.send.wait}
+ * and flow back to the main queue when their TTL expires. A batch that has failed
+ * on every allowed delivery is rejected to {@code campaign.send.batches.dlq} and
+ * stays there for an operator to inspect.
+ */
+@Configuration
+@ConditionalOnProperty(name = "messaging.dispatch.mode", havingValue = "queue")
+public class RabbitMQConfig {
+
+    public static final String CAMPAIGN_EXCHANGE = "campaign.send";
+    public static final String CAMPAIGN_DLX = "campaign.send.dlx";
+    public static final String BATCH_QUEUE = "campaign.send.batches";
+    public static final String BATCH_DLQ = "campaign.send.batches.dlq";
+    public static final String WAIT_QUEUE = "campaign.send.wait";
+    public static final String BATCH_ROUTING_KEY = "batch";
+    public static final String WAIT_ROUTING_KEY = "wait";
+    // Deliveries of a batch that failed so far, carried while it waits for the next one
+    public static final String FAILED_DELIVERIES_HEADER = "x-failed-deliveries";
+    // Set on batches published again by a resumed producer; the first copy may have reached the queue
+    public static final String REPLAYED_HEADER = "x-replayed";
+
+    private static final int WAIT_TTL_MS = 30000;
+
+    @Bean
+    public DirectExchange campaignExchange() {
+        return new DirectExchange(CAMPAIGN_EXCHANGE, true, false);
+    }
+
+    @Bean
+    public DirectExchange campaignDeadLetterExchange() {
+        return new DirectExchange(CAMPAIGN_DLX, true, false);
+    }
+
+    @Bean
+    public Queue campaignBatchQueue() {
+        return QueueBuilder.durable(BATCH_QUEUE)
+            .deadLetterExchange(CAMPAIGN_DLX)
+            .deadLetterRoutingKey(BATCH_ROUTING_KEY)
+            .build();
+    }
+
+    @Bean
+    public Queue campaignBatchDeadLetterQueue() {
+        return QueueBuilder.durable(BATCH_DLQ).build();
+    }
+
+    @Bean
+    public Queue campaignWaitQueue() {
+        return QueueBuilder.durable(WAIT_QUEUE)
+            .ttl(WAIT_TTL_MS)
+            .deadLetterExchange(CAMPAIGN_EXCHANGE)
+            .deadLetterRoutingKey(BATCH_ROUTING_KEY)
+            .build();
+    }
+
+    @Bean
+    public Binding campaignBatchBinding() {
+        return BindingBuilder.bind(campaignBatchQueue()).to(campaignExchange()).with(BATCH_ROUTING_KEY);
+    }
+
+    @Bean
+    public Binding campaignWaitBinding() {
+        return BindingBuilder.bind(campaignWaitQueue()).to(campaignExchange()).with(WAIT_ROUTING_KEY);
+    }
+
+    @Bean
+    public Binding campaignDeadLetterBinding() {
+        return BindingBuilder.bind(campaignBatchDeadLetterQueue()).to(campaignDeadLetterExchange()).with(BATCH_ROUTING_KEY);
+    }
+
+    @Bean
+    public MessageConverter rabbitMessageConverter() {
+        return new Jackson2JsonMessageConverter();
+    }
+}
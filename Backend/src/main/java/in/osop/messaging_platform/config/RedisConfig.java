@@ -0,0 +1,30 @@
+package in.osop.messaging_platform.config;
+
+import in.osop.messaging_platform.service.CampaignRunRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Redis pub/sub for the campaign control channel
+ */
+@Configuration
+@ConditionalOnProperty(name = "messaging.control.redis.enabled", havingValue = "true")
+public class RedisConfig {
+
+    @Bean
+    public RedisMessageListenerContainer campaignControlListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                         CampaignRunRegistry campaignRunRegistry) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(
+            (message, pattern) -> campaignRunRegistry.onBroadcast(new String(message.getBody(), StandardCharsets.UTF_8)),
+            new ChannelTopic(CampaignRunRegistry.CONTROL_CHANNEL));
+        return container;
+    }
+}
@@ -1,6 +1,7 @@
 package in.osop.messaging_platform.controller;
 
 import in.osop.messaging_platform.dto.*;
+import in.osop.messaging_platform.model.EmailEventType;
 import in.osop.messaging_platform.service.AnalyticsService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -112,6 +113,18 @@ public class AnalyticsController {
         return ResponseEntity.ok(analytics);
     }
     
+    @GetMapping("/campaigns/{campaignId}/clients")
+    @Operation(summary = "Get campaign client breakdown", description = "Get campaign events by device type, client, OS and country")
+    @ApiResponse(responseCode = "200", description = "Client breakdown retrieved successfully")
+    public ResponseEntity<Map<String, Object>> getClientBreakdown(
+            @PathVariable Long campaignId,
+            @RequestParam(defaultValue = "OPENED") EmailEventType eventType) {
+        
+        log.info("Fetching client breakdown of campaign {} from database", campaignId);
+        Map<String, Object> breakdown = analyticsService.getClientBreakdown(campaignId, eventType);
+        return ResponseEntity.ok(breakdown);
+    }
+    
     @GetMapping("/templates")
     @Operation(summary = "Get template analytics", description = "Get template usage and performance analytics")
     @ApiResponse(responseCode = "200", description = "Template analytics retrieved successfully")
@@ -1,7 +1,10 @@
 package in.osop.messaging_platform.controller;
 
 import in.osop.messaging_platform.service.EmailTrackingService;
-import in.osop.messaging_platform.service.EmailDeliveryTrackingService;
+import in.osop.messaging_platform.service.TrackingEvent;
+import in.osop.messaging_platform.service.TrackingEventIngest;
+import in.osop.messaging_platform.service.TrackingToken;
+import in.osop.messaging_platform.service.TrackingTokenCodec;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
@@ -12,6 +15,7 @@ import org.springframework.web.bind.annotation.*;
 import jakarta.servlet.http.HttpServletRequest;
 import java.util.Base64;
 import java.util.Map;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/tracking")
@@ -20,47 +24,38 @@ import java.util.Map;
 @CrossOrigin(origins = "*")
 public class EmailTrackingController {
 
+    // 1x1 transparent PNG, decoded once
+    private static final byte[] PIXEL = Base64.getDecoder().decode(
+        "iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAYAAAAfFcSJAAAADUlEQVR42mNkYPhfDwAChwGA60e6kgAAAABJRU5ErkJggg==");
+
     private final EmailTrackingService emailTrackingService;
-    private final EmailDeliveryTrackingService emailDeliveryTrackingService;
+    private final TrackingEventIngest trackingEventIngest;
+    private final TrackingTokenCodec trackingTokenCodec;
 
     @GetMapping(value = "/open/{encodedData}", produces = MediaType.IMAGE_PNG_VALUE)
     public ResponseEntity<byte[]> trackEmailOpen(@PathVariable String encodedData, HttpServletRequest request) {
         try {
-            // Decode the tracking data
-            String decodedData = new String(Base64.getDecoder().decode(encodedData));
-            String[] parts = decodedData.split("\\|");
+            // Verify and decode the tracking token, forged ones are not recorded
+            Optional<TrackingToken> token = trackingTokenCodec.decode(encodedData, null);
             
-            if (parts.length >= 2) {
-                Long emailEventId = Long.parseLong(parts[0]);
-                String email = parts[1];
-                
+            if (token.isPresent()) {
                 // Get client IP and User Agent
                 String ipAddress = getClientIpAddress(request);
                 String userAgent = request.getHeader("User-Agent");
                 
-                            // Track the email open
-            emailTrackingService.trackEmailOpenedByEventId(emailEventId, email, ipAddress, userAgent);
-            
-            // Also track with delivery tracking service
-            emailDeliveryTrackingService.trackEmailOpen(emailEventId, ipAddress, userAgent);
+                // Queue the open, it is written in the background
+                trackingEventIngest.publish(TrackingEvent.opened(token.get(), ipAddress, userAgent));
                 
-                log.info("Email opened tracked for: {} from IP: {}", email, ipAddress);
+                log.debug("Email open tracked for {} from IP: {}", token.get(), ipAddress);
             }
-            
-            // Return a 1x1 transparent PNG pixel
-            byte[] pixel = Base64.getDecoder().decode("iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAYAAAAfFcSJAAAADUlEQVR42mNkYPhfDwAChwGA60e6kgAAAABJRU5ErkJggg==");
-            return ResponseEntity.ok()
-                    .contentType(MediaType.IMAGE_PNG)
-                    .body(pixel);
-                    
         } catch (Exception e) {
             log.error("Error tracking email open: {}", e.getMessage());
-            // Still return the pixel even if tracking fails
-            byte[] pixel = Base64.getDecoder().decode("iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAYAAAAfFcSJAAAADUlEQVR42mNkYPhfDwAChwGA60e6kgAAAABJRU5ErkJggg==");
-            return ResponseEntity.ok()
-                    .contentType(MediaType.IMAGE_PNG)
-                    .body(pixel);
         }
+        
+        // Return the pixel even if tracking fails
+        return ResponseEntity.ok()
+                .contentType(MediaType.IMAGE_PNG)
+                .body(PIXEL);
     }
 
     @GetMapping("/click/{encodedData}")
@@ -69,25 +64,19 @@ public class EmailTrackingController {
             @RequestParam("url") String originalUrl,
             HttpServletRequest request) {
         try {
-            // Decode the tracking data
-            String decodedData = new String(Base64.getDecoder().decode(encodedData));
-            String[] parts = decodedData.split("\\|");
+            // Link tokens are signed together with the target, so the redirect cannot be changed;
+            // open and unsubscribe tokens carry no target and are rejected here
+            Optional<TrackingToken> token = trackingTokenCodec.decode(encodedData, originalUrl);
             
-            if (parts.length >= 2) {
-                Long emailEventId = Long.parseLong(parts[0]);
-                String email = parts[1];
-                
+            if (token.isPresent()) {
                 // Get client IP and User Agent
                 String ipAddress = getClientIpAddress(request);
                 String userAgent = request.getHeader("User-Agent");
                 
-                // Track the email click
-                emailTrackingService.trackEmailClickedByEventId(emailEventId, email, originalUrl, ipAddress, userAgent);
+                // Queue the click, it is written in the background
+                trackingEventIngest.publish(TrackingEvent.clicked(token.get(), originalUrl, ipAddress, userAgent));
                 
-                // Also track with delivery tracking service
-                emailDeliveryTrackingService.trackEmailClick(emailEventId, originalUrl, ipAddress, userAgent);
-                
-                log.info("Email click tracked for: {} to URL: {} from IP: {}", email, originalUrl, ipAddress);
+                log.debug("Email click tracked for {} to URL: {} from IP: {}", token.get(), originalUrl, ipAddress);
                 
                 // Redirect to the original URL
                 return ResponseEntity.status(HttpStatus.FOUND)
@@ -106,22 +95,18 @@ public class EmailTrackingController {
     @PostMapping("/unsubscribe/{encodedData}")
     public ResponseEntity<Map<String, String>> unsubscribe(@PathVariable String encodedData, HttpServletRequest request) {
         try {
-            // Decode the tracking data
-            String decodedData = new String(Base64.getDecoder().decode(encodedData));
-            String[] parts = decodedData.split("\\|");
+            // Verify and decode the tracking token
+            Optional<TrackingToken> token = trackingTokenCodec.decode(encodedData, null);
             
-            if (parts.length >= 2) {
-                Long emailEventId = Long.parseLong(parts[0]);
-                String email = parts[1];
-                
+            if (token.isPresent()) {
                 // Get client IP and User Agent
                 String ipAddress = getClientIpAddress(request);
                 String userAgent = request.getHeader("User-Agent");
                 
                 // Track the unsubscribe
-                emailTrackingService.trackEmailUnsubscribedByEventId(emailEventId, email, ipAddress, userAgent);
+                emailTrackingService.trackEmailUnsubscribed(token.get(), ipAddress, userAgent);
                 
-                log.info("Unsubscribe tracked for: {} from IP: {}", email, ipAddress);
+                log.info("Unsubscribe tracked for {} from IP: {}", token.get(), ipAddress);
                 
                 return ResponseEntity.ok(Map.of(
                     "status", "success",
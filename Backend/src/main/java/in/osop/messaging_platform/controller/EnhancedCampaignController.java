@@ -30,6 +30,7 @@ public class EnhancedCampaignController {
     private final CampaignRepository campaignRepository;
     private final MessageLogRepository messageLogRepository;
     private final ActivityLogService activityLogService;
+    private final CampaignRunRegistry campaignRunRegistry;
     
     @PostMapping("/send")
     @Operation(summary = "Send campaign immediately", description = "Queue campaign for immediate background sending")
@@ -155,6 +156,7 @@ public class EnhancedCampaignController {
             if (progress.getStatus() == CampaignProgress.CampaignProgressStatus.RUNNING) {
                 progress.setStatus(CampaignProgress.CampaignProgressStatus.PAUSED);
                 campaignProgressRepository.save(progress);
+                campaignRunRegistry.signal(id, CampaignRunRegistry.Signal.PAUSE);
                 
                 // Log activity
                 activityLogService.logActivity(
@@ -199,9 +201,10 @@ public class EnhancedCampaignController {
             if (progress.getStatus() == CampaignProgress.CampaignProgressStatus.PAUSED) {
                 progress.setStatus(CampaignProgress.CampaignProgressStatus.RUNNING);
                 campaignProgressRepository.save(progress);
+                campaignRunRegistry.signal(id, CampaignRunRegistry.Signal.RUN);
                 
-                // Continue async sending
-                asyncEmailService.sendCampaignAsync(id);
+                // Continue async sending from the last checkpoint
+                asyncEmailService.resumeCampaignAsync(id);
                 
                 // Log activity
                 activityLogService.logActivity(
@@ -249,6 +252,7 @@ public class EnhancedCampaignController {
                 progress.setStatus(CampaignProgress.CampaignProgressStatus.CANCELLED);
                 progress.setCompletedAt(LocalDateTime.now());
                 campaignProgressRepository.save(progress);
+                campaignRunRegistry.signal(id, CampaignRunRegistry.Signal.CANCEL);
                 
                 // Log activity
                 activityLogService.logActivity(
@@ -2,10 +2,9 @@ package in.osop.messaging_platform.controller;
 
 import in.osop.messaging_platform.dto.LiveStatsDto;
 import in.osop.messaging_platform.dto.CampaignProgressDto;
-import in.osop.messaging_platform.model.CampaignProgress;
 import in.osop.messaging_platform.service.AnalyticsService;
 import in.osop.messaging_platform.service.AsyncEmailService;
-import in.osop.messaging_platform.repository.CampaignProgressRepository;
+import in.osop.messaging_platform.service.CampaignProgressTracker;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.messaging.handler.annotation.MessageMapping;
@@ -26,7 +25,7 @@ public class WebSocketController {
     
     private final AnalyticsService analyticsService;
     private final AsyncEmailService asyncEmailService;
-    private final CampaignProgressRepository campaignProgressRepository;
+    private final CampaignProgressTracker campaignProgressTracker;
     private final SimpMessagingTemplate messagingTemplate;
     
     @MessageMapping("/email.send")
@@ -127,34 +126,13 @@ public class WebSocketController {
     @Scheduled(fixedRate = 5000) // 5 seconds
     public void broadcastCampaignProgress() {
         try {
-            // Get all running campaigns
-            List<CampaignProgress> runningCampaigns = campaignProgressRepository
-                .findByStatus(CampaignProgress.CampaignProgressStatus.RUNNING);
+            // One query for the running campaigns, with this node's unflushed counts on top
+            List<CampaignProgressDto> liveProgress = campaignProgressTracker.liveProgress();
             
-            for (CampaignProgress progress : runningCampaigns) {
-                CampaignProgressDto dto = CampaignProgressDto.builder()
-                    .campaignId(progress.getCampaignId())
-                    .status(progress.getStatus().toString())
-                    .totalRecipients(progress.getTotalRecipients())
-                    .emailsSent(progress.getEmailsSent())
-                    .emailsSuccess(progress.getEmailsSuccess())
-                    .emailsFailed(progress.getEmailsFailed())
-                    .emailsInProgress(progress.getEmailsInProgress())
-                    .progressPercentage(progress.getProgressPercentage())
-                    .successRate(progress.getSuccessRate())
-                    .failureRate(progress.getFailureRate())
-                    .currentBatchNumber(progress.getCurrentBatchNumber())
-                    .totalBatches(progress.getTotalBatches())
-                    .scheduledTime(progress.getScheduledTime())
-                    .startedAt(progress.getStartedAt())
-                    .completedAt(progress.getCompletedAt())
-                    .lastBatchSentAt(progress.getLastBatchSentAt())
-                    .errorMessage(progress.getErrorMessage())
-                    .build();
-                
+            for (CampaignProgressDto dto : liveProgress) {
                 Map<String, Object> message = Map.of(
                     "type", "campaign_progress_update",
-                    "campaignId", progress.getCampaignId(),
+                    "campaignId", dto.getCampaignId(),
                     "data", dto,
                     "timestamp", System.currentTimeMillis()
                 );
@@ -162,7 +140,7 @@ public class WebSocketController {
                 messagingTemplate.convertAndSend("/topic/campaign_progress", message);
             }
             
-            log.debug("Broadcasted campaign progress updates for {} campaigns", runningCampaigns.size());
+            log.debug("Broadcasted campaign progress updates for {} campaigns", liveProgress.size());
         } catch (Exception e) {
             log.error("Error broadcasting campaign progress: ", e);
         }
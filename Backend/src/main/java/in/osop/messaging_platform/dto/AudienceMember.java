@@ -0,0 +1,20 @@
+package in.osop.messaging_platform.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Lightweight, unmanaged view of a subscriber used while sending campaigns.
+ * Loaded through a JPQL constructor expression so audience pages never enter
+ * the persistence context.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AudienceMember {
+    private Long id;
+    private String email;
+    private String firstName;
+    private String lastName;
+}
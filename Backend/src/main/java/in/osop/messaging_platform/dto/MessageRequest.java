@@ -51,7 +51,4 @@ public class MessageRequest {
     // Optional fields for email
     private List<String> cc;
     private List<String> bcc;
-    
-    // Internal tracking field
-    private Long emailEventId;
 } 
\ No newline at end of file
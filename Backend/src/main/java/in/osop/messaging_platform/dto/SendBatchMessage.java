@@ -0,0 +1,19 @@
+package in.osop.messaging_platform.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One batch of campaign recipients as published to the send queue
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SendBatchMessage {
+    private Long campaignId;
+    private Integer batchNumber;
+    private List<AudienceMember> recipients;
+}
@@ -6,6 +6,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.DynamicUpdate;
 import org.hibernate.annotations.UpdateTimestamp;
 
 import java.time.LocalDateTime;
@@ -13,6 +14,8 @@ import java.util.List;
 
 @Entity
 @Table(name = "campaigns")
+// Saves write only changed columns, so a stale entity never overwrites the counters
+@DynamicUpdate
 @Data
 @Builder
 @NoArgsConstructor
@@ -129,7 +132,7 @@ public class Campaign {
     @Column(name = "test_emails", columnDefinition = "TEXT")
     private String testEmails; // JSON array of test email addresses
     
-    // Performance metrics
+    // Performance metrics, derived from the counters by the getters below
     @Column(name = "open_rate")
     private Double openRate;
     
@@ -152,4 +155,14 @@ public class Campaign {
         if (sentCount == null || sentCount == 0) return 0.0;
         return clickedCount != null ? (clickedCount.doubleValue() / sentCount.doubleValue()) * 100 : 0.0;
     }
+    
+    public Double getBounceRate() {
+        if (sentCount == null || sentCount == 0) return 0.0;
+        return bouncedCount != null ? (bouncedCount.doubleValue() / sentCount.doubleValue()) * 100 : 0.0;
+    }
+    
+    public Double getUnsubscribeRate() {
+        if (sentCount == null || sentCount == 0) return 0.0;
+        return unsubscribedCount != null ? (unsubscribedCount.doubleValue() / sentCount.doubleValue()) * 100 : 0.0;
+    }
 }
@@ -0,0 +1,52 @@
+package in.osop.messaging_platform.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * Subscribers that opened or clicked a campaign at least once, as a serialized
+ * roaring bitmap of subscriber ids. Read and written with plain JDBC by
+ * UniqueEngagementTracker; mapped here so the table exists wherever the schema
+ * comes from Hibernate rather than Flyway.
+ */
+@Entity
+@Table(name = "campaign_engagement")
+@IdClass(CampaignEngagement.Key.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CampaignEngagement {
+
+    @Id
+    @Column(name = "campaign_id", nullable = false)
+    private Long campaignId;
+
+    @Id
+    @Enumerated(EnumType.STRING)
+    @Column(name = "event_type", nullable = false, length = 20)
+    private EmailEventType eventType;
+
+    // Portable RoaringBitmap serialization
+    @Lob
+    @Column(name = "subscribers", nullable = false, columnDefinition = "LONGBLOB")
+    private byte[] subscribers;
+
+    @Column(name = "cardinality", nullable = false)
+    private Long cardinality;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long campaignId;
+        private EmailEventType eventType;
+    }
+}
@@ -6,12 +6,14 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.DynamicUpdate;
 import org.hibernate.annotations.UpdateTimestamp;
 
 import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "campaign_progress")
+@DynamicUpdate // Entity saves must not overwrite counters and checkpoints advanced by bulk UPDATEs
 @Data
 @Builder
 @NoArgsConstructor
@@ -77,6 +79,24 @@ public class CampaignProgress {
     @Column(name = "last_batch_sent_at")
     private LocalDateTime lastBatchSentAt;
 
+    // Send checkpoint: subscribers up to lastSubscriberId are done, the batch
+    // ending at inflightLastSubscriberId may have been partially sent
+    @Column(name = "last_subscriber_id", nullable = false)
+    @Builder.Default
+    private Long lastSubscriberId = 0L;
+
+    @Column(name = "inflight_last_subscriber_id")
+    private Long inflightLastSubscriberId;
+
+    // Queue dispatch: batches confirmed by the broker so far; lastSubscriberId is
+    // then the publish cursor
+    @Column(name = "published_batches", nullable = false)
+    @Builder.Default
+    private Integer publishedBatches = 0;
+
+    @Column(name = "heartbeat_at")
+    private LocalDateTime heartbeatAt;
+
     @CreationTimestamp
     @Column(name = "created_at", updatable = false)
     private LocalDateTime createdAt;
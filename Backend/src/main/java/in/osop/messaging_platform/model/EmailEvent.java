@@ -42,7 +42,8 @@ public class EmailEvent {
     @Column(name = "tenant_id", insertable = false, updatable = false)
     private Long tenantId;
     
-    @Column(nullable = false)
+    // Null for events recorded from a tracking token, which carries ids only
+    @Column
     private String email;
     
     @Enumerated(EnumType.STRING)
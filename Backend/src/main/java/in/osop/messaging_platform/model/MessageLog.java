@@ -17,7 +17,9 @@ import java.time.LocalDateTime;
     @Index(name = "idx_channel", columnList = "channel"),
     @Index(name = "idx_status", columnList = "status"),
     @Index(name = "idx_recipient", columnList = "recipient"),
-    @Index(name = "idx_timestamp", columnList = "timestamp")
+    @Index(name = "idx_timestamp", columnList = "timestamp"),
+    @Index(name = "idx_message_logs_campaign_recipient", columnList = "campaign_id, recipient"),
+    @Index(name = "idx_message_logs_next_retry", columnList = "next_retry_at")
 })
 @Data
 @Builder
@@ -68,6 +70,9 @@ public class MessageLog {
     @Builder.Default
     private Integer maxRetries = 3;
     
+    @Column(name = "next_retry_at")
+    private LocalDateTime nextRetryAt;
+    
     @Column(name = "sent_at")
     private LocalDateTime sentAt;
     
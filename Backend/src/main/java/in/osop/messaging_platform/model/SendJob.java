@@ -0,0 +1,75 @@
+package in.osop.messaging_platform.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * One shard of a campaign audience: the subscribers with ids in
+ * ({@code afterSubscriberId}, {@code lastSubscriberId}]. Workers claim shards
+ * under a lease, so a shard held by a dead node becomes claimable again.
+ */
+@Entity
+@Table(name = "send_jobs",
+    uniqueConstraints = @UniqueConstraint(name = "uk_send_jobs_campaign_batch", columnNames = {"campaign_id", "batch_number"}),
+    indexes = {
+        @Index(name = "idx_send_jobs_claim", columnList = "status, lease_expires_at"),
+        @Index(name = "idx_send_jobs_owner", columnList = "owner, status")
+    })
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SendJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "campaign_id", nullable = false)
+    private Long campaignId;
+
+    @Column(name = "batch_number", nullable = false)
+    private Integer batchNumber;
+
+    @Column(name = "after_subscriber_id", nullable = false)
+    private Long afterSubscriberId;
+
+    @Column(name = "last_subscriber_id", nullable = false)
+    private Long lastSubscriberId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private SendJobStatus status;
+
+    @Column(length = 100)
+    private String owner;
+
+    @Column(name = "lease_expires_at")
+    private LocalDateTime leaseExpiresAt;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Integer attempts = 0;
+
+    @Column(name = "error_message", columnDefinition = "TEXT")
+    private String errorMessage;
+
+    @CreationTimestamp
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    public enum SendJobStatus {
+        PENDING, CLAIMED, DONE, FAILED, CANCELLED
+    }
+}
@@ -0,0 +1,10 @@
+package in.osop.messaging_platform.model;
+
+/**
+ * Lane an outbound email is sent through. Transactional sends (API, password
+ * resets, OTPs) have reserved SMTP capacity and preempt bulk campaign sends.
+ */
+public enum SendPriority {
+    TRANSACTIONAL,
+    BULK
+}
@@ -12,7 +12,9 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
-@Table(name = "subscribers")
+@Table(name = "subscribers", indexes = {
+    @Index(name = "idx_subscribers_status_id", columnList = "status, id")
+})
 @Data
 @Builder
 @NoArgsConstructor
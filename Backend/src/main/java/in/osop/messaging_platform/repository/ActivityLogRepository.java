@@ -4,7 +4,11 @@ import in.osop.messaging_platform.model.ActivityLog;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -87,4 +91,12 @@ public interface ActivityLogRepository extends JpaRepository<ActivityLog, Long>
      * Find activities by performed by (simple list)
      */
     List<ActivityLog> findByPerformedBy(String performedBy);
-}
\ No newline at end of file
+    
+    /**
+     * Update an aggregated summary row in place
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE ActivityLog a SET a.description = :description, a.metadata = :metadata WHERE a.id = :id")
+    int updateSummary(@Param("id") Long id, @Param("description") String description, @Param("metadata") String metadata);
+}
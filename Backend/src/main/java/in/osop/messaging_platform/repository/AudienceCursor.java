@@ -0,0 +1,70 @@
+package in.osop.messaging_platform.repository;
+
+import in.osop.messaging_platform.dto.AudienceMember;
+import in.osop.messaging_platform.model.SubscriptionStatus;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Keyset-paged iterator over a campaign audience.
+ *
+ * Each call to {@link #next()} runs {@code id > lastId ORDER BY id LIMIT batchSize},
+ * so only one page of recipients is held in memory at a time regardless of
+ * how large the audience is.
+ */
+public class AudienceCursor implements Iterator<List<AudienceMember>> {
+
+    private final SubscriberRepository subscriberRepository;
+    private final SubscriptionStatus status;
+    private final Pageable page;
+    private long lastId;
+    private List<AudienceMember> buffered;
+    private boolean exhausted;
+
+    AudienceCursor(SubscriberRepository subscriberRepository, SubscriptionStatus status, long afterId, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.subscriberRepository = subscriberRepository;
+        this.status = status;
+        this.page = PageRequest.of(0, batchSize);
+        this.lastId = afterId;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (buffered == null && !exhausted) {
+            List<AudienceMember> members = subscriberRepository.findAudienceAfter(status, lastId, page);
+            if (members.isEmpty()) {
+                exhausted = true;
+            } else {
+                buffered = members;
+                // A short page means there is nothing left after it
+                exhausted = members.size() < page.getPageSize();
+            }
+        }
+        return buffered != null;
+    }
+
+    @Override
+    public List<AudienceMember> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException("Audience exhausted after subscriber id " + lastId);
+        }
+        List<AudienceMember> members = buffered;
+        buffered = null;
+        lastId = members.get(members.size() - 1).getId();
+        return members;
+    }
+
+    /**
+     * Id of the last subscriber handed out; the cursor resumes strictly after it.
+     */
+    public long getLastId() {
+        return lastId;
+    }
+}
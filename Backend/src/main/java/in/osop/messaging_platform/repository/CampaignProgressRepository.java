@@ -2,11 +2,14 @@ package in.osop.messaging_platform.repository;
 
 import in.osop.messaging_platform.model.CampaignProgress;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -21,4 +24,93 @@ public interface CampaignProgressRepository extends JpaRepository<CampaignProgre
     
     @Query("SELECT cp FROM CampaignProgress cp WHERE cp.status = 'SCHEDULED' AND cp.scheduledTime <= :now")
     List<CampaignProgress> findScheduledCampaignsReadyToStart(@Param("now") LocalDateTime now);
-}
\ No newline at end of file
+    
+    @Query("SELECT cp.status FROM CampaignProgress cp WHERE cp.campaignId = :campaignId")
+    Optional<CampaignProgress.CampaignProgressStatus> findStatusByCampaignId(@Param("campaignId") Long campaignId);
+    
+    // Relative updates so concurrent batch senders never overwrite each other's counts
+    @Modifying
+    @Transactional
+    @Query("UPDATE CampaignProgress cp SET cp.emailsSent = cp.emailsSent + :sent, " +
+           "cp.emailsSuccess = cp.emailsSuccess + :success, cp.emailsFailed = cp.emailsFailed + :failed, " +
+           "cp.progressPercentage = CASE WHEN cp.totalRecipients > 0 " +
+           "THEN (cp.emailsSent + :sent) * 100.0 / cp.totalRecipients ELSE 0.0 END, " +
+           "cp.lastBatchSentAt = :now WHERE cp.campaignId = :campaignId")
+    int addBatchResults(@Param("campaignId") Long campaignId, @Param("sent") int sent,
+                        @Param("success") int success, @Param("failed") int failed,
+                        @Param("now") LocalDateTime now);
+    
+    @Modifying
+    @Transactional
+    @Query("UPDATE CampaignProgress cp SET cp.currentBatchNumber = cp.currentBatchNumber + 1, " +
+           "cp.lastBatchSentAt = :now WHERE cp.campaignId = :campaignId")
+    int incrementCompletedBatches(@Param("campaignId") Long campaignId, @Param("now") LocalDateTime now);
+    
+    @Modifying
+    @Transactional
+    @Query("UPDATE CampaignProgress cp SET cp.totalBatches = :totalBatches WHERE cp.campaignId = :campaignId")
+    int updateTotalBatches(@Param("campaignId") Long campaignId, @Param("totalBatches") int totalBatches);
+    
+    // Only one caller can win the transition, so completion side effects run once
+    @Modifying
+    @Transactional
+    @Query("UPDATE CampaignProgress cp SET cp.status = :completed, cp.completedAt = :now " +
+           "WHERE cp.campaignId = :campaignId AND cp.status = :running " +
+           "AND cp.totalBatches > 0 AND cp.currentBatchNumber >= cp.totalBatches")
+    int completeIfAllBatchesDone(@Param("campaignId") Long campaignId,
+                                 @Param("running") CampaignProgress.CampaignProgressStatus running,
+                                 @Param("completed") CampaignProgress.CampaignProgressStatus completed,
+                                 @Param("now") LocalDateTime now);
+    
+    @Modifying
+    @Transactional
+    @Query("UPDATE CampaignProgress cp SET cp.status = :completed, cp.completedAt = :now " +
+           "WHERE cp.campaignId = :campaignId AND cp.status = :running")
+    int completeIfRunning(@Param("campaignId") Long campaignId,
+                          @Param("running") CampaignProgress.CampaignProgressStatus running,
+                          @Param("completed") CampaignProgress.CampaignProgressStatus completed,
+                          @Param("now") LocalDateTime now);
+    
+    // Checkpoint writes: a batch is marked in flight before sending, then the
+    // cursor advances past it in the same UPDATE that counts it as completed
+    @Modifying
+    @Transactional
+    @Query("UPDATE CampaignProgress cp SET cp.inflightLastSubscriberId = :lastId, cp.heartbeatAt = :now " +
+           "WHERE cp.campaignId = :campaignId")
+    int markInflight(@Param("campaignId") Long campaignId, @Param("lastId") Long lastId,
+                     @Param("now") LocalDateTime now);
+    
+    @Modifying
+    @Transactional
+    @Query("UPDATE CampaignProgress cp SET cp.lastSubscriberId = :lastId, cp.inflightLastSubscriberId = NULL, " +
+           "cp.currentBatchNumber = cp.currentBatchNumber + 1, cp.lastBatchSentAt = :now, cp.heartbeatAt = :now " +
+           "WHERE cp.campaignId = :campaignId")
+    int advanceCheckpoint(@Param("campaignId") Long campaignId, @Param("lastId") Long lastId,
+                          @Param("now") LocalDateTime now);
+    
+    // Publish cursor of queue dispatch, saved as the broker confirms each batch
+    @Modifying
+    @Transactional
+    @Query("UPDATE CampaignProgress cp SET cp.lastSubscriberId = :lastId, cp.publishedBatches = :publishedBatches, " +
+           "cp.heartbeatAt = :now WHERE cp.campaignId = :campaignId")
+    int savePublishCursor(@Param("campaignId") Long campaignId, @Param("lastId") Long lastId,
+                          @Param("publishedBatches") int publishedBatches, @Param("now") LocalDateTime now);
+    
+    @Modifying
+    @Transactional
+    @Query("UPDATE CampaignProgress cp SET cp.heartbeatAt = :now WHERE cp.campaignId IN :campaignIds")
+    int touchHeartbeats(@Param("campaignIds") Collection<Long> campaignIds, @Param("now") LocalDateTime now);
+    
+    @Query("SELECT cp FROM CampaignProgress cp WHERE cp.status = :status AND cp.heartbeatAt < :cutoff")
+    List<CampaignProgress> findStalled(@Param("status") CampaignProgress.CampaignProgressStatus status,
+                                       @Param("cutoff") LocalDateTime cutoff);
+    
+    // Takes over a stalled run; only one node can win since the heartbeat moves forward
+    @Modifying
+    @Transactional
+    @Query("UPDATE CampaignProgress cp SET cp.heartbeatAt = :now " +
+           "WHERE cp.campaignId = :campaignId AND cp.status = :status AND cp.heartbeatAt < :cutoff")
+    int claimStalled(@Param("campaignId") Long campaignId,
+                     @Param("status") CampaignProgress.CampaignProgressStatus status,
+                     @Param("cutoff") LocalDateTime cutoff, @Param("now") LocalDateTime now);
+}
@@ -6,9 +6,11 @@ import in.osop.messaging_platform.model.MessageChannel;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -54,10 +56,11 @@ public interface CampaignRepository extends JpaRepository<Campaign, Long> {
     @Query("SELECT SUM(c.totalRecipients) FROM Campaign c WHERE c.status = 'COMPLETED' AND c.createdAt >= :startDate")
     Long getTotalRecipientsForPeriod(@Param("startDate") LocalDateTime startDate);
     
-    @Query("SELECT AVG(c.openRate) FROM Campaign c WHERE c.status = 'COMPLETED' AND c.openRate IS NOT NULL")
+    // Rates are derived from the counters when read, the rate columns are not kept up to date
+    @Query("SELECT AVG(c.openedCount * 100.0 / c.sentCount) FROM Campaign c WHERE c.status = 'COMPLETED' AND c.sentCount > 0")
     Double getAverageOpenRate();
     
-    @Query("SELECT AVG(c.clickRate) FROM Campaign c WHERE c.status = 'COMPLETED' AND c.clickRate IS NOT NULL")
+    @Query("SELECT AVG(c.clickedCount * 100.0 / c.sentCount) FROM Campaign c WHERE c.status = 'COMPLETED' AND c.sentCount > 0")
     Double getAverageClickRate();
     
     // Count campaigns by status list
@@ -68,4 +71,19 @@ public interface CampaignRepository extends JpaRepository<Campaign, Long> {
     
     // Find campaign by name
     List<Campaign> findByName(String name);
+    
+    // Relative update so concurrent writers never overwrite each other's counts
+    @Modifying
+    @Transactional
+    @Query("UPDATE Campaign c SET c.sentCount = COALESCE(c.sentCount, 0) + :sent, " +
+           "c.deliveredCount = COALESCE(c.deliveredCount, 0) + :delivered, " +
+           "c.openedCount = COALESCE(c.openedCount, 0) + :opened, " +
+           "c.clickedCount = COALESCE(c.clickedCount, 0) + :clicked, " +
+           "c.bouncedCount = COALESCE(c.bouncedCount, 0) + :bounced, " +
+           "c.unsubscribedCount = COALESCE(c.unsubscribedCount, 0) + :unsubscribed, " +
+           "c.updatedAt = :now WHERE c.id = :campaignId")
+    int addCounters(@Param("campaignId") Long campaignId, @Param("sent") int sent,
+                    @Param("delivered") int delivered, @Param("opened") int opened,
+                    @Param("clicked") int clicked, @Param("bounced") int bounced,
+                    @Param("unsubscribed") int unsubscribed, @Param("now") LocalDateTime now);
 }
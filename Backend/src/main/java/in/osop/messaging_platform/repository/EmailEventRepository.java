@@ -60,6 +60,19 @@ public interface EmailEventRepository extends JpaRepository<EmailEvent, Long> {
     @Query("SELECT DISTINCT e.email FROM EmailEvent e WHERE e.campaign.id = :campaignId AND e.eventType = 'CLICKED'")
     List<String> getUniqueClickedEmailsByCampaign(@Param("campaignId") Long campaignId);
 
+    // Engagement breakdowns for a campaign, from the columns the tracking ingest fills in
+    @Query("SELECT e.deviceType, COUNT(e) FROM EmailEvent e WHERE e.campaignId = :campaignId AND e.eventType = :eventType GROUP BY e.deviceType")
+    List<Object[]> countByDeviceType(@Param("campaignId") Long campaignId, @Param("eventType") EmailEventType eventType);
+
+    @Query("SELECT e.browser, COUNT(e) FROM EmailEvent e WHERE e.campaignId = :campaignId AND e.eventType = :eventType GROUP BY e.browser")
+    List<Object[]> countByBrowser(@Param("campaignId") Long campaignId, @Param("eventType") EmailEventType eventType);
+
+    @Query("SELECT e.os, COUNT(e) FROM EmailEvent e WHERE e.campaignId = :campaignId AND e.eventType = :eventType GROUP BY e.os")
+    List<Object[]> countByOs(@Param("campaignId") Long campaignId, @Param("eventType") EmailEventType eventType);
+
+    @Query("SELECT e.location, COUNT(e) FROM EmailEvent e WHERE e.campaignId = :campaignId AND e.eventType = :eventType GROUP BY e.location")
+    List<Object[]> countByLocation(@Param("campaignId") Long campaignId, @Param("eventType") EmailEventType eventType);
+
     // Get recent events for a campaign
     @Query("SELECT e FROM EmailEvent e WHERE e.campaign.id = :campaignId ORDER BY e.createdAt DESC")
     List<EmailEvent> getRecentEventsByCampaign(@Param("campaignId") Long campaignId);
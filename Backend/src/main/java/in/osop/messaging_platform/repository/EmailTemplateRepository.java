@@ -135,4 +135,10 @@ public interface EmailTemplateRepository extends JpaRepository<EmailTemplate, Lo
     @Query("SELECT t FROM EmailTemplate t WHERE t.createdAt BETWEEN :startDate AND :endDate")
     List<EmailTemplate> findByCreatedAtBetween(@Param("startDate") java.time.LocalDateTime startDate, 
                                                @Param("endDate") java.time.LocalDateTime endDate);
+    
+    /**
+     * Current version of an active template, the key its compiled form is cached under
+     */
+    @Query("SELECT t.version FROM EmailTemplate t WHERE t.id = :id AND t.isActive = true")
+    Optional<Integer> findActiveVersionById(@Param("id") Long id);
 }
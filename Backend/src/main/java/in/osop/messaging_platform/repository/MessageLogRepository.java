@@ -3,10 +3,16 @@ package in.osop.messaging_platform.repository;
 import in.osop.messaging_platform.model.MessageChannel;
 import in.osop.messaging_platform.model.MessageLog;
 import in.osop.messaging_platform.model.MessageStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -24,4 +30,67 @@ public interface MessageLogRepository extends JpaRepository<MessageLog, Long> {
     List<MessageLog> findByCampaignIdOrderByTimestampDesc(Long campaignId);
     
     List<MessageLog> findByCampaignIdAndStatusAndRetryCountLessThan(Long campaignId, MessageStatus status, int maxRetries);
-} 
\ No newline at end of file
+    
+    @Query("SELECT DISTINCT m.recipient FROM MessageLog m " +
+           "WHERE m.campaignId = :campaignId AND m.status = :status AND m.recipient IN :recipients")
+    List<String> findRecipientsWithStatus(@Param("campaignId") Long campaignId,
+                                          @Param("status") MessageStatus status,
+                                          @Param("recipients") Collection<String> recipients);
+    
+    @Query("SELECT DISTINCT m.recipient FROM MessageLog m " +
+           "WHERE m.campaignId = :campaignId AND m.recipient IN :recipients")
+    List<String> findRecipientsWithLog(@Param("campaignId") Long campaignId,
+                                       @Param("recipients") Collection<String> recipients);
+    
+    // Automatic retries
+    @Query("SELECT m FROM MessageLog m WHERE m.campaignId IS NOT NULL AND m.status IN :statuses " +
+           "AND m.nextRetryAt <= :horizon ORDER BY m.nextRetryAt")
+    List<MessageLog> findRetriesDueBefore(@Param("statuses") Collection<MessageStatus> statuses,
+                                          @Param("horizon") LocalDateTime horizon, Pageable pageable);
+    
+    @Modifying
+    @Transactional
+    @Query("UPDATE MessageLog m SET m.status = :pending, m.nextRetryAt = :leaseUntil " +
+           "WHERE m.id = :id AND m.nextRetryAt = :expected")
+    int claimRetry(@Param("id") Long id, @Param("expected") LocalDateTime expected,
+                   @Param("pending") MessageStatus pending, @Param("leaseUntil") LocalDateTime leaseUntil);
+    
+    @Modifying
+    @Transactional
+    @Query("UPDATE MessageLog m SET m.status = :sent, m.sentAt = :now, m.retryCount = m.retryCount + 1, " +
+           "m.nextRetryAt = NULL, m.errorMessage = NULL, m.processingTimeMs = :processingTime WHERE m.id = :id")
+    int markRetrySent(@Param("id") Long id, @Param("sent") MessageStatus sent, @Param("now") LocalDateTime now,
+                      @Param("processingTime") Long processingTime);
+    
+    @Modifying
+    @Transactional
+    @Query("UPDATE MessageLog m SET m.status = :failed, m.retryCount = m.retryCount + 1, " +
+           "m.responseCode = :responseCode, m.errorMessage = :errorMessage, m.nextRetryAt = :nextRetryAt " +
+           "WHERE m.id = :id")
+    int markRetryFailed(@Param("id") Long id, @Param("failed") MessageStatus failed,
+                        @Param("responseCode") String responseCode, @Param("errorMessage") String errorMessage,
+                        @Param("nextRetryAt") LocalDateTime nextRetryAt);
+    
+    // Hands claims back when their retry was never attempted, e.g. the campaign was paused
+    @Modifying
+    @Transactional
+    @Query("UPDATE MessageLog m SET m.status = :failed, m.nextRetryAt = :nextRetryAt " +
+           "WHERE m.id IN :ids AND m.status = :pending AND m.nextRetryAt = :leaseUntil")
+    int releaseRetryClaims(@Param("ids") Collection<Long> ids, @Param("pending") MessageStatus pending,
+                           @Param("leaseUntil") LocalDateTime leaseUntil, @Param("failed") MessageStatus failed,
+                           @Param("nextRetryAt") LocalDateTime nextRetryAt);
+    
+    @Modifying
+    @Transactional
+    @Query("UPDATE MessageLog m SET m.status = :failed, m.nextRetryAt = NULL WHERE m.id IN :ids")
+    int abandonRetries(@Param("ids") Collection<Long> ids, @Param("failed") MessageStatus failed);
+    
+    // Makes every retryable failure of a campaign due now; permanent (5xx) failures stay failed
+    @Modifying
+    @Transactional
+    @Query("UPDATE MessageLog m SET m.nextRetryAt = :now WHERE m.campaignId = :campaignId " +
+           "AND m.status = :failed AND m.retryCount < m.maxRetries " +
+           "AND (m.responseCode IS NULL OR m.responseCode NOT LIKE '5%')")
+    int scheduleRetriesNow(@Param("campaignId") Long campaignId, @Param("failed") MessageStatus failed,
+                           @Param("now") LocalDateTime now);
+}
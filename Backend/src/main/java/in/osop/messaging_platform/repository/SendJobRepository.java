@@ -0,0 +1,55 @@
+package in.osop.messaging_platform.repository;
+
+import in.osop.messaging_platform.model.SendJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface SendJobRepository extends JpaRepository<SendJob, Long> {
+    
+    // Last job planned for a campaign; planning resumes after it
+    Optional<SendJob> findTopByCampaignIdOrderByBatchNumberDesc(Long campaignId);
+    
+    /**
+     * Lock up to {@code limit} claimable jobs: pending ones and claimed ones whose lease ran out.
+     * Rows locked by another worker's claim are skipped instead of waited on.
+     * Must run inside a transaction.
+     */
+    @Query(value = "SELECT * FROM send_jobs " +
+                   "WHERE status = 'PENDING' OR (status = 'CLAIMED' AND lease_expires_at < :now) " +
+                   "ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<SendJob> lockClaimable(@Param("now") LocalDateTime now, @Param("limit") int limit);
+    
+    @Modifying
+    @Transactional
+    @Query("UPDATE SendJob j SET j.leaseExpiresAt = :until " +
+           "WHERE j.id IN :ids AND j.owner = :owner AND j.status = :claimed")
+    int extendLeases(@Param("ids") Collection<Long> ids, @Param("owner") String owner,
+                     @Param("claimed") SendJob.SendJobStatus claimed, @Param("until") LocalDateTime until);
+    
+    // Only succeeds while the caller still holds the lease
+    @Modifying
+    @Transactional
+    @Query("UPDATE SendJob j SET j.status = :status, j.owner = NULL, j.leaseExpiresAt = NULL, " +
+           "j.errorMessage = :error WHERE j.id = :id AND j.owner = :owner AND j.status = :claimed")
+    int finishJob(@Param("id") Long id, @Param("owner") String owner,
+                  @Param("claimed") SendJob.SendJobStatus claimed, @Param("status") SendJob.SendJobStatus status,
+                  @Param("error") String error);
+    
+    // Hands the job back without counting the attempt; claimable again once the lease lapses
+    @Modifying
+    @Transactional
+    @Query("UPDATE SendJob j SET j.owner = NULL, j.leaseExpiresAt = :until, j.attempts = j.attempts - 1 " +
+           "WHERE j.id = :id AND j.owner = :owner AND j.status = :claimed")
+    int parkJob(@Param("id") Long id, @Param("owner") String owner,
+                @Param("claimed") SendJob.SendJobStatus claimed, @Param("until") LocalDateTime until);
+}
@@ -1,15 +1,19 @@
 package in.osop.messaging_platform.repository;
 
+import in.osop.messaging_platform.dto.AudienceMember;
 import in.osop.messaging_platform.model.Subscriber;
 import in.osop.messaging_platform.model.SubscriptionStatus;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -20,6 +24,44 @@ public interface SubscriberRepository extends JpaRepository<Subscriber, Long> {
     
     List<Subscriber> findByStatus(SubscriptionStatus status);
     
+    /**
+     * Keyset page of the audience strictly after {@code lastId}, ordered by id.
+     * Returns unmanaged projections so large sends don't grow the persistence context.
+     */
+    @Query("SELECT new in.osop.messaging_platform.dto.AudienceMember(s.id, s.email, s.firstName, s.lastName) " +
+           "FROM Subscriber s WHERE s.status = :status AND s.id > :lastId ORDER BY s.id ASC")
+    List<AudienceMember> findAudienceAfter(
+        @Param("status") SubscriptionStatus status,
+        @Param("lastId") Long lastId,
+        Pageable pageable
+    );
+    
+    /**
+     * Open a streaming cursor over every subscriber with the given status,
+     * starting after {@code afterId} and yielding pages of {@code batchSize}.
+     */
+    default AudienceCursor openAudienceCursor(SubscriptionStatus status, long afterId, int batchSize) {
+        return new AudienceCursor(this, status, afterId, batchSize);
+    }
+    
+    /**
+     * The audience within one send-job shard, ids in ({@code afterId}, {@code lastId}]
+     */
+    @Query("SELECT new in.osop.messaging_platform.dto.AudienceMember(s.id, s.email, s.firstName, s.lastName) " +
+           "FROM Subscriber s WHERE s.status = :status AND s.id > :afterId AND s.id <= :lastId ORDER BY s.id ASC")
+    List<AudienceMember> findAudienceInRange(
+        @Param("status") SubscriptionStatus status,
+        @Param("afterId") Long afterId,
+        @Param("lastId") Long lastId
+    );
+    
+    /**
+     * Audience members by address, e.g. to restore merge fields for retried sends
+     */
+    @Query("SELECT new in.osop.messaging_platform.dto.AudienceMember(s.id, s.email, s.firstName, s.lastName) " +
+           "FROM Subscriber s WHERE s.email IN :emails")
+    List<AudienceMember> findAudienceByEmails(@Param("emails") Collection<String> emails);
+    
     List<Subscriber> findByIsVerifiedTrue();
     
     List<Subscriber> findByIsVerifiedFalse();
@@ -77,4 +119,11 @@ public interface SubscriberRepository extends JpaRepository<Subscriber, Long> {
     
     // Count subscribers by date range
     long countByCreatedAtBetween(LocalDateTime startDate, LocalDateTime endDate);
+    
+    // Suppress an address the mail server permanently rejected
+    @Modifying
+    @Transactional
+    @Query("UPDATE Subscriber s SET s.status = :suppressed WHERE s.email = :email AND s.status = :active")
+    int suppressByEmail(@Param("email") String email, @Param("active") SubscriptionStatus active,
+                        @Param("suppressed") SubscriptionStatus suppressed);
 }
@@ -0,0 +1,155 @@
+package in.osop.messaging_platform.service;
+
+import in.osop.messaging_platform.model.ActivityLog;
+import in.osop.messaging_platform.repository.ActivityLogRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Collapses high-frequency activities into rolling per-campaign summaries.
+ *
+ * Per-recipient events are only counted in memory. Every flush interval the
+ * counts are written to one summary row per campaign and activity type, which
+ * is updated in place until its window closes and a new row is started.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ActivityAggregator {
+
+    private static final Set<ActivityLog.ActivityType> AGGREGATED = EnumSet.of(
+        ActivityLog.ActivityType.EMAIL_SENT,
+        ActivityLog.ActivityType.EMAIL_OPENED,
+        ActivityLog.ActivityType.EMAIL_CLICKED,
+        ActivityLog.ActivityType.EMAIL_BOUNCED,
+        ActivityLog.ActivityType.EMAIL_UNSUBSCRIBED
+    );
+
+    private final ActivityLogRepository activityLogRepository;
+
+    @Value("${activity.aggregation.window-minutes:60}")
+    private long windowMinutes;
+
+    private final CoalescingCounters<SummaryKey> pending = new CoalescingCounters<>();
+    private final Map<SummaryKey, Summary> summaries = new ConcurrentHashMap<>();
+
+    /**
+     * Whether activities of this type are aggregated rather than written one by one
+     */
+    public static boolean isAggregated(ActivityLog.ActivityType activityType) {
+        return AGGREGATED.contains(activityType);
+    }
+
+    /**
+     * Count one occurrence of an aggregated activity for a campaign
+     */
+    public void record(ActivityLog.ActivityType activityType, Long campaignId) {
+        pending.add(new SummaryKey(activityType, campaignId), 1);
+    }
+
+    @Scheduled(fixedDelayString = "${activity.aggregation.flush-interval-ms:10000}")
+    public void flush() {
+        LocalDateTime now = LocalDateTime.now();
+        for (SummaryKey key : pending.keys()) {
+            long delta = pending.take(key);
+            Summary summary = summaries.get(key);
+            boolean windowClosed = summary == null || summary.windowStart.plusMinutes(windowMinutes).isBefore(now);
+
+            if (delta == 0) {
+                if (windowClosed) {
+                    // Campaign has gone quiet; forget it until it records again
+                    summaries.remove(key);
+                    pending.evict(key);
+                }
+                continue;
+            }
+
+            try {
+                if (windowClosed) {
+                    ActivityLog row = activityLogRepository.save(ActivityLog.builder()
+                        .activityType(key.activityType)
+                        .title(title(key.activityType))
+                        .description(description(key, delta))
+                        .performedBy("system")
+                        .entityType("campaign")
+                        .entityId(key.campaignId)
+                        .metadata(metadata(delta, now))
+                        .createdAt(now)
+                        .build());
+                    summaries.put(key, new Summary(row.getId(), now, delta));
+                } else {
+                    summary.total += delta;
+                    activityLogRepository.updateSummary(summary.id, description(key, summary.total),
+                        metadata(summary.total, summary.windowStart));
+                }
+            } catch (Exception e) {
+                // Put the counts back so the next flush retries them
+                pending.add(key, delta);
+                log.error("Failed to write {} summary for campaign {}: {}", key.activityType, key.campaignId, e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private static String title(ActivityLog.ActivityType activityType) {
+        return switch (activityType) {
+            case EMAIL_SENT -> "Emails Sent";
+            case EMAIL_OPENED -> "Emails Opened";
+            case EMAIL_CLICKED -> "Emails Clicked";
+            case EMAIL_BOUNCED -> "Emails Bounced";
+            case EMAIL_UNSUBSCRIBED -> "Unsubscribes";
+            default -> activityType.name();
+        };
+    }
+
+    private static String description(SummaryKey key, long total) {
+        String event = switch (key.activityType) {
+            case EMAIL_SENT -> "emails sent";
+            case EMAIL_OPENED -> "emails opened";
+            case EMAIL_CLICKED -> "emails clicked";
+            case EMAIL_BOUNCED -> "emails bounced";
+            case EMAIL_UNSUBSCRIBED -> "unsubscribes";
+            default -> key.activityType.name().toLowerCase();
+        };
+        return String.format("%d %s for campaign %d", total, event, key.campaignId);
+    }
+
+    private static String metadata(long total, LocalDateTime windowStart) {
+        return "{\"count\":" + total + ",\"windowStart\":\"" + windowStart + "\"}";
+    }
+
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    private static final class SummaryKey {
+        private final ActivityLog.ActivityType activityType;
+        private final Long campaignId;
+    }
+
+    private static final class Summary {
+        private final Long id;
+        private final LocalDateTime windowStart;
+        private long total;
+
+        private Summary(Long id, LocalDateTime windowStart, long total) {
+            this.id = id;
+            this.windowStart = windowStart;
+            this.total = total;
+        }
+    }
+}
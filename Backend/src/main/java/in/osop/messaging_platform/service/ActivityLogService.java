@@ -20,6 +20,7 @@ import java.time.LocalDateTime;
 public class ActivityLogService {
 
     private final ActivityLogRepository activityLogRepository;
+    private final ActivityAggregator activityAggregator;
     
     /**
      * Log an activity
@@ -72,17 +73,10 @@ public class ActivityLogService {
     }
 
     /**
-     * Log email sent activity
+     * Log email sent activity. Counted into the campaign's rolling summary
+     * instead of writing a row per recipient.
      */
-    @Transactional
     public void logEmailSent(String email, Long campaignId, String recipient) {
-        logActivity(
-            ActivityLog.ActivityType.EMAIL_SENT,
-            "Email Sent",
-            String.format("Email sent to %s for campaign %d", recipient, campaignId),
-            "system",
-            "email",
-            null
-        );
+        activityAggregator.record(ActivityLog.ActivityType.EMAIL_SENT, campaignId);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,122 @@
+package in.osop.messaging_platform.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrency limit that tunes itself from SMTP feedback (AIMD).
+ *
+ * Every send reports its latency and outcome. While sends succeed and the
+ * recent latency stays within {@code latencyTolerance} times the long-run
+ * baseline, a fully used limit grows by about one per limit's worth of sends.
+ * A 4xx deferral, a timeout or latency beyond the tolerance multiplies it by
+ * {@code backoffRatio}, at most once per cooldown so a single failing chunk
+ * does not drive it straight down to the minimum.
+ */
+class AdaptiveConcurrencyLimit {
+
+    enum Outcome {
+        SUCCESS,
+        DEFERRED,
+        TIMEOUT,
+        // Permanent (5xx) recipient failures say nothing about relay capacity
+        REJECTED
+    }
+
+    private static final double RECENT_ALPHA = 0.2;
+    private static final double BASELINE_ALPHA = 0.01;
+    private static final long BACKOFF_COOLDOWN_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final double latencyTolerance;
+
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition available = lock.newCondition();
+    private volatile double limit;
+    private volatile int inFlight;
+    private double recentLatency = -1;
+    private double baselineLatency = -1;
+    private long lastBackoffAt = System.nanoTime() - BACKOFF_COOLDOWN_NANOS;
+
+    AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, double backoffRatio, double latencyTolerance) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+        this.backoffRatio = backoffRatio;
+        this.latencyTolerance = latencyTolerance;
+    }
+
+    int getLimit() {
+        return (int) limit;
+    }
+
+    int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * Wait up to the timeout for a slot under the current limit
+     */
+    boolean tryAcquire(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (inFlight >= getLimit()) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = available.awaitNanos(nanos);
+            }
+            inFlight++;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void release() {
+        lock.lock();
+        try {
+            inFlight--;
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void onSample(long latencyNanos, Outcome outcome) {
+        lock.lock();
+        try {
+            switch (outcome) {
+                case DEFERRED, TIMEOUT -> backOff();
+                case SUCCESS -> {
+                    recentLatency = recentLatency < 0 ? latencyNanos : recentLatency + RECENT_ALPHA * (latencyNanos - recentLatency);
+                    baselineLatency = baselineLatency < 0 ? latencyNanos : baselineLatency + BASELINE_ALPHA * (latencyNanos - baselineLatency);
+                    if (recentLatency > baselineLatency * latencyTolerance) {
+                        backOff();
+                    } else if (inFlight >= getLimit() && limit < maxLimit) {
+                        // Only grow a limit that is actually the bottleneck
+                        limit = Math.min(maxLimit, limit + 1.0 / limit);
+                        available.signalAll();
+                    }
+                }
+                case REJECTED -> {
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void backOff() {
+        long now = System.nanoTime();
+        if (now - lastBackoffAt < BACKOFF_COOLDOWN_NANOS) {
+            return;
+        }
+        lastBackoffAt = now;
+        limit = Math.max(minLimit, limit * backoffRatio);
+    }
+}
@@ -10,6 +10,7 @@ import org.springframework.stereotype.Service;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -391,6 +392,34 @@ public class AnalyticsService {
         }).collect(Collectors.toList());
     }
     
+    /**
+     * How a campaign's events of one type split by device type, client, OS and country
+     */
+    public Map<String, Object> getClientBreakdown(Long campaignId, EmailEventType eventType) {
+        log.info("Calculating client breakdown of campaign {} for {} events", campaignId, eventType);
+        
+        Map<String, Object> breakdown = new HashMap<>();
+        breakdown.put("campaignId", campaignId);
+        breakdown.put("eventType", eventType);
+        breakdown.put("deviceTypes", toCounts(emailEventRepository.countByDeviceType(campaignId, eventType)));
+        breakdown.put("browsers", toCounts(emailEventRepository.countByBrowser(campaignId, eventType)));
+        breakdown.put("operatingSystems", toCounts(emailEventRepository.countByOs(campaignId, eventType)));
+        breakdown.put("locations", toCounts(emailEventRepository.countByLocation(campaignId, eventType)));
+        return breakdown;
+    }
+    
+    // Rows of a GROUP BY count, largest first; events tracked before classification count as Unknown
+    private Map<String, Long> toCounts(List<Object[]> rows) {
+        Map<String, Long> counts = new HashMap<>();
+        for (Object[] row : rows) {
+            String value = row[0] != null ? row[0].toString() : UserAgentClassifier.UNKNOWN;
+            counts.merge(value, ((Number) row[1]).longValue(), Long::sum);
+        }
+        return counts.entrySet().stream()
+            .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+            .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (a, b) -> a, LinkedHashMap::new));
+    }
+    
     public List<RecentActivityDto> getRecentActivities(int limit) {
         log.info("Fetching recent activities from database");
         
@@ -1,11 +1,13 @@
 package in.osop.messaging_platform.service;
 
+import in.osop.messaging_platform.dto.AudienceMember;
 import in.osop.messaging_platform.model.*;
 import in.osop.messaging_platform.repository.*;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
@@ -13,26 +15,51 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class AsyncEmailService {
     
-    private final JavaMailSender mailSender;
     private final CampaignProgressRepository campaignProgressRepository;
     private final MessageLogRepository messageLogRepository;
     private final CampaignRepository campaignRepository;
     private final SubscriberRepository subscriberRepository;
-    private final ActivityLogService activityLogService;
+    private final CampaignBatchSender campaignBatchSender;
+    private final CampaignProgressTracker campaignProgressTracker;
+    private final CampaignRunRegistry campaignRunRegistry;
+    private final SendJobService sendJobService;
+    private final ObjectProvider<CampaignBatchPublisher> campaignBatchPublisher;
+    private final Executor emailTaskExecutor;
+    
+    @Value("${messaging.dispatch.mode:local}")
+    private String dispatchMode;
+    
+    @Value("${messaging.recovery.stale-after-ms:120000}")
+    private long staleAfterMs;
+    
+    private final Map<Long, CampaignRun> activeRuns = new ConcurrentHashMap<>();
+    private volatile boolean shuttingDown;
     
     /**
-     * Start sending a campaign asynchronously
+     * Start sending a campaign asynchronously.
+     *
+     * Not transactional on purpose: a single transaction spanning the whole send
+     * would keep every saved log entity in the persistence context. Each save
+     * commits on its own and the audience is streamed page by page.
+     *
+     * With {@code messaging.dispatch.mode=queue} the audience is published to
+     * RabbitMQ in batches and sent by the queue consumers; with {@code jobs} it
+     * is split into send jobs claimed by the workers of every node. Otherwise the
+     * batches are sent in-process on {@code emailTaskExecutor} as rate-limit
+     * tokens allow.
+     * Either way the returned future completes once sending has been kicked off.
      */
     @Async("emailTaskExecutor")
-    @Transactional
     public CompletableFuture<Void> sendCampaignAsync(Long campaignId) {
         log.info("Starting async campaign sending for campaign ID: {}", campaignId);
         
@@ -46,190 +73,265 @@ public class AsyncEmailService {
                     .campaignId(campaignId)
                     .status(CampaignProgress.CampaignProgressStatus.RUNNING)
                     .totalRecipients(campaign.getTotalRecipients())
+                    .emailsSent(0)
+                    .emailsSuccess(0)
+                    .emailsFailed(0)
+                    .emailsInProgress(0)
+                    .currentBatchNumber(0)
+                    .totalBatches(0)
+                    .batchSize(50) // Default batch size
                     .startedAt(LocalDateTime.now())
                     .build());
             
             progress.setStatus(CampaignProgress.CampaignProgressStatus.RUNNING);
             progress.setStartedAt(LocalDateTime.now());
-            campaignProgressRepository.save(progress);
+            progress.setCurrentBatchNumber(0);
+            progress.setLastSubscriberId(0L);
+            progress.setInflightLastSubscriberId(null);
+            progress.setPublishedBatches(0);
+            progress.setHeartbeatAt(LocalDateTime.now());
             
-            // Get subscribers for this campaign
-            List<Subscriber> subscribers = subscriberRepository.findByStatus(SubscriptionStatus.ACTIVE);
-            
-            // Calculate batches
-            int batchSize = progress.getBatchSize();
-            int totalBatches = (int) Math.ceil((double) subscribers.size() / batchSize);
-            progress.setTotalBatches(totalBatches);
-            campaignProgressRepository.save(progress);
-            
-            // Send emails in batches
-            for (int batchNum = 0; batchNum < totalBatches; batchNum++) {
-                if (progress.getStatus() == CampaignProgress.CampaignProgressStatus.CANCELLED ||
-                    progress.getStatus() == CampaignProgress.CampaignProgressStatus.PAUSED) {
-                    log.info("Campaign {} paused or cancelled, stopping batch processing", campaignId);
-                    break;
-                }
-                
-                int startIndex = batchNum * batchSize;
-                int endIndex = Math.min(startIndex + batchSize, subscribers.size());
-                List<Subscriber> batchSubscribers = subscribers.subList(startIndex, endIndex);
-                
-                sendBatch(campaign, batchSubscribers, batchNum + 1, progress);
-                
-                // Update progress
-                progress.setCurrentBatchNumber(batchNum + 1);
-                progress.setLastBatchSentAt(LocalDateTime.now());
+            if ("queue".equalsIgnoreCase(dispatchMode) || "jobs".equalsIgnoreCase(dispatchMode)) {
+                // Workers complete the campaign once the final batch count is known
+                progress.setTotalBatches(0);
                 campaignProgressRepository.save(progress);
-                
-                // Rate limiting - wait between batches
-                if (batchNum < totalBatches - 1) {
-                    long waitTime = calculateWaitTime(progress.getRateLimitPerMinute(), batchSize);
-                    Thread.sleep(waitTime);
+                if ("jobs".equalsIgnoreCase(dispatchMode)) {
+                    sendJobService.planCampaign(campaign, progress.getBatchSize());
+                } else {
+                    campaignBatchPublisher.getObject().publishCampaign(campaign, progress.getBatchSize());
                 }
+                return CompletableFuture.completedFuture(null);
             }
             
-            // Mark campaign as completed
-            if (progress.getStatus() == CampaignProgress.CampaignProgressStatus.RUNNING) {
-                progress.setStatus(CampaignProgress.CampaignProgressStatus.COMPLETED);
-                progress.setCompletedAt(LocalDateTime.now());
-                campaignProgressRepository.save(progress);
-                
-                // Update campaign status
-                campaign.setStatus(CampaignStatus.COMPLETED);
-                campaign.setCompletedAt(LocalDateTime.now());
-                campaignRepository.save(campaign);
-                
-                log.info("Campaign {} completed successfully", campaignId);
-                activityLogService.logActivity(
-                    ActivityLog.ActivityType.CAMPAIGN_COMPLETED,
-                    "Campaign Completed",
-                    "Campaign '" + campaign.getName() + "' has been completed successfully",
-                    "system",
-                    "campaign",
-                    campaignId
-                );
-            }
+            // Size the audience without loading it
+            long audienceSize = subscriberRepository.countByStatus(SubscriptionStatus.ACTIVE);
+            progress.setTotalBatches((int) Math.ceil((double) audienceSize / progress.getBatchSize()));
+            campaignProgressRepository.save(progress);
             
-        } catch (Exception e) {
-            log.error("Error sending campaign {}: {}", campaignId, e.getMessage(), e);
+            startRun(progress);
             
-            // Mark campaign as failed
-            CampaignProgress progress = campaignProgressRepository.findByCampaignId(campaignId).orElse(null);
-            if (progress != null) {
-                progress.setStatus(CampaignProgress.CampaignProgressStatus.FAILED);
-                progress.setErrorMessage(e.getMessage());
-                progress.setCompletedAt(LocalDateTime.now());
+        } catch (Exception e) {
+            failCampaign(campaignId, e);
+        }
+        
+        return CompletableFuture.completedFuture(null);
+    }
+    
+    /**
+     * Continue a running campaign from its checkpoint.
+     *
+     * In local mode the audience cursor reopens after the last completed batch
+     * and the batch that was in flight is re-sent without the recipients that
+     * already got it. Queue and job workers keep their own durable state, so
+     * there is nothing to restart in those modes; publishing or planning that
+     * stopped part-way is picked up by {@link #recoverStalledCampaigns()}.
+     */
+    @Async("emailTaskExecutor")
+    public CompletableFuture<Void> resumeCampaignAsync(Long campaignId) {
+        if (!"local".equalsIgnoreCase(dispatchMode)) {
+            log.info("Campaign {} resumes through the {} workers", campaignId, dispatchMode);
+            return CompletableFuture.completedFuture(null);
+        }
+        try {
+            CampaignProgress progress = campaignProgressRepository.findByCampaignId(campaignId)
+                .orElseThrow(() -> new RuntimeException("Campaign progress not found for campaign: " + campaignId));
+            // The caller's transaction switching the status back may not have committed yet
+            if (progress.getStatus() == CampaignProgress.CampaignProgressStatus.PAUSED) {
+                progress.setStatus(CampaignProgress.CampaignProgressStatus.RUNNING);
                 campaignProgressRepository.save(progress);
+            } else if (progress.getStatus() != CampaignProgress.CampaignProgressStatus.RUNNING) {
+                return CompletableFuture.completedFuture(null);
             }
+            // Fresh heartbeat so the stalled-run recovery of other nodes leaves it alone
+            campaignProgressRepository.touchHeartbeats(List.of(campaignId), LocalDateTime.now());
+            log.info("Resuming campaign {} after subscriber {}", campaignId, progress.getLastSubscriberId());
+            startRun(progress);
+        } catch (Exception e) {
+            failCampaign(campaignId, e);
         }
-        
         return CompletableFuture.completedFuture(null);
     }
     
     /**
-     * Send a batch of emails
+     * Keep the heartbeat of campaigns sent by this node fresh
      */
-    private void sendBatch(Campaign campaign, List<Subscriber> subscribers, int batchNumber, CampaignProgress progress) {
-        log.info("Sending batch {} for campaign {} with {} subscribers", batchNumber, campaign.getId(), subscribers.size());
-        
-        for (Subscriber subscriber : subscribers) {
-            try {
-                sendSingleEmail(campaign, subscriber, batchNumber);
-                
-                // Update progress
-                progress.setEmailsSent(progress.getEmailsSent() + 1);
-                progress.setEmailsSuccess(progress.getEmailsSuccess() + 1);
-                
-            } catch (Exception e) {
-                log.error("Failed to send email to {}: {}", subscriber.getEmail(), e.getMessage());
-                
-                // Log the failure
-                MessageLog messageLog = MessageLog.builder()
-                    .campaignId(campaign.getId())
-                    .batchNumber(batchNumber)
-                    .channel(MessageChannel.EMAIL)
-                    .recipient(subscriber.getEmail())
-                    .status(MessageStatus.FAILED)
-                    .errorMessage(e.getMessage())
-                    .retryCount(0)
-                    .maxRetries(3)
-                    .timestamp(LocalDateTime.now())
-                    .build();
-                messageLogRepository.save(messageLog);
-                
-                // Update progress
-                progress.setEmailsSent(progress.getEmailsSent() + 1);
-                progress.setEmailsFailed(progress.getEmailsFailed() + 1);
+    @Scheduled(fixedDelayString = "${messaging.recovery.heartbeat-interval-ms:30000}")
+    public void heartbeatActiveRuns() {
+        if (!activeRuns.isEmpty()) {
+            campaignProgressRepository.touchHeartbeats(List.copyOf(activeRuns.keySet()), LocalDateTime.now());
+        }
+    }
+    
+    /**
+     * Pick up campaigns whose node stopped sending, e.g. after a crash. In-process
+     * runs continue from their checkpoint. In queue and jobs mode a campaign
+     * whose batches were not all published or planned yet continues from its
+     * publish cursor or from its last saved job.
+     */
+    @Scheduled(initialDelayString = "${messaging.recovery.initial-delay-ms:30000}",
+               fixedDelayString = "${messaging.recovery.interval-ms:60000}")
+    public void recoverStalledCampaigns() {
+        if (shuttingDown) {
+            return;
+        }
+        boolean local = "local".equalsIgnoreCase(dispatchMode);
+        LocalDateTime cutoff = LocalDateTime.now().minusNanos(staleAfterMs * 1_000_000L);
+        for (CampaignProgress progress : campaignProgressRepository.findStalled(
+                CampaignProgress.CampaignProgressStatus.RUNNING, cutoff)) {
+            Long campaignId = progress.getCampaignId();
+            // Once the batch count is recorded every batch is with the workers
+            if (!local && progress.getTotalBatches() > 0) {
+                continue;
+            }
+            if (activeRuns.containsKey(campaignId) ||
+                campaignProgressRepository.claimStalled(campaignId,
+                    CampaignProgress.CampaignProgressStatus.RUNNING, cutoff, LocalDateTime.now()) == 0) {
+                continue;
             }
+            log.warn("Recovering stalled campaign {} from subscriber {}", campaignId, progress.getLastSubscriberId());
+            emailTaskExecutor.execute(() -> {
+                try {
+                    if (local) {
+                        startRun(progress);
+                    } else if ("jobs".equalsIgnoreCase(dispatchMode)) {
+                        sendJobService.resumePlanning(progress);
+                    } else {
+                        campaignBatchPublisher.getObject().resumeCampaign(progress);
+                    }
+                } catch (Exception e) {
+                    failCampaign(campaignId, e);
+                }
+            });
+        }
+    }
+    
+    /**
+     * Stop chaining batches on shutdown; runs continue from their checkpoint on
+     * the next start, with the in-flight batch deduplicated against sent logs
+     */
+    @PreDestroy
+    public void shutdown() {
+        shuttingDown = true;
+        if (!activeRuns.isEmpty()) {
+            log.info("Shutting down with {} campaigns in progress, leaving them at their checkpoints", activeRuns.size());
         }
-        
-        campaignProgressRepository.save(progress);
     }
     
     /**
-     * Send a single email
+     * Start an in-process run at the progress checkpoint
      */
-    private void sendSingleEmail(Campaign campaign, Subscriber subscriber, int batchNumber) {
-        long startTime = System.currentTimeMillis();
+    private void startRun(CampaignProgress progress) {
+        Long campaignId = progress.getCampaignId();
+        Long inflightLastId = progress.getInflightLastSubscriberId();
+        long resumeAfter = inflightLastId != null ? inflightLastId : progress.getLastSubscriberId();
         
+        // Stream subscribers for this campaign in keyset-paged batches
+        CampaignRun run = new CampaignRun(campaignBatchSender.contextFor(campaignId),
+            subscriberRepository.openAudienceCursor(SubscriptionStatus.ACTIVE, resumeAfter, progress.getBatchSize()),
+            progress.getCurrentBatchNumber());
+        if (activeRuns.putIfAbsent(campaignId, run) != null) {
+            log.info("Campaign {} is already being sent by this node", campaignId);
+            return;
+        }
+        campaignRunRegistry.register(campaignId);
+        
+        if (inflightLastId != null) {
+            List<AudienceMember> inflight = subscriberRepository.findAudienceInRange(
+                SubscriptionStatus.ACTIVE, progress.getLastSubscriberId(), inflightLastId);
+            sendBatch(run, campaignBatchSender.withoutDelivered(campaignId, inflight), inflightLastId);
+        } else {
+            sendNextBatch(run);
+        }
+    }
+    
+    /**
+     * Send the next batch of an in-process run and chain the one after it.
+     *
+     * The batch sender hands the executor thread back while waiting for
+     * rate-limit tokens, so the next batch is submitted from its completion.
+     */
+    private void sendNextBatch(CampaignRun run) {
+        Long campaignId = run.context.getCampaignId();
         try {
-            SimpleMailMessage message = new SimpleMailMessage();
-            message.setTo(subscriber.getEmail());
-            message.setSubject(campaign.getSubject());
-            message.setText(campaign.getBody());
-            
-            mailSender.send(message);
-            
-            long processingTime = System.currentTimeMillis() - startTime;
-            
-            // Log successful send
-            MessageLog messageLog = MessageLog.builder()
-                .campaignId(campaign.getId())
-                .batchNumber(batchNumber)
-                .channel(MessageChannel.EMAIL)
-                .recipient(subscriber.getEmail())
-                .status(MessageStatus.SENT)
-                .sentAt(LocalDateTime.now())
-                .processingTimeMs(processingTime)
-                .timestamp(LocalDateTime.now())
-                .build();
-            messageLogRepository.save(messageLog);
-            
-            // Log activity
-            activityLogService.logEmailSent(subscriber.getEmail(), campaign.getId(), "system");
+            if (shuttingDown) {
+                activeRuns.remove(campaignId);
+                return;
+            }
+            if (campaignRunRegistry.isStopped(campaignId) || !campaignRunRegistry.isBroadcastEnabled() &&
+                campaignProgressRepository.findStatusByCampaignId(campaignId)
+                    .orElse(null) != CampaignProgress.CampaignProgressStatus.RUNNING) {
+                log.info("Campaign {} paused or cancelled, stopping batch processing", campaignId);
+                endRun(campaignId);
+                return;
+            }
+            if (!run.audience.hasNext()) {
+                endRun(campaignId);
+                // The count taken at start is only an estimate; record the real number
+                campaignProgressRepository.updateTotalBatches(campaignId, run.batchNumber);
+                if (run.batchNumber == 0) {
+                    campaignBatchSender.completeCampaign(campaignId);
+                } else {
+                    campaignBatchSender.completeCampaignIfDone(campaignId);
+                }
+                return;
+            }
             
+            List<AudienceMember> batch = run.audience.next();
+            sendBatch(run, batch, run.audience.getLastId());
         } catch (Exception e) {
-            long processingTime = System.currentTimeMillis() - startTime;
-            
-            // Log failed send
-            MessageLog messageLog = MessageLog.builder()
-                .campaignId(campaign.getId())
-                .batchNumber(batchNumber)
-                .channel(MessageChannel.EMAIL)
-                .recipient(subscriber.getEmail())
-                .status(MessageStatus.FAILED)
-                .errorMessage(e.getMessage())
-                .processingTimeMs(processingTime)
-                .timestamp(LocalDateTime.now())
-                .build();
-            messageLogRepository.save(messageLog);
-            
-            throw e;
+            failCampaign(campaignId, e);
         }
     }
     
     /**
-     * Calculate wait time between batches for rate limiting
+     * Send one checkpointed batch ending at {@code lastId}
      */
-    private long calculateWaitTime(int rateLimitPerMinute, int batchSize) {
-        if (rateLimitPerMinute <= 0) return 0;
-        
-        // Calculate milliseconds to wait to respect rate limit
-        double emailsPerSecond = rateLimitPerMinute / 60.0;
-        double secondsPerEmail = 1.0 / emailsPerSecond;
-        double waitTimeSeconds = batchSize * secondsPerEmail;
+    private void sendBatch(CampaignRun run, List<AudienceMember> batch, long lastId) {
+        Long campaignId = run.context.getCampaignId();
+        int batchNumber = ++run.batchNumber;
+        campaignProgressRepository.markInflight(campaignId, lastId, LocalDateTime.now());
+        campaignBatchSender.sendBatch(run.context, batch, batchNumber)
+            .whenComplete((completed, error) -> {
+                if (error != null) {
+                    failCampaign(campaignId, error);
+                    return;
+                }
+                if (!completed) {
+                    // Stopped mid-batch; the batch stays in flight and is deduplicated on resume
+                    log.info("Campaign {} paused or cancelled during batch {}", campaignId, batchNumber);
+                    endRun(campaignId);
+                    return;
+                }
+                emailTaskExecutor.execute(() -> {
+                    try {
+                        campaignProgressRepository.advanceCheckpoint(campaignId, lastId, LocalDateTime.now());
+                        sendNextBatch(run);
+                    } catch (Exception e) {
+                        failCampaign(campaignId, e);
+                    }
+                });
+            });
+    }
+    
+    private void endRun(Long campaignId) {
+        activeRuns.remove(campaignId);
+        campaignProgressTracker.flush(campaignId);
+        campaignBatchSender.release(campaignId);
+        campaignRunRegistry.release(campaignId);
+    }
+    
+    private void failCampaign(Long campaignId, Throwable e) {
+        log.error("Error sending campaign {}: {}", campaignId, e.getMessage(), e);
+        endRun(campaignId);
         
-        return (long) (waitTimeSeconds * 1000); // Convert to milliseconds
+        // Mark campaign as failed
+        CampaignProgress progress = campaignProgressRepository.findByCampaignId(campaignId).orElse(null);
+        if (progress != null) {
+            progress.setStatus(CampaignProgress.CampaignProgressStatus.FAILED);
+            progress.setErrorMessage(e.getMessage());
+            progress.setCompletedAt(LocalDateTime.now());
+            campaignProgressRepository.save(progress);
+        }
     }
     
     /**
@@ -257,43 +359,28 @@ public class AsyncEmailService {
     }
     
     /**
-     * Retry failed emails for a campaign
+     * Make a campaign's retryable failures due now instead of waiting out their backoff.
+     * The {@link RetryScheduler} picks them up on its next scan and resends them in batches.
      */
     @Async("emailTaskExecutor")
-    @Transactional
     public CompletableFuture<Void> retryFailedEmails(Long campaignId) {
-        log.info("Retrying failed emails for campaign: {}", campaignId);
-        
-        List<MessageLog> failedEmails = messageLogRepository.findByCampaignIdAndStatusAndRetryCountLessThan(
-            campaignId, MessageStatus.FAILED, 3);
-        
-        Campaign campaign = campaignRepository.findById(campaignId)
-            .orElseThrow(() -> new RuntimeException("Campaign not found: " + campaignId));
+        int scheduled = messageLogRepository.scheduleRetriesNow(campaignId, MessageStatus.FAILED, LocalDateTime.now());
+        log.info("Scheduled {} failed emails of campaign {} for retry", scheduled, campaignId);
+        return CompletableFuture.completedFuture(null);
+    }
+    
+    /**
+     * State of one in-process campaign send, carried across batch continuations
+     */
+    private static final class CampaignRun {
+        private final CampaignSendContext context;
+        private final AudienceCursor audience;
+        private int batchNumber;
         
-        for (MessageLog messageLog : failedEmails) {
-            try {
-                // Find subscriber
-                Subscriber subscriber = subscriberRepository.findByEmail(messageLog.getRecipient())
-                    .orElse(null);
-                
-                if (subscriber != null) {
-                    sendSingleEmail(campaign, subscriber, messageLog.getBatchNumber());
-                    
-                    // Update message log
-                    messageLog.setStatus(MessageStatus.SENT);
-                    messageLog.setSentAt(LocalDateTime.now());
-                    messageLog.incrementRetry();
-                    messageLogRepository.save(messageLog);
-                }
-                
-            } catch (Exception e) {
-                log.error("Retry failed for email {}: {}", messageLog.getRecipient(), e.getMessage());
-                messageLog.incrementRetry();
-                messageLog.setErrorMessage(e.getMessage());
-                messageLogRepository.save(messageLog);
-            }
+        private CampaignRun(CampaignSendContext context, AudienceCursor audience, int batchNumber) {
+            this.context = context;
+            this.audience = audience;
+            this.batchNumber = batchNumber;
         }
-        
-        return CompletableFuture.completedFuture(null);
     }
 }
@@ -0,0 +1,122 @@
+package in.osop.messaging_platform.service;
+
+import com.rabbitmq.client.Channel;
+import in.osop.messaging_platform.config.RabbitMQConfig;
+import in.osop.messaging_platform.dto.AudienceMember;
+import in.osop.messaging_platform.dto.SendBatchMessage;
+import in.osop.messaging_platform.model.CampaignProgress;
+import in.osop.messaging_platform.repository.CampaignProgressRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Consumer side of queue-dispatched campaigns.
+ *
+ * Each listener thread sends one batch at a time and acknowledges it only once
+ * every recipient has been attempted, so the listener prefetch bounds how much
+ * work a worker holds. A batch that fails, e.g. on a database error, is parked
+ * in the wait queue and delivered again up to {@code messaging.queue.max-deliveries}
+ * times; after the last failed delivery its unattempted recipients count as
+ * failed, so the campaign still completes, and the batch is rejected to the
+ * dead-letter queue. Batches stopped by a pause signal are parked in the wait
+ * queue too. Batches a resumed producer published again are dropped when every
+ * recipient in them already has a log.
+ */
+@Service
+@ConditionalOnProperty(name = "messaging.dispatch.mode", havingValue = "queue")
+@RequiredArgsConstructor
+@Slf4j
+public class CampaignBatchConsumer {
+
+    private final CampaignBatchSender campaignBatchSender;
+    private final CampaignBatchPublisher campaignBatchPublisher;
+    private final CampaignProgressRepository campaignProgressRepository;
+    private final CampaignRunRegistry campaignRunRegistry;
+
+    @Value("${messaging.queue.max-deliveries:3}")
+    private int maxDeliveries;
+
+    @RabbitListener(queues = RabbitMQConfig.BATCH_QUEUE, ackMode = "MANUAL")
+    public void onBatch(SendBatchMessage batch, Channel channel,
+                        @Header(AmqpHeaders.DELIVERY_TAG) long deliveryTag,
+                        @Header(name = RabbitMQConfig.FAILED_DELIVERIES_HEADER, required = false) Integer failedDeliveries,
+                        @Header(name = RabbitMQConfig.REPLAYED_HEADER, required = false) Boolean replayed)
+            throws IOException {
+        Long campaignId = batch.getCampaignId();
+        int failed = failedDeliveries != null ? failedDeliveries : 0;
+        CampaignProgress.CampaignProgressStatus status = campaignProgressRepository
+            .findStatusByCampaignId(campaignId)
+            .orElse(null);
+
+        if (status == CampaignProgress.CampaignProgressStatus.PAUSED) {
+            campaignBatchPublisher.publishToWait(batch, failed);
+            channel.basicAck(deliveryTag, false);
+            return;
+        }
+        if (status != CampaignProgress.CampaignProgressStatus.RUNNING) {
+            log.info("Dropping batch {} of campaign {} in status {}", batch.getBatchNumber(), campaignId, status);
+            campaignBatchSender.release(campaignId);
+            channel.basicAck(deliveryTag, false);
+            return;
+        }
+
+        try {
+            campaignRunRegistry.register(campaignId);
+            if (Boolean.TRUE.equals(replayed) &&
+                campaignBatchSender.withoutAttempted(campaignId, batch.getRecipients()).isEmpty()) {
+                // A resumed producer published this batch again, but the first copy was already sent and counted
+                log.info("Dropping replayed batch {} of campaign {}, already sent", batch.getBatchNumber(), campaignId);
+                channel.basicAck(deliveryTag, false);
+                return;
+            }
+            CampaignSendContext context = campaignBatchSender.contextFor(campaignId);
+            // Redelivered or parked batches may already have been partly sent
+            List<AudienceMember> recipients = campaignBatchSender.withoutDelivered(campaignId, batch.getRecipients());
+            boolean completed = campaignBatchSender.sendBatch(context, recipients, batch.getBatchNumber()).get();
+            if (completed) {
+                campaignBatchSender.completeBatch(campaignId);
+            } else if (campaignRunRegistry.signalOf(campaignId) == CampaignRunRegistry.Signal.PAUSE) {
+                campaignBatchPublisher.publishToWait(batch, failed);
+            }
+            channel.basicAck(deliveryTag, false);
+        } catch (InterruptedException e) {
+            // Shutting down: hand the batch back to another worker
+            Thread.currentThread().interrupt();
+            channel.basicNack(deliveryTag, false, true);
+        } catch (Exception e) {
+            log.error("Failed to send batch {} of campaign {} on delivery {} of {}: {}",
+                batch.getBatchNumber(), campaignId, failed + 1, maxDeliveries, e.getMessage(), e);
+            retryOrReject(batch, failed + 1, channel, deliveryTag);
+        }
+    }
+
+    /**
+     * Park a failed batch for another delivery, or once its deliveries are used up
+     * count its unattempted recipients as failed and reject it to the dead-letter queue
+     */
+    private void retryOrReject(SendBatchMessage batch, int failed, Channel channel, long deliveryTag) throws IOException {
+        try {
+            if (failed < maxDeliveries) {
+                campaignBatchPublisher.publishToWait(batch, failed);
+                channel.basicAck(deliveryTag, false);
+            } else {
+                campaignBatchSender.failBatch(batch.getCampaignId(), batch.getRecipients());
+                channel.basicNack(deliveryTag, false, false);
+            }
+        } catch (Exception e) {
+            // Broker or database still unavailable: hand the batch back as it is
+            log.error("Could not park or close out batch {} of campaign {}: {}",
+                batch.getBatchNumber(), batch.getCampaignId(), e.getMessage());
+            channel.basicNack(deliveryTag, false, true);
+        }
+    }
+}
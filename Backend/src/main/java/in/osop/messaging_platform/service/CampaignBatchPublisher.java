@@ -0,0 +1,168 @@
+package in.osop.messaging_platform.service;
+
+import in.osop.messaging_platform.config.RabbitMQConfig;
+import in.osop.messaging_platform.dto.AudienceMember;
+import in.osop.messaging_platform.dto.SendBatchMessage;
+import in.osop.messaging_platform.model.Campaign;
+import in.osop.messaging_platform.model.CampaignProgress;
+import in.osop.messaging_platform.model.SubscriptionStatus;
+import in.osop.messaging_platform.repository.AudienceCursor;
+import in.osop.messaging_platform.repository.CampaignProgressRepository;
+import in.osop.messaging_platform.repository.SubscriberRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Producer side of queue-dispatched campaigns.
+ *
+ * Streams the audience and publishes it to RabbitMQ in batches. Messages are
+ * persistent and every publish is confirmed by the broker; a bounded window of
+ * unconfirmed publishes keeps the producer from running far ahead of the broker.
+ * As each batch is confirmed its last subscriber id and batch number are saved
+ * as the publish cursor, so a campaign whose producer died part-way is resumed
+ * from there by another node.
+ */
+@Service
+@ConditionalOnProperty(name = "messaging.dispatch.mode", havingValue = "queue")
+@RequiredArgsConstructor
+@Slf4j
+public class CampaignBatchPublisher {
+
+    private final RabbitTemplate rabbitTemplate;
+    private final SubscriberRepository subscriberRepository;
+    private final CampaignProgressRepository campaignProgressRepository;
+    private final CampaignBatchSender campaignBatchSender;
+
+    @Value("${messaging.queue.max-unconfirmed:32}")
+    private int maxUnconfirmed;
+
+    @Value("${messaging.queue.confirm-timeout-ms:30000}")
+    private long confirmTimeoutMs;
+
+    /**
+     * Publish the whole audience of a campaign, then record the final batch count
+     * so consumers can tell when the last batch has been sent.
+     */
+    public void publishCampaign(Campaign campaign, int batchSize) {
+        publishFrom(campaign.getId(), batchSize, 0L, 0, false);
+    }
+
+    /**
+     * Continue publishing a campaign from its saved publish cursor. Batches after
+     * the cursor may have reached the broker unconfirmed before the producer died;
+     * the ones that may have are published again marked as replayed, and consumers
+     * drop such a copy when every recipient in it already has a log.
+     */
+    public void resumeCampaign(CampaignProgress progress) {
+        log.info("Resuming publishing of campaign {} after batch {}", progress.getCampaignId(), progress.getPublishedBatches());
+        publishFrom(progress.getCampaignId(), progress.getBatchSize(), progress.getLastSubscriberId(),
+            progress.getPublishedBatches(), true);
+    }
+
+    private void publishFrom(Long campaignId, int batchSize, long afterId, int confirmedBatches, boolean resumed) {
+        AudienceCursor audience = subscriberRepository.openAudienceCursor(SubscriptionStatus.ACTIVE, afterId, batchSize);
+        Deque<PendingBatch> unconfirmed = new ArrayDeque<>();
+        int batchNumber = confirmedBatches;
+        int lastReplayed = resumed ? confirmedBatches + maxUnconfirmed : 0;
+
+        while (audience.hasNext()) {
+            List<AudienceMember> recipients = audience.next();
+            batchNumber++;
+            CorrelationData correlation = publish(RabbitMQConfig.BATCH_ROUTING_KEY,
+                new SendBatchMessage(campaignId, batchNumber, recipients), 0, batchNumber <= lastReplayed);
+            unconfirmed.add(new PendingBatch(correlation, audience.getLastId(), batchNumber));
+            if (unconfirmed.size() >= maxUnconfirmed) {
+                confirm(campaignId, unconfirmed.poll());
+            }
+        }
+        while (!unconfirmed.isEmpty()) {
+            confirm(campaignId, unconfirmed.poll());
+        }
+
+        log.info("Published {} batches for campaign {}", batchNumber, campaignId);
+        campaignProgressRepository.updateTotalBatches(campaignId, batchNumber);
+        if (batchNumber == 0) {
+            campaignBatchSender.completeCampaign(campaignId);
+        } else {
+            // Consumers may already have sent every batch before the count was known
+            campaignBatchSender.completeCampaignIfDone(campaignId);
+        }
+    }
+
+    /**
+     * Park a batch until the wait queue hands it back, either because its campaign
+     * is paused or to retry it after {@code failedDeliveries} failed deliveries
+     */
+    public void publishToWait(SendBatchMessage batch, int failedDeliveries) {
+        // Not replayed any more: whatever this delivery logged must count the batch as done later on
+        awaitConfirm(publish(RabbitMQConfig.WAIT_ROUTING_KEY, batch, failedDeliveries, false));
+    }
+
+    private CorrelationData publish(String routingKey, SendBatchMessage batch, int failedDeliveries, boolean replayed) {
+        CorrelationData correlation = new CorrelationData(batch.getCampaignId() + "-" + batch.getBatchNumber());
+        // Spring AMQP publishes with PERSISTENT delivery mode by default
+        rabbitTemplate.convertAndSend(RabbitMQConfig.CAMPAIGN_EXCHANGE, routingKey, batch, message -> {
+            if (failedDeliveries > 0) {
+                message.getMessageProperties().setHeader(RabbitMQConfig.FAILED_DELIVERIES_HEADER, failedDeliveries);
+            }
+            if (replayed) {
+                message.getMessageProperties().setHeader(RabbitMQConfig.REPLAYED_HEADER, true);
+            }
+            return message;
+        }, correlation);
+        return correlation;
+    }
+
+    private void confirm(Long campaignId, PendingBatch batch) {
+        awaitConfirm(batch.correlation);
+        // Confirms are awaited in publish order, so the cursor only moves forward
+        campaignProgressRepository.savePublishCursor(campaignId, batch.lastSubscriberId, batch.batchNumber,
+            LocalDateTime.now());
+    }
+
+    private void awaitConfirm(CorrelationData correlation) {
+        CorrelationData.Confirm confirm;
+        try {
+            confirm = correlation.getFuture().get(confirmTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AmqpException("Interrupted waiting for confirm of batch " + correlation.getId(), e);
+        } catch (Exception e) {
+            throw new AmqpException("No broker confirm for batch " + correlation.getId(), e);
+        }
+        if (!confirm.isAck()) {
+            throw new AmqpException("Broker rejected batch " + correlation.getId() + ": " + confirm.getReason());
+        }
+        if (correlation.getReturned() != null) {
+            throw new AmqpException("Batch " + correlation.getId() + " was not routed to a queue: "
+                + correlation.getReturned().getReplyText());
+        }
+    }
+
+    /**
+     * A published batch waiting for its broker confirm
+     */
+    private static final class PendingBatch {
+        private final CorrelationData correlation;
+        private final long lastSubscriberId;
+        private final int batchNumber;
+
+        private PendingBatch(CorrelationData correlation, long lastSubscriberId, int batchNumber) {
+            this.correlation = correlation;
+            this.lastSubscriberId = lastSubscriberId;
+            this.batchNumber = batchNumber;
+        }
+    }
+}
@@ -0,0 +1,507 @@
+package in.osop.messaging_platform.service;
+
+import in.osop.messaging_platform.dto.AudienceMember;
+import in.osop.messaging_platform.model.*;
+import in.osop.messaging_platform.repository.CampaignProgressRepository;
+import in.osop.messaging_platform.repository.CampaignRepository;
+import in.osop.messaging_platform.repository.MessageLogRepository;
+import in.osop.messaging_platform.repository.SubscriberRepository;
+import in.osop.messaging_platform.repository.TenantRepository;
+import io.github.bucket4j.Bucket;
+import jakarta.mail.internet.MimeMessage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Sends one batch of campaign recipients, paced by the campaign's rate limits
+ * and spread across recipient domains by the {@link DomainSendScheduler}.
+ * Batches of different tenants take turns through the {@link TenantSendScheduler}.
+ *
+ * Shared by the in-process campaign loop and the queue consumers, so a batch is
+ * sent the same way wherever it runs. Per-recipient counts go to the
+ * {@link CampaignProgressTracker}; batch bookkeeping is applied with relative
+ * UPDATEs because several workers may send batches of the same campaign
+ * concurrently.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CampaignBatchSender {
+
+    private static final long CONTEXT_IDLE_MS = 10 * 60 * 1000L;
+    // How long a batch waits before trying a full send executor again
+    private static final long REJECTED_RETRY_NANOS = 100_000_000L;
+
+    private final JavaMailSender mailSender;
+    private final SmtpTransportPool smtpTransportPool;
+    private final MessageLogRepository messageLogRepository;
+    private final MessageLogWriter messageLogWriter;
+    private final SubscriberRepository subscriberRepository;
+    private final CampaignRepository campaignRepository;
+    private final CampaignProgressRepository campaignProgressRepository;
+    private final TenantRepository tenantRepository;
+    private final ActivityLogService activityLogService;
+    private final SendRateLimiter sendRateLimiter;
+    private final DomainSendScheduler domainSendScheduler;
+    private final TenantSendScheduler tenantSendScheduler;
+    private final CampaignRunRegistry campaignRunRegistry;
+    private final CampaignProgressTracker campaignProgressTracker;
+    private final MessageRetryService messageRetryService;
+    private final TrackingTokenCodec trackingTokenCodec;
+    private final TaskScheduler taskScheduler;
+    private final Executor emailTaskExecutor;
+
+    @Value("${tracking.base-url:http://localhost:8080/api/tracking}")
+    private String trackingBaseUrl;
+
+    private final Map<Long, CampaignSendContext> contexts = new ConcurrentHashMap<>();
+
+    /**
+     * Send context for a campaign, created on first use and shared afterwards
+     */
+    public CampaignSendContext contextFor(Long campaignId) {
+        CampaignSendContext context = contexts.computeIfAbsent(campaignId, this::createContext);
+        context.touch();
+        return context;
+    }
+
+    /**
+     * Drop the cached send context once a campaign has finished on this node
+     */
+    public void release(Long campaignId) {
+        contexts.remove(campaignId);
+    }
+
+    /**
+     * Send a batch once the tenant's turn comes up, handing the sending thread back
+     * whenever rate limits are exhausted. The future completes with {@code true} when
+     * every recipient of the batch has been attempted, or {@code false} when a pause
+     * or cancel signal stopped it early.
+     */
+    public CompletableFuture<Boolean> sendBatch(CampaignSendContext context, List<AudienceMember> batch, int batchNumber) {
+        return submit(context, batch, batchNumber, null);
+    }
+
+    /**
+     * Send claimed retries of a campaign through the same pipeline as its batches.
+     * Outcomes update the existing message logs instead of adding new ones and
+     * recipients that have been delivered in the meantime are dropped. Merge
+     * fields are reloaded from the subscribers so retries render like the first try.
+     */
+    public CompletableFuture<Boolean> sendRetries(Long campaignId, List<MessageLog> retries) {
+        Map<String, MessageLog> byRecipient = new LinkedHashMap<>();
+        for (MessageLog retry : retries) {
+            byRecipient.putIfAbsent(retry.getRecipient(), retry);
+        }
+        Map<String, AudienceMember> subscribers = new HashMap<>();
+        for (AudienceMember member : subscriberRepository.findAudienceByEmails(byRecipient.keySet())) {
+            subscribers.put(member.getEmail(), member);
+        }
+        List<AudienceMember> members = new ArrayList<>(byRecipient.size());
+        for (String recipient : byRecipient.keySet()) {
+            AudienceMember member = subscribers.get(recipient);
+            members.add(member != null ? member : new AudienceMember(null, recipient, null, null));
+        }
+        List<AudienceMember> remaining = withoutDelivered(campaignId, members);
+        if (remaining.size() < members.size()) {
+            Set<String> kept = new HashSet<>();
+            remaining.forEach(member -> kept.add(member.getEmail()));
+            List<Long> delivered = new ArrayList<>();
+            byRecipient.forEach((recipient, retry) -> {
+                if (!kept.contains(recipient)) {
+                    delivered.add(retry.getId());
+                }
+            });
+            messageLogRepository.abandonRetries(delivered, MessageStatus.FAILED);
+        }
+        if (remaining.isEmpty()) {
+            return CompletableFuture.completedFuture(true);
+        }
+        return submit(contextFor(campaignId), remaining, 0, byRecipient);
+    }
+
+    /**
+     * Drop recipients that already have a SENT log for the campaign, used when a
+     * batch may have been partially sent before a pause, crash or redelivery
+     */
+    public List<AudienceMember> withoutDelivered(Long campaignId, List<AudienceMember> batch) {
+        if (batch.isEmpty()) {
+            return batch;
+        }
+        List<AudienceMember> remaining = without(batch, messageLogRepository.findRecipientsWithStatus(
+            campaignId, MessageStatus.SENT, emailsOf(batch)));
+        if (remaining.size() < batch.size()) {
+            log.info("Skipping {} already delivered recipients of campaign {}", batch.size() - remaining.size(), campaignId);
+        }
+        return remaining;
+    }
+
+    /**
+     * Drop recipients that already have any log for the campaign, sent or failed
+     */
+    public List<AudienceMember> withoutAttempted(Long campaignId, List<AudienceMember> batch) {
+        if (batch.isEmpty()) {
+            return batch;
+        }
+        return without(batch, messageLogRepository.findRecipientsWithLog(campaignId, emailsOf(batch)));
+    }
+
+    /**
+     * Count a finished batch and complete the campaign if it was the last one
+     */
+    public void completeBatch(Long campaignId) {
+        campaignProgressRepository.incrementCompletedBatches(campaignId, LocalDateTime.now());
+        completeCampaignIfDone(campaignId);
+    }
+
+    /**
+     * Close out a batch that will never be sent, e.g. one dead-lettered after its
+     * deliveries ran out: recipients never attempted count as failed and the
+     * batch counts as done, so the campaign can still complete
+     */
+    public void failBatch(Long campaignId, List<AudienceMember> batch) {
+        // Recipients with a log were counted when it was written
+        List<AudienceMember> unattempted = withoutAttempted(campaignId, batch);
+        for (int i = 0; i < unattempted.size(); i++) {
+            campaignProgressTracker.recordFailure(campaignId);
+        }
+        log.warn("Batch of campaign {} abandoned, {} recipients counted as failed", campaignId, unattempted.size());
+        completeBatch(campaignId);
+    }
+
+    /**
+     * Mark the campaign completed once every planned batch has been sent.
+     * The conditional UPDATE makes exactly one caller win the transition.
+     */
+    public void completeCampaignIfDone(Long campaignId) {
+        campaignProgressTracker.flush(campaignId);
+        int updated = campaignProgressRepository.completeIfAllBatchesDone(campaignId,
+            CampaignProgress.CampaignProgressStatus.RUNNING,
+            CampaignProgress.CampaignProgressStatus.COMPLETED,
+            LocalDateTime.now());
+        if (updated > 0) {
+            onCampaignCompleted(campaignId);
+        }
+    }
+
+    /**
+     * Mark a running campaign completed regardless of batch counts, e.g. an empty audience
+     */
+    public void completeCampaign(Long campaignId) {
+        campaignProgressTracker.flush(campaignId);
+        int updated = campaignProgressRepository.completeIfRunning(campaignId,
+            CampaignProgress.CampaignProgressStatus.RUNNING,
+            CampaignProgress.CampaignProgressStatus.COMPLETED,
+            LocalDateTime.now());
+        if (updated > 0) {
+            onCampaignCompleted(campaignId);
+        }
+    }
+
+    private void onCampaignCompleted(Long campaignId) {
+        release(campaignId);
+        campaignRunRegistry.release(campaignId);
+
+        Campaign campaign = campaignRepository.findById(campaignId).orElse(null);
+        if (campaign == null) {
+            return;
+        }
+        campaign.setStatus(CampaignStatus.COMPLETED);
+        campaign.setCompletedAt(LocalDateTime.now());
+        campaignRepository.save(campaign);
+
+        log.info("Campaign {} completed successfully", campaignId);
+        activityLogService.logActivity(
+            ActivityLog.ActivityType.CAMPAIGN_COMPLETED,
+            "Campaign Completed",
+            "Campaign '" + campaign.getName() + "' has been completed successfully",
+            "system",
+            "campaign",
+            campaignId
+        );
+    }
+
+    /**
+     * Build the campaign message for one recipient from the body compiled once
+     * per campaign. Tracked campaigns are sent as HTML whose pixel and links
+     * carry the campaign and subscriber, so opens and clicks are attributed to both.
+     */
+    public MimeMessage buildMessage(CampaignSendContext context, AudienceMember recipient) throws jakarta.mail.MessagingException {
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, "UTF-8");
+        helper.setTo(recipient.getEmail());
+        helper.setSubject(context.getCampaign().getSubject());
+        TrackingToken tracking = context.isHtml() && recipient.getId() != null
+            ? TrackingToken.of(context.getTenantId(), context.getCampaignId(), recipient.getId(), null)
+            : null;
+        helper.setText(context.getBody().render(recipient.getEmail(), recipient.getFirstName(), recipient.getLastName(),
+            tracking), context.isHtml());
+        return message;
+    }
+
+    /**
+     * Forget contexts of campaigns this node has not sent for a while
+     */
+    @Scheduled(fixedDelay = 60000)
+    public void evictIdleContexts() {
+        long cutoff = System.currentTimeMillis() - CONTEXT_IDLE_MS;
+        contexts.values().removeIf(context -> context.getLastUsedAt() < cutoff);
+    }
+
+    /**
+     * Send as many chunks as the rate limits allow, visiting the batch's domains
+     * round-robin, then reschedule or finish
+     */
+    private void pump(BatchSend send) {
+        try {
+            List<Bucket> rateLimits = send.context.getRateLimits();
+            int blocked = 0;
+            long waitNanos = Long.MAX_VALUE;
+            while (!send.queues.isEmpty()) {
+                if (campaignRunRegistry.isStopped(send.context.getCampaignId())) {
+                    log.info("Campaign {} stopped during batch {}, {} recipients left unsent",
+                        send.context.getCampaignId(), send.batchNumber, send.remaining);
+                    break;
+                }
+                DomainSendScheduler.DomainQueue queue = send.queues.pollFirst();
+                DomainSendScheduler.Lease lease = domainSendScheduler.tryAcquire(
+                    queue.getLaneKey(), rateLimits, queue.getMembers().size());
+                if (lease.getGranted() == 0) {
+                    send.queues.addLast(queue);
+                    waitNanos = Math.min(waitNanos, lease.getWaitNanos());
+                    // Give up on this round once every domain is throttled, or the campaign itself is
+                    if (++blocked >= send.queues.size() || sendRateLimiter.nanosUntilAvailable(rateLimits) > 0) {
+                        resumeLater(send, Math.max(waitNanos, 1_000_000L));
+                        return;
+                    }
+                    continue;
+                }
+                blocked = 0;
+                waitNanos = Long.MAX_VALUE;
+
+                List<AudienceMember> chunk = new ArrayList<>((int) lease.getGranted());
+                for (int i = 0; i < lease.getGranted(); i++) {
+                    chunk.add(queue.getMembers().poll());
+                }
+                try {
+                    sendChunk(send, chunk);
+                } finally {
+                    lease.release();
+                }
+                send.remaining -= chunk.size();
+                if (!queue.getMembers().isEmpty()) {
+                    send.queues.addLast(queue);
+                }
+            }
+
+            // Logs must be durable before the batch counts as done, resume deduplicates against them
+            messageLogWriter.flush();
+            send.done.complete(send.queues.isEmpty());
+        } catch (Exception e) {
+            send.done.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Continue a batch on the send executor after a wait. A full executor only
+     * delays it further; if the scheduler refuses the task the batch fails, so
+     * its future always completes and its tenant slot is given back.
+     */
+    private void resumeLater(BatchSend send, long delayNanos) {
+        try {
+            taskScheduler.schedule(() -> {
+                try {
+                    emailTaskExecutor.execute(() -> pump(send));
+                } catch (RejectedExecutionException e) {
+                    resumeLater(send, REJECTED_RETRY_NANOS);
+                }
+            }, Instant.now().plusNanos(delayNanos));
+        } catch (Exception e) {
+            send.done.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Send a chunk of a batch over a single pooled SMTP connection
+     */
+    private void sendChunk(BatchSend send, List<AudienceMember> subscribers) {
+        long startTime = System.currentTimeMillis();
+
+        List<String> recipients = new ArrayList<>(subscribers.size());
+        List<MimeMessage> messages = new ArrayList<>(subscribers.size());
+        for (AudienceMember subscriber : subscribers) {
+            try {
+                messages.add(buildMessage(send.context, subscriber));
+                recipients.add(subscriber.getEmail());
+            } catch (Exception e) {
+                log.error("Failed to build email for {}: {}", subscriber.getEmail(), e.getMessage());
+                recordFailure(send, subscriber.getEmail(), e, 0L);
+            }
+        }
+
+        Map<Integer, Exception> failures = smtpTransportPool.sendAll(messages, SendPriority.BULK);
+        long processingTime = (System.currentTimeMillis() - startTime) / Math.max(1, messages.size());
+
+        for (int i = 0; i < recipients.size(); i++) {
+            Exception failure = failures.get(i);
+            if (failure == null) {
+                recordSuccess(send, recipients.get(i), processingTime);
+            } else {
+                log.error("Failed to send email to {}: {}", recipients.get(i), failure.getMessage());
+                recordFailure(send, recipients.get(i), failure, processingTime);
+            }
+        }
+    }
+
+    private static List<String> emailsOf(List<AudienceMember> batch) {
+        List<String> emails = new ArrayList<>(batch.size());
+        for (AudienceMember member : batch) {
+            emails.add(member.getEmail());
+        }
+        return emails;
+    }
+
+    private static List<AudienceMember> without(List<AudienceMember> batch, List<String> excluded) {
+        if (excluded.isEmpty()) {
+            return batch;
+        }
+        Set<String> skipped = new HashSet<>(excluded);
+        List<AudienceMember> remaining = new ArrayList<>(batch.size());
+        for (AudienceMember member : batch) {
+            if (!skipped.contains(member.getEmail())) {
+                remaining.add(member);
+            }
+        }
+        return remaining;
+    }
+
+    private CompletableFuture<Boolean> submit(CampaignSendContext context, List<AudienceMember> batch, int batchNumber,
+                                              Map<String, MessageLog> retries) {
+        return tenantSendScheduler.submit(context.getTenantId(), context.getPlan(), batch.size(), () -> {
+            if (retries == null) {
+                log.info("Sending batch {} for campaign {} with {} subscribers", batchNumber, context.getCampaignId(), batch.size());
+            }
+            BatchSend send = new BatchSend(context, domainSendScheduler.partition(batch), batch.size(), batchNumber, retries);
+            pump(send);
+            return send.done;
+        });
+    }
+
+    private void recordSuccess(BatchSend send, String recipient, long processingTime) {
+        if (send.retries != null) {
+            messageRetryService.retrySucceeded(send.retries.get(recipient), processingTime);
+            activityLogService.logEmailSent(recipient, send.context.getCampaignId(), "system");
+            return;
+        }
+        MessageLog messageLog = MessageLog.builder()
+            .campaignId(send.context.getCampaignId())
+            .batchNumber(send.batchNumber)
+            .channel(MessageChannel.EMAIL)
+            .recipient(recipient)
+            .status(MessageStatus.SENT)
+            .sentAt(LocalDateTime.now())
+            .processingTimeMs(processingTime)
+            .timestamp(LocalDateTime.now())
+            .build();
+        messageLogWriter.write(messageLog);
+
+        // Log activity
+        activityLogService.logEmailSent(recipient, send.context.getCampaignId(), "system");
+        campaignProgressTracker.recordSuccess(send.context.getCampaignId());
+    }
+
+    private void recordFailure(BatchSend send, String recipient, Exception failure, long processingTime) {
+        if (send.retries != null) {
+            messageRetryService.retryFailed(send.retries.get(recipient), failure);
+            return;
+        }
+        MessageLog messageLog = MessageLog.builder()
+            .campaignId(send.context.getCampaignId())
+            .batchNumber(send.batchNumber)
+            .channel(MessageChannel.EMAIL)
+            .recipient(recipient)
+            .status(MessageStatus.FAILED)
+            .errorMessage(failure.getMessage())
+            .retryCount(0)
+            .maxRetries(3)
+            .processingTimeMs(processingTime)
+            .timestamp(LocalDateTime.now())
+            .build();
+        messageRetryService.planRetry(messageLog, failure);
+        messageLogWriter.write(messageLog);
+        campaignProgressTracker.recordFailure(send.context.getCampaignId());
+    }
+
+    private CampaignSendContext createContext(Long campaignId) {
+        Campaign campaign = campaignRepository.findById(campaignId)
+            .orElseThrow(() -> new RuntimeException("Campaign not found: " + campaignId));
+        Integer ratePerMinute = campaignProgressRepository.findByCampaignId(campaignId)
+            .map(CampaignProgress::getRateLimitPerMinute)
+            .orElse(null);
+
+        // Buckets a campaign's sends must pass: campaign pace, tenant plan, relay ceiling
+        List<Bucket> buckets = new ArrayList<>(3);
+        Bucket campaignBucket = sendRateLimiter.campaignBucket(ratePerMinute);
+        if (campaignBucket != null) {
+            buckets.add(campaignBucket);
+        }
+        Tenant tenant = campaign.getTenantId() != null
+            ? tenantRepository.findById(campaign.getTenantId()).orElse(null)
+            : null;
+        if (tenant != null) {
+            buckets.add(sendRateLimiter.tenantBucket(tenant.getId(), tenant.getPlan()));
+        }
+        buckets.add(sendRateLimiter.relayBucket(smtpTransportPool.getRelayId()));
+        boolean tracked = Boolean.TRUE.equals(campaign.getTrackOpens()) || Boolean.TRUE.equals(campaign.getTrackClicks())
+            || Boolean.TRUE.equals(campaign.getAddUnsubscribeLink());
+        EmailSkeleton body = tracked
+            ? EmailSkeleton.compileHtml(campaign.getBody() != null ? campaign.getBody() : "", trackingBaseUrl,
+                trackingTokenCodec, Boolean.TRUE.equals(campaign.getTrackOpens()),
+                Boolean.TRUE.equals(campaign.getTrackClicks()), Boolean.TRUE.equals(campaign.getAddUnsubscribeLink()))
+            : EmailSkeleton.compileText(campaign.getBody());
+        return new CampaignSendContext(campaign, tenant != null ? tenant.getPlan() : null, buckets, body, tracked);
+    }
+
+    /**
+     * One batch in flight; only ever touched by one thread at a time
+     */
+    private static final class BatchSend {
+        private final CampaignSendContext context;
+        private final Deque<DomainSendScheduler.DomainQueue> queues;
+        private final int batchNumber;
+        // Message logs being retried by recipient, null for a regular batch
+        private final Map<String, MessageLog> retries;
+        private final CompletableFuture<Boolean> done = new CompletableFuture<>();
+        private int remaining;
+
+        private BatchSend(CampaignSendContext context, Deque<DomainSendScheduler.DomainQueue> queues,
+                          int size, int batchNumber, Map<String, MessageLog> retries) {
+            this.context = context;
+            this.queues = queues;
+            this.remaining = size;
+            this.batchNumber = batchNumber;
+            this.retries = retries;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package in.osop.messaging_platform.service;
+
+import in.osop.messaging_platform.model.EmailEventType;
+import in.osop.messaging_platform.repository.CampaignRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Coalesces campaign counter increments in memory.
+ *
+ * Email events only bump a {@link CoalescingCounters} entry per campaign and
+ * event type. Every flush interval the deltas of a campaign are written with a single
+ * relative UPDATE, so concurrent events neither lose counts nor queue up on
+ * the campaign's row lock. Rates are derived from the counters when read.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CampaignCounterAggregator {
+
+    private final CampaignRepository campaignRepository;
+
+    private final CoalescingCounters<CounterKey> pending = new CoalescingCounters<>();
+
+    /**
+     * Whether events of this type are counted on the campaign
+     */
+    public static boolean isCounted(EmailEventType eventType) {
+        return switch (eventType) {
+            case SENT, DELIVERED, OPENED, CLICKED, BOUNCED, UNSUBSCRIBED -> true;
+            default -> false;
+        };
+    }
+
+    public void record(Long campaignId, EmailEventType eventType) {
+        record(campaignId, eventType, 1);
+    }
+
+    public void record(Long campaignId, EmailEventType eventType, int count) {
+        if (campaignId == null || count == 0 || !isCounted(eventType)) {
+            return;
+        }
+        pending.add(new CounterKey(campaignId, eventType), count);
+    }
+
+    @Scheduled(fixedDelayString = "${campaign.counters.flush-interval-ms:1000}")
+    public void flush() {
+        Map<Long, List<Delta>> byCampaign = new HashMap<>();
+        for (CounterKey key : pending.keys()) {
+            long delta = pending.take(key);
+            if (delta == 0) {
+                // Quiet since the last flush; forget it
+                pending.evict(key);
+                continue;
+            }
+            byCampaign.computeIfAbsent(key.campaignId, id -> new ArrayList<>()).add(new Delta(key, delta));
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        byCampaign.forEach((campaignId, deltas) -> {
+            int[] counts = new int[EmailEventType.values().length];
+            deltas.forEach(delta -> counts[delta.key.eventType.ordinal()] += (int) delta.count);
+            try {
+                campaignRepository.addCounters(campaignId,
+                    counts[EmailEventType.SENT.ordinal()],
+                    counts[EmailEventType.DELIVERED.ordinal()],
+                    counts[EmailEventType.OPENED.ordinal()],
+                    counts[EmailEventType.CLICKED.ordinal()],
+                    counts[EmailEventType.BOUNCED.ordinal()],
+                    counts[EmailEventType.UNSUBSCRIBED.ordinal()],
+                    now);
+            } catch (Exception e) {
+                // Put the counts back so the next flush retries them
+                deltas.forEach(delta -> record(campaignId, delta.key.eventType, (int) delta.count));
+                log.error("Failed to update counters of campaign {}: {}", campaignId, e.getMessage());
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    private static final class CounterKey {
+        private final Long campaignId;
+        private final EmailEventType eventType;
+    }
+
+    @AllArgsConstructor
+    private static final class Delta {
+        private final CounterKey key;
+        private final long count;
+    }
+}
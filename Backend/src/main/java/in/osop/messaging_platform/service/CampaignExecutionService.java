@@ -35,6 +35,7 @@ public class CampaignExecutionService {
     private final EmailService emailService;
     private final WebSocketService webSocketService;
     private final ActivityLogService activityLogService;
+    private final CampaignRunRegistry campaignRunRegistry;
 
     /**
      * Execute a campaign
@@ -183,6 +184,9 @@ public class CampaignExecutionService {
         progress.setStatus(CampaignProgress.CampaignProgressStatus.PAUSED);
         campaignProgressRepository.save(progress);
         
+        // Stop senders on every node between chunks
+        campaignRunRegistry.signal(campaignId, CampaignRunRegistry.Signal.PAUSE);
+        
         // Log activity
         activityLogService.logActivity(
             ActivityLog.ActivityType.CAMPAIGN_PAUSED,
@@ -226,6 +230,7 @@ public class CampaignExecutionService {
         
         progress.setStatus(CampaignProgress.CampaignProgressStatus.RUNNING);
         campaignProgressRepository.save(progress);
+        campaignRunRegistry.signal(campaignId, CampaignRunRegistry.Signal.RUN);
         
         // Log activity
         activityLogService.logActivity(
@@ -244,8 +249,8 @@ public class CampaignExecutionService {
             "resumedAt", LocalDateTime.now().toString()
         ));
         
-        // Continue async execution
-        asyncEmailService.sendCampaignAsync(campaignId);
+        // Continue async execution from the last checkpoint
+        asyncEmailService.resumeCampaignAsync(campaignId);
     }
     
     /**
@@ -275,6 +280,9 @@ public class CampaignExecutionService {
         progress.setCompletedAt(LocalDateTime.now());
         campaignProgressRepository.save(progress);
         
+        // Stop senders on every node between chunks
+        campaignRunRegistry.signal(campaignId, CampaignRunRegistry.Signal.CANCEL);
+        
         // Log activity
         activityLogService.logActivity(
             ActivityLog.ActivityType.CAMPAIGN_CANCELLED,
@@ -0,0 +1,130 @@
+package in.osop.messaging_platform.service;
+
+import in.osop.messaging_platform.dto.CampaignProgressDto;
+import in.osop.messaging_platform.model.CampaignProgress;
+import in.osop.messaging_platform.repository.CampaignProgressRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * In-memory send counts of the campaigns this node is sending.
+ *
+ * Sender threads bump a {@link CoalescingCounters} entry per campaign and
+ * outcome, which stays uncontended however many threads send the same campaign.
+ * Sent is always success plus failed, so a flush cannot catch one without the
+ * other. A timer writes each campaign's deltas with a relative UPDATE; live
+ * progress is the stored row plus the deltas not flushed yet.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CampaignProgressTracker {
+
+    private final CampaignProgressRepository campaignProgressRepository;
+
+    private final CoalescingCounters<CountKey> pending = new CoalescingCounters<>();
+
+    public void recordSuccess(Long campaignId) {
+        pending.add(new CountKey(campaignId, true), 1);
+    }
+
+    public void recordFailure(Long campaignId) {
+        pending.add(new CountKey(campaignId, false), 1);
+    }
+
+    /**
+     * Live progress of every running campaign, wherever it is sent: the stored
+     * rows, read in one query, plus the deltas this node has not flushed yet
+     */
+    public List<CampaignProgressDto> liveProgress() {
+        List<CampaignProgress> running = campaignProgressRepository.findByStatus(
+            CampaignProgress.CampaignProgressStatus.RUNNING);
+        List<CampaignProgressDto> live = new ArrayList<>(running.size());
+        running.forEach(stored -> live.add(toDto(stored)));
+        return live;
+    }
+
+    @Scheduled(fixedDelayString = "${campaign.progress.flush-interval-ms:1000}")
+    public void flushAll() {
+        Set<Long> campaignIds = new HashSet<>();
+        pending.keys().forEach(key -> campaignIds.add(key.campaignId));
+        campaignIds.forEach(this::flush);
+    }
+
+    /**
+     * Write a campaign's pending deltas now, e.g. before marking it finished
+     */
+    public void flush(Long campaignId) {
+        CountKey successKey = new CountKey(campaignId, true);
+        CountKey failedKey = new CountKey(campaignId, false);
+        long success = pending.take(successKey);
+        long failed = pending.take(failedKey);
+        if (success == 0 && failed == 0) {
+            // Quiet since the last flush; forget the campaign until it sends again
+            pending.evict(successKey);
+            pending.evict(failedKey);
+            return;
+        }
+        try {
+            campaignProgressRepository.addBatchResults(campaignId, (int) (success + failed), (int) success,
+                (int) failed, LocalDateTime.now());
+        } catch (Exception e) {
+            // Put the counts back so the next flush retries them
+            pending.add(successKey, success);
+            pending.add(failedKey, failed);
+            log.error("Failed to flush progress of campaign {}: {}", campaignId, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushAll();
+    }
+
+    private CampaignProgressDto toDto(CampaignProgress stored) {
+        int pendingSuccess = (int) pending.sum(new CountKey(stored.getCampaignId(), true));
+        int pendingFailed = (int) pending.sum(new CountKey(stored.getCampaignId(), false));
+        int sent = stored.getEmailsSent() + pendingSuccess + pendingFailed;
+        int success = stored.getEmailsSuccess() + pendingSuccess;
+        int failed = stored.getEmailsFailed() + pendingFailed;
+        int total = stored.getTotalRecipients() != null ? stored.getTotalRecipients() : 0;
+
+        return CampaignProgressDto.builder()
+            .campaignId(stored.getCampaignId())
+            .status(stored.getStatus().toString())
+            .totalRecipients(stored.getTotalRecipients())
+            .emailsSent(sent)
+            .emailsSuccess(success)
+            .emailsFailed(failed)
+            .emailsInProgress(stored.getEmailsInProgress())
+            .progressPercentage(total > 0 ? (double) sent / total * 100.0 : 0.0)
+            .successRate(sent > 0 ? (double) success / sent * 100.0 : 0.0)
+            .failureRate(sent > 0 ? (double) failed / sent * 100.0 : 0.0)
+            .currentBatchNumber(stored.getCurrentBatchNumber())
+            .totalBatches(stored.getTotalBatches())
+            .scheduledTime(stored.getScheduledTime())
+            .startedAt(stored.getStartedAt())
+            .completedAt(stored.getCompletedAt())
+            .lastBatchSentAt(stored.getLastBatchSentAt())
+            .errorMessage(stored.getErrorMessage())
+            .build();
+    }
+
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    private static final class CountKey {
+        private final Long campaignId;
+        private final boolean success;
+    }
+}
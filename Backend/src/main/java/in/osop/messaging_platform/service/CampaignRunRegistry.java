@@ -0,0 +1,137 @@
+package in.osop.messaging_platform.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Control flags of the campaigns being sent, checked by senders between chunks.
+ *
+ * Pause and cancel flip a volatile flag, so senders on this node see them on
+ * their next chunk. With {@code messaging.control.redis.enabled} the signal is
+ * also broadcast over Redis pub/sub and applied on every other node.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CampaignRunRegistry {
+
+    public static final String CONTROL_CHANNEL = "campaign-control";
+
+    private final ObjectProvider<StringRedisTemplate> redisTemplate;
+
+    @Value("${messaging.control.redis.enabled:false}")
+    private boolean broadcastEnabled;
+
+    private final Map<Long, CampaignControl> controls = new ConcurrentHashMap<>();
+
+    public enum Signal {
+        RUN, PAUSE, CANCEL
+    }
+
+    /**
+     * Register a run of the campaign on this node, clearing any earlier stop signal.
+     * Callers do this after reading a RUNNING status at the start of a batch; since
+     * signals go out after commit, a later stop signal still wins.
+     */
+    public void register(Long campaignId) {
+        controls.computeIfAbsent(campaignId, id -> new CampaignControl()).signal = Signal.RUN;
+    }
+
+    /**
+     * Whether senders of the campaign should stop before the next chunk
+     */
+    public boolean isStopped(Long campaignId) {
+        CampaignControl control = controls.get(campaignId);
+        return control != null && control.signal != Signal.RUN;
+    }
+
+    public Signal signalOf(Long campaignId) {
+        CampaignControl control = controls.get(campaignId);
+        return control != null ? control.signal : Signal.RUN;
+    }
+
+    /**
+     * Whether stop signals reach this node from every other node. Without the
+     * broadcast, senders also have to check the stored status between batches.
+     */
+    public boolean isBroadcastEnabled() {
+        return broadcastEnabled;
+    }
+
+    /**
+     * Apply a signal here and broadcast it to the other nodes, after the
+     * surrounding transaction commits so the stored status agrees with it
+     */
+    public void signal(Long campaignId, Signal signal) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publish(campaignId, signal);
+                }
+            });
+        } else {
+            publish(campaignId, signal);
+        }
+    }
+
+    private void publish(Long campaignId, Signal signal) {
+        apply(campaignId, signal);
+        if (broadcastEnabled) {
+            try {
+                redisTemplate.getObject().convertAndSend(CONTROL_CHANNEL, campaignId + ":" + signal.name());
+            } catch (Exception e) {
+                log.error("Failed to broadcast {} for campaign {}: {}", signal, campaignId, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Apply a signal received from the control channel
+     */
+    public void onBroadcast(String message) {
+        int separator = message.indexOf(':');
+        if (separator <= 0) {
+            log.warn("Ignoring malformed campaign control message: {}", message);
+            return;
+        }
+        try {
+            apply(Long.valueOf(message.substring(0, separator)), Signal.valueOf(message.substring(separator + 1)));
+        } catch (IllegalArgumentException e) {
+            log.warn("Ignoring malformed campaign control message: {}", message);
+        }
+    }
+
+    /**
+     * Forget the campaign once this node has nothing left to send for it
+     */
+    public void release(Long campaignId) {
+        controls.remove(campaignId);
+    }
+
+    private void apply(Long campaignId, Signal signal) {
+        if (signal == Signal.RUN) {
+            // Only matters to nodes that still hold a stop flag for the campaign
+            CampaignControl control = controls.get(campaignId);
+            if (control != null) {
+                control.signal = Signal.RUN;
+            }
+            return;
+        }
+        controls.computeIfAbsent(campaignId, id -> new CampaignControl()).signal = signal;
+        log.info("Campaign {} received {} signal", campaignId, signal);
+    }
+
+    private static final class CampaignControl {
+        private volatile Signal signal = Signal.RUN;
+    }
+}
@@ -0,0 +1,45 @@
+package in.osop.messaging_platform.service;
+
+import in.osop.messaging_platform.model.Campaign;
+import in.osop.messaging_platform.model.Tenant;
+import io.github.bucket4j.Bucket;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Everything needed to send batches of one campaign, shared by all batches
+ * sent from this node so the campaign's rate-limit buckets stay shared too.
+ */
+@Getter
+public class CampaignSendContext {
+
+    private final Campaign campaign;
+    private final Tenant.SubscriptionPlan plan;
+    private final List<Bucket> rateLimits;
+    // Campaign body compiled once, rendered per recipient; HTML when the campaign is tracked
+    private final EmailSkeleton body;
+    private final boolean html;
+    private volatile long lastUsedAt = System.currentTimeMillis();
+
+    CampaignSendContext(Campaign campaign, Tenant.SubscriptionPlan plan, List<Bucket> rateLimits,
+                        EmailSkeleton body, boolean html) {
+        this.campaign = campaign;
+        this.plan = plan;
+        this.rateLimits = rateLimits;
+        this.body = body;
+        this.html = html;
+    }
+
+    public Long getCampaignId() {
+        return campaign.getId();
+    }
+
+    public Long getTenantId() {
+        return campaign.getTenantId();
+    }
+
+    void touch() {
+        lastUsedAt = System.currentTimeMillis();
+    }
+}
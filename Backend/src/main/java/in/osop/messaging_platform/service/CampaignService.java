@@ -25,6 +25,7 @@ import java.util.stream.Collectors;
 public class CampaignService {
 
     private final CampaignRepository campaignRepository;
+    private final UniqueEngagementTracker uniqueEngagementTracker;
 
     public CampaignDto createCampaign(CampaignDto campaignDto) {
         log.info("Creating new campaign: {}", campaignDto.getName());
@@ -178,6 +179,9 @@ public class CampaignService {
         stats.put("clickRate", campaign.getClickRate() != null ? campaign.getClickRate() : 0.0);
         stats.put("bounceRate", campaign.getBounceRate() != null ? campaign.getBounceRate() : 0.0);
         stats.put("unsubscribeRate", campaign.getUnsubscribeRate() != null ? campaign.getUnsubscribeRate() : 0.0);
+        stats.put("uniqueOpens", uniqueEngagementTracker.getUniqueOpens(id));
+        stats.put("uniqueClicks", uniqueEngagementTracker.getUniqueClicks(id));
+        stats.put("clickToOpenRate", uniqueEngagementTracker.getClickToOpenRate(id));
         return stats;
     }
 
@@ -0,0 +1,76 @@
+package in.osop.messaging_platform.service;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts per key, coalesced in memory until a flush takes them.
+ *
+ * Writers only bump a {@link LongAdder}, so hot keys stay uncontended. A key
+ * that has gone quiet can be evicted to keep the map small. A writer may still
+ * hold the evicted counter, so eviction marks it retired and then moves what
+ * it holds to a live counter; writers check the mark after adding and do the
+ * same. Every increment is therefore moved either by the eviction or by the
+ * writer that made it, and none is lost.
+ */
+public final class CoalescingCounters<K> {
+
+    private final Map<K, Counter> counters = new ConcurrentHashMap<>();
+
+    public void add(K key, long count) {
+        Counter counter = counters.computeIfAbsent(key, k -> new Counter());
+        counter.adder.add(count);
+        if (counter.retired) {
+            // Evicted while we held it: move what it holds to a live counter
+            drain(key, counter);
+        }
+    }
+
+    /**
+     * Count added for a key since it was last taken, leaving it in place
+     */
+    public long sum(K key) {
+        Counter counter = counters.get(key);
+        return counter != null ? counter.adder.sum() : 0;
+    }
+
+    /**
+     * Count added for a key since it was last taken, resetting it
+     */
+    public long take(K key) {
+        Counter counter = counters.get(key);
+        return counter != null ? counter.adder.sumThenReset() : 0;
+    }
+
+    /**
+     * Keys that currently have a counter
+     */
+    public Set<K> keys() {
+        return counters.keySet();
+    }
+
+    /**
+     * Forget a key; increments racing the eviction are kept under a new counter
+     */
+    public void evict(K key) {
+        Counter counter = counters.remove(key);
+        if (counter != null) {
+            counter.retired = true;
+            drain(key, counter);
+        }
+    }
+
+    private void drain(K key, Counter counter) {
+        long late = counter.adder.sumThenReset();
+        if (late != 0) {
+            add(key, late);
+        }
+    }
+
+    private static final class Counter {
+        private final LongAdder adder = new LongAdder();
+        private volatile boolean retired;
+    }
+}
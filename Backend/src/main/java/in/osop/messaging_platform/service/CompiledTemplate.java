@@ -0,0 +1,129 @@
+package in.osop.messaging_platform.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A template parsed once into literal chunks and {@code {{name}}} variable slots.
+ *
+ * Rendering walks the chunks once and looks every slot up in the values, instead
+ * of running one {@code String.replace} over the whole text per placeholder.
+ * Slots without a value keep their {@code {{name}}} text, as the replace loop did.
+ */
+public final class CompiledTemplate {
+
+    private static final int MAX_VARIABLE_LENGTH = 64;
+    // Builders above this size are dropped after use rather than kept per thread
+    private static final int MAX_POOLED_CAPACITY = 64 * 1024;
+    private static final ThreadLocal<StringBuilder> BUILDERS = ThreadLocal.withInitial(() -> new StringBuilder(1024));
+
+    private static final CompiledTemplate EMPTY = new CompiledTemplate(new String[]{""}, new String[0]);
+
+    // literals.length == variables.length + 1
+    private final String[] literals;
+    private final String[] variables;
+    private final int literalLength;
+
+    private CompiledTemplate(String[] literals, String[] variables) {
+        this.literals = literals;
+        this.variables = variables;
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    public static CompiledTemplate compile(String source) {
+        if (source == null || source.isEmpty()) {
+            return EMPTY;
+        }
+        List<String> literals = new ArrayList<>();
+        List<String> variables = new ArrayList<>();
+        int position = 0;
+        int open = source.indexOf("{{");
+        while (open >= 0) {
+            int close = source.indexOf("}}", open + 2);
+            if (close < 0) {
+                break;
+            }
+            String name = source.substring(open + 2, close);
+            if (!isVariableName(name)) {
+                // Not a placeholder, e.g. a stray "{{" in CSS; look again from the next brace
+                open = source.indexOf("{{", open + 1);
+                continue;
+            }
+            literals.add(source.substring(position, open));
+            variables.add(name);
+            position = close + 2;
+            open = source.indexOf("{{", position);
+        }
+        literals.add(source.substring(position));
+        return new CompiledTemplate(literals.toArray(new String[0]), variables.toArray(new String[0]));
+    }
+
+    /**
+     * Names of the variables used, in order of first use
+     */
+    public Set<String> getVariables() {
+        Set<String> names = new LinkedHashSet<>();
+        Collections.addAll(names, variables);
+        return names;
+    }
+
+    public boolean hasVariables() {
+        return variables.length > 0;
+    }
+
+    public boolean isEmpty() {
+        return literalLength == 0 && variables.length == 0;
+    }
+
+    /**
+     * Render into a per-thread builder and return the result
+     */
+    public String render(Map<String, String> values) {
+        if (variables.length == 0) {
+            return literals[0];
+        }
+        StringBuilder out = BUILDERS.get();
+        out.setLength(0);
+        renderTo(out, values);
+        String rendered = out.toString();
+        if (out.capacity() > MAX_POOLED_CAPACITY) {
+            BUILDERS.remove();
+        }
+        return rendered;
+    }
+
+    public void renderTo(StringBuilder out, Map<String, String> values) {
+        out.ensureCapacity(out.length() + literalLength + 16 * variables.length);
+        for (int i = 0; i < variables.length; i++) {
+            out.append(literals[i]);
+            String value = values != null ? values.get(variables[i]) : null;
+            if (value != null) {
+                out.append(value);
+            } else {
+                out.append("{{").append(variables[i]).append("}}");
+            }
+        }
+        out.append(literals[variables.length]);
+    }
+
+    private static boolean isVariableName(String name) {
+        if (name.isEmpty() || name.length() > MAX_VARIABLE_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c == '{' || c == '}' || c == '<' || c == '>' || c == '\n' || c == '\r') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,208 @@
+package in.osop.messaging_platform.service;
+
+import in.osop.messaging_platform.dto.AudienceMember;
+import io.github.bucket4j.Bucket;
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Spreads campaign sends across recipient domains.
+ *
+ * Big mailbox providers defer (421/451) senders that open too many connections
+ * or push too fast, so every recipient domain gets a lane with its own
+ * concurrency cap and token bucket, shared by all batches sent from this node.
+ * A batch is split into per-domain queues which the sender visits round-robin,
+ * so a throttled provider never holds up the other domains of the batch.
+ *
+ * Limits come from {@code send.domains.limits}, a {@code ;}-separated list of
+ * {@code domain[,domain...]=max-concurrency/messages-per-minute}. Domains listed
+ * together (e.g. outlook.com and hotmail.com) are one provider and share a lane.
+ * Any other domain gets its own lane sized by {@code send.domains.default-limit}.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DomainSendScheduler {
+
+    private static final long LANE_IDLE_MS = 10 * 60 * 1000L;
+    private static final long BUSY_RETRY_NANOS = 50_000_000L;
+
+    private final SendRateLimiter sendRateLimiter;
+
+    @Value("${send.domains.default-limit:2/300}")
+    private String defaultLimit;
+
+    @Value("${send.domains.limits:}")
+    private String limits;
+
+    private final Map<String, LaneLimit> providerLimits = new HashMap<>();
+    private final Map<String, String> providerOfDomain = new HashMap<>();
+    private LaneLimit defaultLaneLimit;
+
+    private final Map<String, DomainLane> lanes = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        defaultLaneLimit = LaneLimit.parse(defaultLimit);
+        for (String entry : limits.split(";")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            String[] parts = entry.split("=", 2);
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid send.domains.limits entry: " + entry);
+            }
+            LaneLimit limit = LaneLimit.parse(parts[1]);
+            String provider = null;
+            for (String domain : parts[0].split(",")) {
+                String normalized = domain.trim().toLowerCase(Locale.ROOT);
+                if (provider == null) {
+                    provider = normalized;
+                    providerLimits.put(provider, limit);
+                }
+                providerOfDomain.put(normalized, provider);
+            }
+        }
+        log.info("Domain send limits: {} providers configured, default {}", providerLimits.size(), defaultLimit);
+    }
+
+    /**
+     * Split a batch into per-lane queues, keeping subscriber order within each lane
+     */
+    public Deque<DomainQueue> partition(List<AudienceMember> batch) {
+        Map<String, DomainQueue> queues = new LinkedHashMap<>();
+        for (AudienceMember member : batch) {
+            String lane = laneKey(member.getEmail());
+            queues.computeIfAbsent(lane, DomainQueue::new).members.add(member);
+        }
+        return new ArrayDeque<>(queues.values());
+    }
+
+    /**
+     * Reserve a connection slot on a domain lane and up to {@code wanted} tokens from
+     * the lane's bucket and the given rate limits. Never blocks; when nothing can be
+     * granted the lease carries how long to wait before trying the lane again.
+     * A granted lease must be released once its chunk has been sent.
+     */
+    public Lease tryAcquire(String laneKey, List<Bucket> rateLimits, long wanted) {
+        DomainLane lane = lanes.computeIfAbsent(laneKey, this::createLane);
+        lane.lastUsedAt = System.currentTimeMillis();
+        if (!lane.permits.tryAcquire()) {
+            return new Lease(null, 0, BUSY_RETRY_NANOS);
+        }
+
+        List<Bucket> buckets = new ArrayList<>(rateLimits.size() + 1);
+        buckets.addAll(rateLimits);
+        buckets.add(lane.bucket);
+        long granted = sendRateLimiter.tryAcquire(buckets, wanted);
+        if (granted == 0) {
+            lane.permits.release();
+            return new Lease(null, 0, sendRateLimiter.nanosUntilAvailable(buckets));
+        }
+        return new Lease(lane, granted, 0);
+    }
+
+    /**
+     * Forget lanes of domains nothing has been sent to for a while
+     */
+    @Scheduled(fixedDelay = 60000)
+    public void evictIdleLanes() {
+        long cutoff = System.currentTimeMillis() - LANE_IDLE_MS;
+        lanes.values().removeIf(lane -> lane.lastUsedAt < cutoff &&
+            lane.permits.availablePermits() == lane.limit.maxConcurrency);
+    }
+
+    private String laneKey(String email) {
+        int at = email.lastIndexOf('@');
+        String domain = email.substring(at + 1).trim().toLowerCase(Locale.ROOT);
+        return providerOfDomain.getOrDefault(domain, domain);
+    }
+
+    private DomainLane createLane(String laneKey) {
+        LaneLimit limit = providerLimits.getOrDefault(laneKey, defaultLaneLimit);
+        return new DomainLane(limit, sendRateLimiter.domainBucket(limit.messagesPerMinute));
+    }
+
+    /**
+     * Recipients of one batch that share a lane
+     */
+    @Getter
+    public static final class DomainQueue {
+        private final String laneKey;
+        private final Deque<AudienceMember> members = new ArrayDeque<>();
+
+        private DomainQueue(String laneKey) {
+            this.laneKey = laneKey;
+        }
+    }
+
+    /**
+     * Grant from {@link #tryAcquire}: how many recipients may be sent now, or how long to wait
+     */
+    public static final class Lease {
+        private final DomainLane lane;
+        @Getter
+        private final long granted;
+        @Getter
+        private final long waitNanos;
+
+        private Lease(DomainLane lane, long granted, long waitNanos) {
+            this.lane = lane;
+            this.granted = granted;
+            this.waitNanos = waitNanos;
+        }
+
+        public void release() {
+            if (lane != null) {
+                lane.permits.release();
+            }
+        }
+    }
+
+    private static final class DomainLane {
+        private final LaneLimit limit;
+        private final Semaphore permits;
+        private final Bucket bucket;
+        private volatile long lastUsedAt = System.currentTimeMillis();
+
+        private DomainLane(LaneLimit limit, Bucket bucket) {
+            this.limit = limit;
+            this.permits = new Semaphore(limit.maxConcurrency);
+            this.bucket = bucket;
+        }
+    }
+
+    private static final class LaneLimit {
+        private final int maxConcurrency;
+        private final long messagesPerMinute;
+
+        private LaneLimit(int maxConcurrency, long messagesPerMinute) {
+            this.maxConcurrency = maxConcurrency;
+            this.messagesPerMinute = messagesPerMinute;
+        }
+
+        private static LaneLimit parse(String value) {
+            String[] parts = value.trim().split("/");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Domain limit must be max-concurrency/messages-per-minute: " + value);
+            }
+            return new LaneLimit(Integer.parseInt(parts[0].trim()), Long.parseLong(parts[1].trim()));
+        }
+    }
+}
@@ -29,7 +29,7 @@ public interface EmailDeliveryTrackingService {
     void handleBounce(Long emailEventId, BounceType bounceType, String reason);
     
     /**
-     * Track email open
+     * Track email open reported by a verified tracking token; does not touch the database
      * @param emailEventId Email event ID
      * @param ipAddress IP address of opener
      * @param userAgent User agent string
@@ -37,7 +37,7 @@ public interface EmailDeliveryTrackingService {
     void trackEmailOpen(Long emailEventId, String ipAddress, String userAgent);
     
     /**
-     * Track email click
+     * Track email click reported by a verified tracking token; does not touch the database
      * @param emailEventId Email event ID
      * @param url Clicked URL
      * @param ipAddress IP address of clicker
@@ -0,0 +1,310 @@
+package in.osop.messaging_platform.service;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An email body compiled once and rendered per recipient.
+ *
+ * Compiling wraps bare content in the HTML shell, finds the anchor links and
+ * the spot before {@code </body>} in one {@link HtmlLinkScanner} pass, finds
+ * the merge fields and keeps the text between them as immutable segments.
+ * Rendering only appends those segments and the recipient's small pieces
+ * (signed tracking tokens, {@code {{email}}}, {@code {{firstName}}},
+ * {@code {{lastName}}}) into one right-sized builder. Merge field values are
+ * HTML-escaped in HTML bodies and inserted as they are in plain-text ones.
+ */
+public final class EmailSkeleton {
+
+    private static final Pattern MERGE_FIELD = Pattern.compile("\\{\\{(email|firstName|lastName)}}");
+    private static final String[] UNTRACKED_SCHEMES = {"mailto:", "tel:", "sms:", "javascript:"};
+
+    private static final String HTML_SHELL_HEAD = """
+        <!DOCTYPE html>
+        <html>
+        <head>
+            <meta charset="UTF-8">
+            <meta name="viewport" content="width=device-width, initial-scale=1.0">
+            <style>
+                body {
+                    font-family: Arial, sans-serif;
+                    line-height: 1.6;
+                    color: #333;
+                    max-width: 600px;
+                    margin: 0 auto;
+                    padding: 20px;
+                }
+                img { max-width: 100%; height: auto; }
+                a { color: #007bff; text-decoration: none; }
+                a:hover { text-decoration: underline; }
+                .footer { margin-top: 30px; font-size: 12px; color: #666; }
+            </style>
+        </head>
+        <body>
+        """;
+    private static final String HTML_SHELL_TAIL = """
+
+        </body>
+        </html>
+        """;
+
+    private enum SlotType {
+        CLICK_HREF,
+        OPEN_PIXEL,
+        UNSUBSCRIBE_LINK,
+        EMAIL,
+        FIRST_NAME,
+        LAST_NAME
+    }
+
+    // segments.length == slots.length + 1; for CLICK_HREF slots slotTargets holds the link
+    // target, slotArgs the same URL-encoded and slotOriginals the untracked attribute;
+    // for merge field slots slotOriginals holds the placeholder
+    private final String[] segments;
+    private final SlotType[] slots;
+    private final String[] slotTargets;
+    private final String[] slotArgs;
+    private final String[] slotOriginals;
+    private final int staticLength;
+    private final boolean html;
+    private final String trackingBaseUrl;
+    private final TrackingTokenCodec tokenCodec;
+    private final boolean trackOpens;
+    private final boolean trackClicks;
+    private final boolean addUnsubscribeLink;
+
+    private EmailSkeleton(List<String> segments, List<SlotType> slots, List<String> slotTargets, List<String> slotArgs,
+                          List<String> slotOriginals, boolean html, String trackingBaseUrl, TrackingTokenCodec tokenCodec,
+                          boolean trackOpens, boolean trackClicks, boolean addUnsubscribeLink) {
+        this.segments = segments.toArray(new String[0]);
+        this.slots = slots.toArray(new SlotType[0]);
+        this.slotTargets = slotTargets.toArray(new String[0]);
+        this.slotArgs = slotArgs.toArray(new String[0]);
+        this.slotOriginals = slotOriginals.toArray(new String[0]);
+        int length = 0;
+        for (String segment : this.segments) {
+            length += segment.length();
+        }
+        this.staticLength = length;
+        this.html = html;
+        this.trackingBaseUrl = trackingBaseUrl;
+        this.tokenCodec = tokenCodec;
+        this.trackOpens = trackOpens;
+        this.trackClicks = trackClicks;
+        this.addUnsubscribeLink = addUnsubscribeLink;
+    }
+
+    /**
+     * Compile an HTML email: bare content is wrapped in the HTML shell, the open
+     * pixel and unsubscribe footer go before the last {@code </body>} and web
+     * links are rewritten to the click tracker, target URL-encoded, when
+     * tracking is on.
+     */
+    public static EmailSkeleton compileHtml(String content, String trackingBaseUrl, TrackingTokenCodec tokenCodec,
+                                            boolean trackOpens, boolean trackClicks, boolean addUnsubscribeLink) {
+        String html = isHtmlDocument(content) ? content : HTML_SHELL_HEAD + "    " + content + HTML_SHELL_TAIL;
+        return compile(html, true, trackingBaseUrl, tokenCodec, trackOpens, trackClicks, addUnsubscribeLink);
+    }
+
+    /**
+     * Compile a plain-text body, where only merge fields vary per recipient
+     */
+    public static EmailSkeleton compileText(String content) {
+        return compile(content != null ? content : "", false, null, null, false, false, false);
+    }
+
+    /**
+     * Render for one recipient. Tracking pieces are signed for {@code tracking}
+     * and left out without it.
+     */
+    public String render(String email, String firstName, String lastName, TrackingToken tracking) {
+        StringBuilder out = new StringBuilder(staticLength + 48 * slots.length + 256);
+        String recipientToken = null;
+        int linkIndex = 0;
+        for (int i = 0; i < slots.length; i++) {
+            out.append(segments[i]);
+            switch (slots[i]) {
+                case CLICK_HREF -> {
+                    linkIndex++;
+                    if (trackClicks && tracking != null) {
+                        out.append("href='").append(trackingBaseUrl).append("/click/")
+                            .append(tokenCodec.encode(tracking.forLink(linkIndex), slotTargets[i]))
+                            .append("?url=").append(slotArgs[i]).append('\'');
+                    } else {
+                        out.append(slotOriginals[i]);
+                    }
+                }
+                case OPEN_PIXEL -> {
+                    if (trackOpens && tracking != null) {
+                        recipientToken = recipientToken != null ? recipientToken : tokenCodec.encode(tracking, null);
+                        out.append("<img src='").append(trackingBaseUrl).append("/open/").append(recipientToken)
+                            .append("' width='1' height='1' style='display:none;' alt='' />");
+                    }
+                }
+                case UNSUBSCRIBE_LINK -> {
+                    if (addUnsubscribeLink && tracking != null) {
+                        recipientToken = recipientToken != null ? recipientToken : tokenCodec.encode(tracking, null);
+                        out.append("<div class='footer'><small><a href='").append(trackingBaseUrl)
+                            .append("/unsubscribe/").append(recipientToken).append("'>Unsubscribe</a></small></div>");
+                    }
+                }
+                case EMAIL -> appendField(out, email, slotOriginals[i]);
+                case FIRST_NAME -> appendField(out, firstName, slotOriginals[i]);
+                case LAST_NAME -> appendField(out, lastName, slotOriginals[i]);
+            }
+        }
+        out.append(segments[slots.length]);
+        return out.toString();
+    }
+
+    private static EmailSkeleton compile(String content, boolean html, String trackingBaseUrl, TrackingTokenCodec tokenCodec,
+                                         boolean trackOpens, boolean trackClicks, boolean addUnsubscribeLink) {
+        List<String> segments = new ArrayList<>();
+        List<SlotType> slots = new ArrayList<>();
+        List<String> slotTargets = new ArrayList<>();
+        List<String> slotArgs = new ArrayList<>();
+        List<String> slotOriginals = new ArrayList<>();
+
+        List<HtmlLinkScanner.Link> links = new ArrayList<>();
+        int bodyClose = -1;
+        if (html) {
+            HtmlLinkScanner scanner = HtmlLinkScanner.scan(content);
+            bodyClose = scanner.getBodyCloseAt();
+            for (HtmlLinkScanner.Link link : scanner.getLinks()) {
+                if (trackClicks && isTrackable(link.getTarget())) {
+                    links.add(link);
+                }
+            }
+        }
+        boolean hasBodyClose = bodyClose >= 0;
+        int nextLink = 0;
+        Matcher mergeField = MERGE_FIELD.matcher(content);
+        boolean hasMergeField = mergeField.find();
+
+        int position = 0;
+        while (true) {
+            int hrefAt = nextLink < links.size() ? links.get(nextLink).getStart() : Integer.MAX_VALUE;
+            int fieldAt = hasMergeField ? mergeField.start() : Integer.MAX_VALUE;
+            int closeAt = bodyClose >= position ? bodyClose : Integer.MAX_VALUE;
+            int next = Math.min(hrefAt, Math.min(fieldAt, closeAt));
+            if (next == Integer.MAX_VALUE) {
+                break;
+            }
+
+            segments.add(content.substring(position, next));
+            if (next == closeAt) {
+                slots.add(SlotType.OPEN_PIXEL);
+                slotTargets.add(null);
+                slotArgs.add(null);
+                slotOriginals.add(null);
+                segments.add("");
+                slots.add(SlotType.UNSUBSCRIBE_LINK);
+                slotTargets.add(null);
+                slotArgs.add(null);
+                slotOriginals.add(null);
+                position = bodyClose;
+                // The closing tag itself is static text
+                bodyClose = -1;
+            } else if (next == hrefAt) {
+                HtmlLinkScanner.Link link = links.get(nextLink++);
+                String target = decodeTarget(link.getTarget());
+                slots.add(SlotType.CLICK_HREF);
+                slotTargets.add(target);
+                slotArgs.add(URLEncoder.encode(target, StandardCharsets.UTF_8));
+                slotOriginals.add(content.substring(link.getStart(), link.getEnd()));
+                position = link.getEnd();
+            } else {
+                slots.add(switch (mergeField.group(1)) {
+                    case "email" -> SlotType.EMAIL;
+                    case "firstName" -> SlotType.FIRST_NAME;
+                    default -> SlotType.LAST_NAME;
+                });
+                slotTargets.add(null);
+                slotArgs.add(null);
+                slotOriginals.add(mergeField.group());
+                position = mergeField.end();
+            }
+            // Merge fields inside a link stay literal
+            while (hasMergeField && mergeField.start() < position) {
+                hasMergeField = mergeField.find();
+            }
+        }
+
+        if (html && !hasBodyClose) {
+            // No body to close: the open pixel goes at the very end and there is no footer
+            segments.add(content.substring(position));
+            slots.add(SlotType.OPEN_PIXEL);
+            slotTargets.add(null);
+            slotArgs.add(null);
+            slotOriginals.add(null);
+            position = content.length();
+        }
+        segments.add(content.substring(position));
+        return new EmailSkeleton(segments, slots, slotTargets, slotArgs, slotOriginals, html,
+            trackingBaseUrl, tokenCodec, trackOpens, trackClicks, addUnsubscribeLink);
+    }
+
+    /**
+     * Subscriber-supplied values must not be able to add markup to an HTML body.
+     * A field without a value keeps its {@code {{name}}} text, as in CompiledTemplate.
+     */
+    private void appendField(StringBuilder out, String value, String placeholder) {
+        if (value == null) {
+            out.append(placeholder);
+            return;
+        }
+        if (!html) {
+            out.append(value);
+            return;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '<' -> out.append("&lt;");
+                case '>' -> out.append("&gt;");
+                case '&' -> out.append("&amp;");
+                case '"' -> out.append("&quot;");
+                case '\'' -> out.append("&#39;");
+                default -> out.append(c);
+            }
+        }
+    }
+
+    private static boolean isHtmlDocument(String content) {
+        String trimmed = content.trim();
+        return trimmed.regionMatches(true, 0, "<!doctype html", 0, 14) ||
+            trimmed.regionMatches(true, 0, "<html", 0, 5);
+    }
+
+    /**
+     * Links that are not web pages, in-page anchors and unfilled placeholders are left as they are
+     */
+    private static boolean isTrackable(String target) {
+        String trimmed = target.trim();
+        if (trimmed.isEmpty() || trimmed.startsWith("#") || trimmed.contains("{{")) {
+            return false;
+        }
+        for (String scheme : UNTRACKED_SCHEMES) {
+            if (trimmed.regionMatches(true, 0, scheme, 0, scheme.length())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The link as the browser would follow it, character references decoded
+     */
+    private static String decodeTarget(String target) {
+        String decoded = target.trim();
+        if (decoded.indexOf('&') >= 0) {
+            decoded = decoded.replace("&quot;", "\"").replace("&#39;", "'").replace("&lt;", "<")
+                .replace("&gt;", ">").replace("&amp;", "&");
+        }
+        return decoded;
+    }
+}
@@ -23,6 +23,7 @@ import java.util.stream.Collectors;
 public class EmailTemplateService {
     
     private final EmailTemplateRepository emailTemplateRepository;
+    private final TemplateCache templateCache;
     
     public Page<EmailTemplateDto> getTemplates(String name, String category, String type, Boolean isActive, Pageable pageable) {
         log.info("Fetching templates with filters: name={}, category={}, type={}, isActive={}", 
@@ -89,8 +90,11 @@ public class EmailTemplateService {
         template.setVariables(templateData.getVariables());
         template.setIsActive(templateData.getIsActive() != null ? templateData.getIsActive() : template.getIsActive());
         template.setIsDefault(templateData.getIsDefault() != null ? templateData.getIsDefault() : template.getIsDefault());
+        // New content is a new version, other nodes recompile on the version change
+        template.setVersion(template.getVersion() + 1);
         
         EmailTemplate updatedTemplate = emailTemplateRepository.save(template);
+        templateCache.invalidate(id);
         log.info("Template updated successfully with ID: {}", updatedTemplate.getId());
         
         return convertToDto(updatedTemplate);
@@ -7,14 +7,15 @@ import in.osop.messaging_platform.model.Subscriber;
 import in.osop.messaging_platform.repository.EmailEventRepository;
 import in.osop.messaging_platform.repository.CampaignRepository;
 import in.osop.messaging_platform.repository.SubscriberRepository;
+import in.osop.messaging_platform.repository.TenantRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.Map;
-import java.util.Optional;
 
 @Service
 @RequiredArgsConstructor
@@ -24,6 +25,8 @@ public class EmailTrackingService {
     private final EmailEventRepository emailEventRepository;
     private final CampaignRepository campaignRepository;
     private final SubscriberRepository subscriberRepository;
+    private final TenantRepository tenantRepository;
+    private final CampaignCounterAggregator campaignCounterAggregator;
 
     @Transactional
     public void trackEmailEvent(Long campaignId, String email, EmailEventType eventType, 
@@ -31,17 +34,14 @@ public class EmailTrackingService {
         try {
             log.info("Tracking email event: {} for campaign {} and email {}", eventType, campaignId, email);
             
-            // Find campaign and subscriber
-            Optional<Campaign> campaignOpt = campaignRepository.findById(campaignId);
-            Optional<Subscriber> subscriberOpt = subscriberRepository.findByEmail(email);
-            
-            if (campaignOpt.isEmpty()) {
+            // Find campaign and subscriber; the campaign row itself is never loaded
+            if (!campaignRepository.existsById(campaignId)) {
                 log.warn("Campaign not found for ID: {}", campaignId);
                 return;
             }
             
-            Campaign campaign = campaignOpt.get();
-            Subscriber subscriber = subscriberOpt.orElse(null);
+            Campaign campaign = campaignRepository.getReferenceById(campaignId);
+            Subscriber subscriber = subscriberRepository.findByEmail(email).orElse(null);
             
             // Create email event
             EmailEvent emailEvent = EmailEvent.builder()
@@ -60,7 +60,7 @@ public class EmailTrackingService {
             emailEventRepository.save(emailEvent);
             
             // Update campaign statistics based on event type
-            updateCampaignStats(campaign, eventType);
+            campaignCounterAggregator.record(campaignId, eventType);
             
             log.info("Email event tracked successfully: {}", eventType);
             
@@ -119,75 +119,46 @@ public class EmailTrackingService {
         trackEmailEvent(campaignId, email, EmailEventType.UNSUBSCRIBED, eventData, ipAddress, userAgent);
     }
 
-    // Methods for tracking by EmailEvent ID
+    // Unsubscribes from a verified tracking token: the event is written with
+    // references to the ids in the token, nothing is read first. Opens and
+    // clicks go through TrackingEventIngest instead
     @Transactional
-    public void trackEmailOpenedByEventId(Long emailEventId, String email, String ipAddress, String userAgent) {
-        try {
-            Optional<EmailEvent> emailEventOpt = emailEventRepository.findById(emailEventId);
-            if (emailEventOpt.isPresent()) {
-                EmailEvent emailEvent = emailEventOpt.get();
-                trackEmailOpened(emailEvent.getCampaign() != null ? emailEvent.getCampaign().getId() : null, 
-                               email, ipAddress, userAgent);
-            }
-        } catch (Exception e) {
-            log.error("Error tracking email open by event ID: {}", e.getMessage());
-        }
+    public void trackEmailUnsubscribed(TrackingToken token, String ipAddress, String userAgent) {
+        Map<String, Object> eventData = new HashMap<>();
+        eventData.put("unsubscribedAt", LocalDateTime.now().toString());
+        trackTokenEvent(token, EmailEventType.UNSUBSCRIBED, eventData, ipAddress, userAgent);
     }
 
-    @Transactional
-    public void trackEmailClickedByEventId(Long emailEventId, String email, String linkUrl, String ipAddress, String userAgent) {
+    private void trackTokenEvent(TrackingToken token, EmailEventType eventType, Map<String, Object> eventData,
+                                 String ipAddress, String userAgent) {
         try {
-            Optional<EmailEvent> emailEventOpt = emailEventRepository.findById(emailEventId);
-            if (emailEventOpt.isPresent()) {
-                EmailEvent emailEvent = emailEventOpt.get();
-                trackEmailClicked(emailEvent.getCampaign() != null ? emailEvent.getCampaign().getId() : null, 
-                                email, linkUrl, ipAddress, userAgent);
+            Long campaignId = TrackingToken.idOrNull(token.getCampaignId());
+            Long subscriberId = TrackingToken.idOrNull(token.getSubscriberId());
+            Long tenantId = TrackingToken.idOrNull(token.getTenantId());
+            eventData.put("ipAddress", ipAddress != null ? ipAddress : "unknown");
+            eventData.put("userAgent", userAgent != null ? userAgent : "unknown");
+            if (token.getEventId() != 0) {
+                eventData.put("originalEventId", token.getEventId());
             }
-        } catch (Exception e) {
-            log.error("Error tracking email click by event ID: {}", e.getMessage());
-        }
-    }
 
-    @Transactional
-    public void trackEmailUnsubscribedByEventId(Long emailEventId, String email, String ipAddress, String userAgent) {
-        try {
-            Optional<EmailEvent> emailEventOpt = emailEventRepository.findById(emailEventId);
-            if (emailEventOpt.isPresent()) {
-                EmailEvent emailEvent = emailEventOpt.get();
-                trackEmailUnsubscribed(emailEvent.getCampaign() != null ? emailEvent.getCampaign().getId() : null, 
-                                     email, ipAddress, userAgent);
-            }
-        } catch (Exception e) {
-            log.error("Error tracking unsubscribe by event ID: {}", e.getMessage());
-        }
-    }
+            EmailEvent emailEvent = EmailEvent.builder()
+                    .campaign(campaignId != null ? campaignRepository.getReferenceById(campaignId) : null)
+                    .subscriber(subscriberId != null ? subscriberRepository.getReferenceById(subscriberId) : null)
+                    .tenant(tenantId != null ? tenantRepository.getReferenceById(tenantId) : null)
+                    .eventType(eventType)
+                    .eventData(eventData.toString())
+                    .ipAddress(ipAddress)
+                    .userAgent(userAgent)
+                    .createdAt(LocalDateTime.now())
+                    .processed(false)
+                    .build();
+            emailEventRepository.save(emailEvent);
 
-    private void updateCampaignStats(Campaign campaign, EmailEventType eventType) {
-        switch (eventType) {
-            case SENT:
-                campaign.setSentCount(campaign.getSentCount() + 1);
-                break;
-            case DELIVERED:
-                campaign.setDeliveredCount(campaign.getDeliveredCount() + 1);
-                break;
-            case OPENED:
-                campaign.setOpenedCount(campaign.getOpenedCount() + 1);
-                break;
-            case CLICKED:
-                campaign.setClickedCount(campaign.getClickedCount() + 1);
-                break;
-            case BOUNCED:
-                campaign.setBouncedCount(campaign.getBouncedCount() + 1);
-                break;
-            case UNSUBSCRIBED:
-                campaign.setUnsubscribedCount(campaign.getUnsubscribedCount() + 1);
-                break;
+            campaignCounterAggregator.record(campaignId, eventType);
+            log.debug("Tracked {} for {}", eventType, token);
+        } catch (Exception e) {
+            log.error("Error tracking {} for {}: {}", eventType, token, e.getMessage());
         }
-        
-        campaign.setUpdatedAt(LocalDateTime.now());
-        campaignRepository.save(campaign);
-        
-        log.debug("Updated campaign {} stats for event type: {}", campaign.getId(), eventType);
     }
 
     public long getEventCount(Long campaignId, EmailEventType eventType) {
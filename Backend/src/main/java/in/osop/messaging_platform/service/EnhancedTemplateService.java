@@ -25,6 +25,7 @@ public class EnhancedTemplateService {
     private final EmailTemplateRepository templateRepository;
     private final TemplateVersionRepository versionRepository;
     private final ObjectMapper objectMapper;
+    private final TemplateCache templateCache;
     
     /**
      * Create a new template
@@ -138,6 +139,7 @@ public class EnhancedTemplateService {
         template.setVersion(template.getVersion() + 1);
         
         EmailTemplate updatedTemplate = templateRepository.save(template);
+        templateCache.invalidate(id);
         
         return convertToDto(updatedTemplate);
     }
@@ -239,6 +241,7 @@ public class EnhancedTemplateService {
         template.setVersion(template.getVersion() + 1);
         
         EmailTemplate updatedTemplate = templateRepository.save(template);
+        templateCache.invalidate(templateId);
         
         return convertToDto(updatedTemplate);
     }
@@ -0,0 +1,144 @@
+package in.osop.messaging_platform.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Country of an IPv4 address, from a local range database mapped into memory.
+ *
+ * The file is a 16 byte header (magic "OGEO", version 1, record count, unused)
+ * followed by 12 byte records sorted by first address: first and last address
+ * of the range as big-endian unsigned ints and a two letter ISO country code,
+ * padded to 4 bytes. A lookup parses the address in place, binary searches the
+ * mapped buffer with absolute reads and returns a shared String, so it neither
+ * allocates nor locks. Without a configured database every lookup is null.
+ */
+@Service
+@Slf4j
+public class GeoIpLookup {
+
+    static final int MAGIC = 0x4F47454F;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 16;
+    static final int RECORD_BYTES = 12;
+
+    // "AA" to "ZZ", so lookups hand out shared instances
+    private static final String[] COUNTRY_CODES = new String[26 * 26];
+
+    static {
+        for (int i = 0; i < COUNTRY_CODES.length; i++) {
+            COUNTRY_CODES[i] = new String(new char[]{(char) ('A' + i / 26), (char) ('A' + i % 26)});
+        }
+    }
+
+    private final ByteBuffer records;
+    private final int recordCount;
+
+    public GeoIpLookup(@Value("${tracking.geoip.database:}") String database) {
+        if (database == null || database.isBlank()) {
+            log.info("No GeoIP database configured, tracking events get no location");
+            this.records = null;
+            this.recordCount = 0;
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(Path.of(database), StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (mapped.capacity() < HEADER_BYTES || mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION) {
+                throw new IllegalStateException("Not a version " + VERSION + " GeoIP database: " + database);
+            }
+            int count = mapped.getInt(8);
+            if (count < 0 || (long) HEADER_BYTES + (long) count * RECORD_BYTES != mapped.capacity()) {
+                throw new IllegalStateException("GeoIP database " + database + " is truncated or corrupt");
+            }
+            this.records = mapped;
+            this.recordCount = count;
+            log.info("Loaded GeoIP database {} with {} ranges", database, count);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open GeoIP database " + database, e);
+        }
+    }
+
+    public boolean isEnabled() {
+        return records != null;
+    }
+
+    /**
+     * ISO country code of an IPv4 (or IPv4-mapped IPv6) address, null if unknown
+     */
+    public String country(String ipAddress) {
+        if (records == null || ipAddress == null) {
+            return null;
+        }
+        long address = parseIpv4(ipAddress);
+        if (address < 0) {
+            return null;
+        }
+        int ip = (int) address;
+
+        // Last range whose first address is <= ip
+        int low = 0;
+        int high = recordCount - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (Integer.compareUnsigned(records.getInt(offset(mid)), ip) <= 0) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (found < 0 || Integer.compareUnsigned(ip, records.getInt(offset(found) + 4)) > 0) {
+            return null;
+        }
+        int first = records.get(offset(found) + 8) - 'A';
+        int second = records.get(offset(found) + 9) - 'A';
+        if (first < 0 || first >= 26 || second < 0 || second >= 26) {
+            return null;
+        }
+        return COUNTRY_CODES[first * 26 + second];
+    }
+
+    private static int offset(int record) {
+        return HEADER_BYTES + record * RECORD_BYTES;
+    }
+
+    /**
+     * The address as an unsigned int, or -1 if it is not dotted-quad IPv4
+     */
+    static long parseIpv4(String ipAddress) {
+        int start = 0;
+        int length = ipAddress.length();
+        if (ipAddress.regionMatches(true, 0, "::ffff:", 0, 7)) {
+            start = 7;
+        }
+        long address = 0;
+        int octets = 0;
+        int value = -1;
+        for (int i = start; i <= length; i++) {
+            char c = i < length ? ipAddress.charAt(i) : '.';
+            if (c >= '0' && c <= '9') {
+                value = (value < 0 ? 0 : value * 10) + (c - '0');
+                if (value > 255) {
+                    return -1;
+                }
+            } else if (c == '.' && value >= 0 && octets < 4) {
+                address = (address << 8) | value;
+                octets++;
+                value = -1;
+            } else {
+                return -1;
+            }
+        }
+        return octets == 4 ? address : -1;
+    }
+}
@@ -0,0 +1,74 @@
+package in.osop.messaging_platform.service;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Hashed timing wheel: O(1) scheduling of many timers that only need tick precision.
+ *
+ * Each slot holds the timers whose deadline hashes to it; timers more than one
+ * revolution away carry the number of revolutions left. {@link #advance} walks
+ * the slots passed since the last call and hands back every timer that is due.
+ */
+class HashedTimingWheel<T> {
+
+    private final long tickMs;
+    private final int mask;
+    private final List<Timer<T>>[] slots;
+    private long currentTick;
+
+    @SuppressWarnings("unchecked")
+    HashedTimingWheel(long tickMs, int slotCount, long nowMs) {
+        // Power of two so the slot is a mask rather than a modulo
+        int size = Integer.highestOneBit(Math.max(2, slotCount - 1)) << 1;
+        this.tickMs = tickMs;
+        this.mask = size - 1;
+        this.slots = new List[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new ArrayList<>();
+        }
+        this.currentTick = nowMs / tickMs;
+    }
+
+    /**
+     * Schedule an item; deadlines in the past fire on the next advance
+     */
+    synchronized void schedule(T item, long deadlineMs) {
+        long tick = Math.max(deadlineMs / tickMs, currentTick);
+        long rounds = (tick - currentTick) / slots.length;
+        slots[(int) (tick & mask)].add(new Timer<>(item, rounds));
+    }
+
+    /**
+     * Move the wheel up to now and collect the items that came due
+     */
+    synchronized List<T> advance(long nowMs) {
+        List<T> due = new ArrayList<>();
+        long targetTick = nowMs / tickMs;
+        while (currentTick <= targetTick) {
+            Iterator<Timer<T>> timers = slots[(int) (currentTick & mask)].iterator();
+            while (timers.hasNext()) {
+                Timer<T> timer = timers.next();
+                if (timer.rounds <= 0) {
+                    due.add(timer.item);
+                    timers.remove();
+                } else {
+                    timer.rounds--;
+                }
+            }
+            currentTick++;
+        }
+        return due;
+    }
+
+    private static final class Timer<T> {
+        private final T item;
+        private long rounds;
+
+        private Timer(T item, long rounds) {
+            this.item = item;
+            this.rounds = rounds;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package in.osop.messaging_platform.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Single pass over an HTML document that finds the {@code href} of every anchor
+ * and the last {@code </body>} tag.
+ *
+ * Tags are tokenized just far enough to read attributes: quoted values,
+ * comments and the raw text of {@code <script>} and {@code <style>} are skipped
+ * as a browser would, so an "href=" inside any of them is not taken for a link.
+ * Tag and attribute names are case-insensitive.
+ */
+final class HtmlLinkScanner {
+
+    private final String html;
+    private final int length;
+    private final List<Link> links = new ArrayList<>();
+    private int bodyCloseAt = -1;
+    private int pos;
+
+    private HtmlLinkScanner(String html) {
+        this.html = html;
+        this.length = html.length();
+    }
+
+    static HtmlLinkScanner scan(String html) {
+        HtmlLinkScanner scanner = new HtmlLinkScanner(html);
+        scanner.run();
+        return scanner;
+    }
+
+    /**
+     * Anchor hrefs in document order
+     */
+    List<Link> getLinks() {
+        return Collections.unmodifiableList(links);
+    }
+
+    /**
+     * Offset of the last {@code </body>} tag, or -1 without one
+     */
+    int getBodyCloseAt() {
+        return bodyCloseAt;
+    }
+
+    private void run() {
+        while (pos < length) {
+            int lt = html.indexOf('<', pos);
+            if (lt < 0 || lt + 1 >= length) {
+                return;
+            }
+            pos = lt + 1;
+            char c = html.charAt(pos);
+            if (html.startsWith("!--", pos)) {
+                int end = html.indexOf("-->", pos + 3);
+                pos = end < 0 ? length : end + 3;
+            } else if (c == '/') {
+                pos++;
+                String name = readName();
+                if (name.equalsIgnoreCase("body")) {
+                    bodyCloseAt = lt;
+                }
+                skipPast('>');
+            } else if (isLetter(c)) {
+                String name = readName();
+                readAttributes(name.equalsIgnoreCase("a"));
+                if (name.equalsIgnoreCase("script") || name.equalsIgnoreCase("style")) {
+                    skipRawText(name);
+                }
+            } else {
+                // "<!DOCTYPE", "<?" or a stray "<" in text
+                skipPast('>');
+            }
+        }
+    }
+
+    private void readAttributes(boolean anchor) {
+        while (pos < length) {
+            skipWhitespace();
+            if (pos >= length) {
+                return;
+            }
+            char c = html.charAt(pos);
+            if (c == '>') {
+                pos++;
+                return;
+            }
+            if (c == '/') {
+                pos++;
+                continue;
+            }
+            int attributeStart = pos;
+            String name = readAttributeName();
+            skipWhitespace();
+            if (pos >= length || html.charAt(pos) != '=') {
+                continue;
+            }
+            pos++;
+            skipWhitespace();
+            if (pos >= length) {
+                return;
+            }
+            int valueStart;
+            int valueEnd;
+            char quote = html.charAt(pos);
+            if (quote == '"' || quote == '\'') {
+                valueStart = pos + 1;
+                int close = html.indexOf(quote, valueStart);
+                valueEnd = close < 0 ? length : close;
+                pos = close < 0 ? length : close + 1;
+            } else {
+                valueStart = pos;
+                while (pos < length && !Character.isWhitespace(html.charAt(pos)) && html.charAt(pos) != '>') {
+                    pos++;
+                }
+                valueEnd = pos;
+            }
+            if (anchor && name.equalsIgnoreCase("href")) {
+                links.add(new Link(attributeStart, pos, html.substring(valueStart, valueEnd)));
+            }
+        }
+    }
+
+    private void skipRawText(String tagName) {
+        while (pos < length) {
+            int lt = html.indexOf("</", pos);
+            if (lt < 0) {
+                pos = length;
+                return;
+            }
+            if (html.regionMatches(true, lt + 2, tagName, 0, tagName.length())) {
+                pos = lt;
+                return;
+            }
+            pos = lt + 2;
+        }
+    }
+
+    private String readName() {
+        int start = pos;
+        while (pos < length) {
+            char c = html.charAt(pos);
+            if (Character.isWhitespace(c) || c == '>' || c == '/') {
+                break;
+            }
+            pos++;
+        }
+        return html.substring(start, pos);
+    }
+
+    private String readAttributeName() {
+        int start = pos;
+        while (pos < length) {
+            char c = html.charAt(pos);
+            if (Character.isWhitespace(c) || c == '=' || c == '>' || c == '/') {
+                break;
+            }
+            pos++;
+        }
+        if (pos == start) {
+            // Not a name character at all, step over it
+            pos++;
+        }
+        return html.substring(start, pos);
+    }
+
+    private void skipWhitespace() {
+        while (pos < length && Character.isWhitespace(html.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private void skipPast(char c) {
+        int at = html.indexOf(c, pos);
+        pos = at < 0 ? length : at + 1;
+    }
+
+    private static boolean isLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    /**
+     * One anchor href: {@code [start, end)} covers the whole attribute, name to closing quote
+     */
+    static final class Link {
+        private final int start;
+        private final int end;
+        private final String target;
+
+        private Link(int start, int end, String target) {
+            this.start = start;
+            this.end = end;
+            this.target = target;
+        }
+
+        int getStart() {
+            return start;
+        }
+
+        int getEnd() {
+            return end;
+        }
+
+        /**
+         * The attribute value as written, character references not yet decoded
+         */
+        String getTarget() {
+            return target;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package in.osop.messaging_platform.service;
+
+import in.osop.messaging_platform.model.MessageLog;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind sink for {@link MessageLog} rows.
+ *
+ * Senders hand rows to a bounded queue and move on; a single writer thread
+ * drains it and inserts hundreds of rows per round trip with a JDBC batch.
+ * Ids come from AUTO_INCREMENT and are never read back, so the batch is not
+ * limited by IDENTITY generation, and with {@code rewriteBatchedStatements=true}
+ * the MySQL driver sends it as multi-row INSERTs. A full queue blocks the
+ * producer, which throttles sending to the rate the database can absorb.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MessageLogWriter {
+
+    private static final String INSERT_SQL = "INSERT INTO message_logs (timestamp, channel, recipient, " +
+        "message_content, status, response_code, error_message, campaign_id, batch_number, retry_count, " +
+        "max_retries, next_retry_at, sent_at, provider_message_id, processing_time_ms) " +
+        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // Queued by flush() to make the writer stop lingering and write what it has
+    private static final MessageLog FLUSH = new MessageLog();
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${message-log.writer.queue-capacity:20000}")
+    private int queueCapacity;
+
+    @Value("${message-log.writer.batch-size:500}")
+    private int batchSize;
+
+    @Value("${message-log.writer.flush-interval-ms:200}")
+    private long flushIntervalMs;
+
+    private BlockingQueue<MessageLog> queue;
+    private final AtomicLong enqueued = new AtomicLong();
+    private final Object writtenMonitor = new Object();
+    private long written;
+    private Thread writerThread;
+    private volatile boolean running = true;
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        writerThread = new Thread(this::drainLoop, "MessageLogWriter");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Queue a row for insertion, blocking while the queue is full
+     */
+    public void write(MessageLog messageLog) {
+        if (messageLog.getTimestamp() == null) {
+            messageLog.setTimestamp(LocalDateTime.now());
+        }
+        enqueued.incrementAndGet();
+        try {
+            while (!queue.offer(messageLog, 1, TimeUnit.SECONDS)) {
+                if (!running) {
+                    // Writer is gone; don't lose the row
+                    insert(List.of(messageLog));
+                    markWritten(1);
+                    return;
+                }
+                log.debug("Message log queue full, waiting for the writer");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            insert(List.of(messageLog));
+            markWritten(1);
+        }
+    }
+
+    /**
+     * Block until every row queued before this call has been written
+     */
+    public void flush() {
+        long target = enqueued.get();
+        synchronized (writtenMonitor) {
+            if (written >= target) {
+                return;
+            }
+        }
+        queue.offer(FLUSH);
+        try {
+            synchronized (writtenMonitor) {
+                while (written < target && writerThread.isAlive()) {
+                    writtenMonitor.wait(flushIntervalMs);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        writerThread.interrupt();
+        writerThread.join(10000);
+        // Anything queued after the writer stopped
+        List<MessageLog> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        remaining.removeIf(row -> row == FLUSH);
+        if (!remaining.isEmpty()) {
+            insert(remaining);
+            markWritten(remaining.size());
+        }
+    }
+
+    private void drainLoop() {
+        List<MessageLog> buffer = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                fill(buffer);
+            } catch (InterruptedException e) {
+                // Shutting down: write what was taken, then drain the rest
+                queue.drainTo(buffer, batchSize - buffer.size());
+            }
+            buffer.removeIf(row -> row == FLUSH);
+            if (!buffer.isEmpty()) {
+                insert(buffer);
+                markWritten(buffer.size());
+            }
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Wait for a first row, then linger up to the flush interval for a full batch
+     */
+    private void fill(List<MessageLog> buffer) throws InterruptedException {
+        MessageLog first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return;
+        }
+        buffer.add(first);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        while (buffer.size() < batchSize && buffer.get(buffer.size() - 1) != FLUSH) {
+            queue.drainTo(buffer, batchSize - buffer.size());
+            if (buffer.size() >= batchSize || buffer.contains(FLUSH)) {
+                return;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return;
+            }
+            MessageLog next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            buffer.add(next);
+        }
+    }
+
+    private void markWritten(int rows) {
+        synchronized (writtenMonitor) {
+            written += rows;
+            writtenMonitor.notifyAll();
+        }
+    }
+
+    private void insert(List<MessageLog> rows) {
+        try {
+            jdbcTemplate.batchUpdate(INSERT_SQL, rows, rows.size(), this::bind);
+        } catch (Exception e) {
+            log.error("Batch insert of {} message logs failed, retrying row by row: {}", rows.size(), e.getMessage());
+            for (MessageLog row : rows) {
+                try {
+                    jdbcTemplate.update(INSERT_SQL, ps -> bind(ps, row));
+                } catch (Exception rowError) {
+                    log.error("Dropping message log for {}: {}", row.getRecipient(), rowError.getMessage());
+                }
+            }
+        }
+    }
+
+    private void bind(PreparedStatement ps, MessageLog row) throws SQLException {
+        ps.setTimestamp(1, Timestamp.valueOf(row.getTimestamp()));
+        ps.setString(2, row.getChannel().name());
+        ps.setString(3, row.getRecipient());
+        ps.setString(4, row.getMessageContent());
+        ps.setString(5, row.getStatus().name());
+        ps.setString(6, row.getResponseCode());
+        ps.setString(7, row.getErrorMessage());
+        setLong(ps, 8, row.getCampaignId());
+        setInt(ps, 9, row.getBatchNumber());
+        setInt(ps, 10, row.getRetryCount());
+        setInt(ps, 11, row.getMaxRetries());
+        ps.setTimestamp(12, row.getNextRetryAt() != null ? Timestamp.valueOf(row.getNextRetryAt()) : null);
+        ps.setTimestamp(13, row.getSentAt() != null ? Timestamp.valueOf(row.getSentAt()) : null);
+        ps.setString(14, row.getProviderMessageId());
+        setLong(ps, 15, row.getProcessingTimeMs());
+    }
+
+    private static void setLong(PreparedStatement ps, int index, Long value) throws SQLException {
+        if (value != null) {
+            ps.setLong(index, value);
+        } else {
+            ps.setNull(index, Types.BIGINT);
+        }
+    }
+
+    private static void setInt(PreparedStatement ps, int index, Integer value) throws SQLException {
+        if (value != null) {
+            ps.setInt(index, value);
+        } else {
+            ps.setNull(index, Types.INTEGER);
+        }
+    }
+}
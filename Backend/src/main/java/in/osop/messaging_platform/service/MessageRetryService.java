@@ -0,0 +1,96 @@
+package in.osop.messaging_platform.service;
+
+import in.osop.messaging_platform.model.MessageLog;
+import in.osop.messaging_platform.model.MessageStatus;
+import in.osop.messaging_platform.model.SubscriptionStatus;
+import in.osop.messaging_platform.repository.MessageLogRepository;
+import in.osop.messaging_platform.repository.SubscriberRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Retry policy for failed campaign sends.
+ *
+ * Transient failures (4xx replies, timeouts, anything without a reply code)
+ * get a {@code next_retry_at} with jittered exponential backoff until the
+ * message's {@code maxRetries} is used up; the {@link RetryScheduler} picks
+ * them up from there. Permanent 5xx failures are never retried; when the relay
+ * rejected the recipient address itself the recipient is suppressed so later
+ * campaigns skip them.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MessageRetryService {
+
+    private final MessageLogRepository messageLogRepository;
+    private final SubscriberRepository subscriberRepository;
+
+    @Value("${retry.base-delay-ms:60000}")
+    private long baseDelayMs;
+
+    @Value("${retry.max-delay-ms:3600000}")
+    private long maxDelayMs;
+
+    /**
+     * Fill in the retry plan of a first failed attempt before its log is written
+     */
+    public void planRetry(MessageLog messageLog, Exception failure) {
+        int replyCode = SmtpReplies.replyCode(failure);
+        if (replyCode > 0) {
+            messageLog.setResponseCode(String.valueOf(replyCode));
+        }
+        if (SmtpReplies.isPermanent(failure)) {
+            suppressIfRejected(messageLog.getRecipient(), failure, replyCode);
+        } else if (messageLog.canRetry()) {
+            messageLog.setNextRetryAt(nextRetryAt(messageLog.getRetryCount()));
+        }
+    }
+
+    public void retrySucceeded(MessageLog messageLog, long processingTime) {
+        messageLogRepository.markRetrySent(messageLog.getId(), MessageStatus.SENT, LocalDateTime.now(), processingTime);
+    }
+
+    public void retryFailed(MessageLog messageLog, Exception failure) {
+        int attempts = messageLog.getRetryCount() + 1;
+        int replyCode = SmtpReplies.replyCode(failure);
+        LocalDateTime nextRetryAt = null;
+        if (SmtpReplies.isPermanent(failure)) {
+            suppressIfRejected(messageLog.getRecipient(), failure, replyCode);
+        } else if (attempts < messageLog.getMaxRetries()) {
+            nextRetryAt = nextRetryAt(attempts);
+        } else {
+            log.info("Giving up on {} for campaign {} after {} retries",
+                messageLog.getRecipient(), messageLog.getCampaignId(), attempts);
+        }
+        messageLogRepository.markRetryFailed(messageLog.getId(), MessageStatus.FAILED,
+            replyCode > 0 ? String.valueOf(replyCode) : messageLog.getResponseCode(),
+            failure.getMessage(), nextRetryAt);
+    }
+
+    /**
+     * Backoff before retry number {@code attempt + 1}: base * 2^attempt capped at the
+     * maximum, with "equal jitter" so retries of one burst do not come back together
+     */
+    LocalDateTime nextRetryAt(int attempt) {
+        long delay = baseDelayMs << Math.min(attempt, 20);
+        delay = Math.min(delay, maxDelayMs);
+        long jittered = delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+        return LocalDateTime.now().plusNanos(jittered * 1_000_000L);
+    }
+
+    private void suppressIfRejected(String recipient, Exception failure, int replyCode) {
+        if (!SmtpReplies.isRecipientRejected(failure)) {
+            return;
+        }
+        int updated = subscriberRepository.suppressByEmail(recipient, SubscriptionStatus.ACTIVE, SubscriptionStatus.BOUNCED);
+        if (updated > 0) {
+            log.info("Suppressed {} after permanent SMTP failure {}", recipient, replyCode);
+        }
+    }
+}
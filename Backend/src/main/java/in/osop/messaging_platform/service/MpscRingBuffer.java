@@ -0,0 +1,99 @@
+package in.osop.messaging_platform.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Bounded lock-free queue for many producers and a single consumer.
+ *
+ * Each slot carries a sequence number (Vyukov's bounded queue): a producer
+ * claims a position with one CAS on the tail and publishes the element by
+ * advancing the slot's sequence, the consumer takes it once the sequence says
+ * it is there and hands the slot back a lap later. Producers never block or
+ * allocate; when the buffer is full {@link #offer} fails and the caller decides
+ * what to drop.
+ */
+public final class MpscRingBuffer<E> {
+
+    private final int mask;
+    private final AtomicReferenceArray<E> elements;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    // Only the consumer thread moves the head
+    private long head;
+
+    /**
+     * @param capacity rounded up to a power of two
+     */
+    public MpscRingBuffer(int capacity) {
+        if (capacity < 2 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("Ring buffer capacity must be between 2 and 2^30");
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = size - 1;
+        this.elements = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Add an element from any thread; false if the buffer is full
+     */
+    public boolean offer(E element) {
+        if (element == null) {
+            throw new NullPointerException("element");
+        }
+        while (true) {
+            long position = tail.get();
+            int slot = (int) position & mask;
+            long diff = sequences.get(slot) - position;
+            if (diff == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements.lazySet(slot, element);
+                    sequences.lazySet(slot, position + 1);
+                    return true;
+                }
+            } else if (diff < 0) {
+                // The consumer has not taken this slot's previous element yet
+                return false;
+            }
+            // else another producer claimed the position first, try the next one
+        }
+    }
+
+    /**
+     * Hand up to {@code limit} elements to {@code consumer}; consumer thread only
+     */
+    public int drain(Consumer<? super E> consumer, int limit) {
+        int drained = 0;
+        while (drained < limit) {
+            int slot = (int) head & mask;
+            if (sequences.get(slot) != head + 1) {
+                // Empty, or the producer of this slot has claimed it but not published yet
+                break;
+            }
+            E element = elements.get(slot);
+            elements.lazySet(slot, null);
+            sequences.lazySet(slot, head + mask + 1);
+            head++;
+            drained++;
+            consumer.accept(element);
+        }
+        return drained;
+    }
+
+    /**
+     * Whether nothing has been published past the consumer; exact only on the consumer thread
+     */
+    public boolean isEmpty() {
+        return sequences.get((int) head & mask) != head + 1 && tail.get() == head;
+    }
+}
@@ -0,0 +1,149 @@
+package in.osop.messaging_platform.service;
+
+import in.osop.messaging_platform.model.CampaignProgress;
+import in.osop.messaging_platform.model.MessageLog;
+import in.osop.messaging_platform.model.MessageStatus;
+import in.osop.messaging_platform.repository.CampaignProgressRepository;
+import in.osop.messaging_platform.repository.MessageLogRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Fires automatic retries of failed campaign sends.
+ *
+ * {@code message_logs.next_retry_at} is the durable schedule. A periodic scan
+ * loads the retries coming due within the next two scan intervals into an
+ * in-memory {@link HashedTimingWheel}, which fires each one on time without
+ * polling the database every tick. Due retries are claimed with a conditional
+ * UPDATE, so only one node sends each of them, and go back through the normal
+ * send pipeline a batch at a time.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RetryScheduler {
+
+    // How long a claimed retry may take before another scan may pick it up again
+    private static final long CLAIM_LEASE_MINUTES = 10;
+    private static final List<MessageStatus> RETRYABLE = List.of(MessageStatus.FAILED, MessageStatus.PENDING);
+
+    private final MessageLogRepository messageLogRepository;
+    private final CampaignProgressRepository campaignProgressRepository;
+    private final MessageRetryService messageRetryService;
+    private final CampaignBatchSender campaignBatchSender;
+
+    @Value("${retry.scan-interval-ms:15000}")
+    private long scanIntervalMs;
+
+    @Value("${retry.scan-limit:5000}")
+    private int scanLimit;
+
+    @Value("${retry.batch-size:50}")
+    private int batchSize;
+
+    @Value("${retry.wheel.tick-ms:1000}")
+    private long tickMs;
+
+    @Value("${retry.wheel.slots:512}")
+    private int slots;
+
+    private HashedTimingWheel<Long> wheel;
+
+    // Message log id -> next_retry_at it was scheduled with, the claim only succeeds if unchanged
+    private final Map<Long, LocalDateTime> scheduled = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        wheel = new HashedTimingWheel<>(tickMs, slots, System.currentTimeMillis());
+    }
+
+    @Scheduled(fixedDelayString = "${retry.scan-interval-ms:15000}")
+    public void loadDueRetries() {
+        LocalDateTime horizon = LocalDateTime.now().plusNanos(2 * scanIntervalMs * 1_000_000L);
+        List<MessageLog> due = messageLogRepository.findRetriesDueBefore(RETRYABLE, horizon, PageRequest.of(0, scanLimit));
+        int added = 0;
+        for (MessageLog messageLog : due) {
+            if (scheduled.putIfAbsent(messageLog.getId(), messageLog.getNextRetryAt()) == null) {
+                wheel.schedule(messageLog.getId(), toEpochMillis(messageLog.getNextRetryAt()));
+                added++;
+            }
+        }
+        if (added > 0) {
+            log.debug("Scheduled {} message retries", added);
+        }
+    }
+
+    @Scheduled(fixedRateString = "${retry.wheel.tick-ms:1000}")
+    public void fireDueRetries() {
+        List<Long> dueIds = wheel.advance(System.currentTimeMillis());
+        if (dueIds.isEmpty()) {
+            return;
+        }
+
+        // Whole seconds, the release matches on the value the TIMESTAMP column stored
+        LocalDateTime leaseUntil = LocalDateTime.now().plusMinutes(CLAIM_LEASE_MINUTES).truncatedTo(ChronoUnit.SECONDS);
+        Map<Long, List<MessageLog>> byCampaign = new LinkedHashMap<>();
+        for (MessageLog messageLog : messageLogRepository.findAllById(dueIds)) {
+            LocalDateTime expected = scheduled.remove(messageLog.getId());
+            if (expected != null &&
+                messageLogRepository.claimRetry(messageLog.getId(), expected, MessageStatus.PENDING, leaseUntil) > 0) {
+                byCampaign.computeIfAbsent(messageLog.getCampaignId(), id -> new ArrayList<>()).add(messageLog);
+            }
+        }
+        // Ids whose rows are gone
+        dueIds.forEach(scheduled::remove);
+
+        byCampaign.forEach((campaignId, retries) -> {
+            if (isCancelled(campaignId)) {
+                messageLogRepository.abandonRetries(ids(retries), MessageStatus.FAILED);
+                return;
+            }
+            for (int from = 0; from < retries.size(); from += batchSize) {
+                List<MessageLog> batch = retries.subList(from, Math.min(from + batchSize, retries.size()));
+                resend(campaignId, batch, leaseUntil);
+            }
+        });
+    }
+
+    private void resend(Long campaignId, List<MessageLog> batch, LocalDateTime leaseUntil) {
+        log.info("Retrying {} failed messages of campaign {}", batch.size(), campaignId);
+        campaignBatchSender.sendRetries(campaignId, batch).whenComplete((completed, error) -> {
+            if (error != null) {
+                log.error("Retry batch of campaign {} failed: {}", campaignId, error.getMessage());
+            }
+            // Whatever the batch did not get to goes back on the schedule
+            messageLogRepository.releaseRetryClaims(ids(batch), MessageStatus.PENDING, leaseUntil,
+                MessageStatus.FAILED, messageRetryService.nextRetryAt(0));
+        });
+    }
+
+    private boolean isCancelled(Long campaignId) {
+        return campaignProgressRepository.findStatusByCampaignId(campaignId)
+            .map(status -> status == CampaignProgress.CampaignProgressStatus.CANCELLED)
+            .orElse(true);
+    }
+
+    private static List<Long> ids(List<MessageLog> messageLogs) {
+        List<Long> ids = new ArrayList<>(messageLogs.size());
+        messageLogs.forEach(messageLog -> ids.add(messageLog.getId()));
+        return ids;
+    }
+
+    private static long toEpochMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
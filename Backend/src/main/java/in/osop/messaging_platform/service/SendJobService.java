@@ -0,0 +1,114 @@
+package in.osop.messaging_platform.service;
+
+import in.osop.messaging_platform.dto.AudienceMember;
+import in.osop.messaging_platform.model.Campaign;
+import in.osop.messaging_platform.model.CampaignProgress;
+import in.osop.messaging_platform.model.SendJob;
+import in.osop.messaging_platform.model.SubscriptionStatus;
+import in.osop.messaging_platform.repository.AudienceCursor;
+import in.osop.messaging_platform.repository.CampaignProgressRepository;
+import in.osop.messaging_platform.repository.SendJobRepository;
+import in.osop.messaging_platform.repository.SubscriberRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits campaigns into send jobs and hands them out to workers.
+ *
+ * A job covers a contiguous range of subscriber ids, so it is cheap to store
+ * and a worker can load its recipients with one range query. Jobs are claimed
+ * with {@code FOR UPDATE SKIP LOCKED}, which lets every node claim a different
+ * set of jobs without blocking on the others.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SendJobService {
+
+    private static final int INSERT_CHUNK = 500;
+
+    private final SendJobRepository sendJobRepository;
+    private final SubscriberRepository subscriberRepository;
+    private final CampaignProgressRepository campaignProgressRepository;
+    private final CampaignBatchSender campaignBatchSender;
+
+    /**
+     * Create one pending job per audience page, then record the job count as
+     * the campaign's total batches.
+     */
+    public void planCampaign(Campaign campaign, int batchSize) {
+        planFrom(campaign.getId(), batchSize, 0L, 0);
+    }
+
+    /**
+     * Continue planning a campaign whose planner died part-way. Each chunk of
+     * jobs commits on its own, so planning picks up after the last saved job.
+     */
+    public void resumePlanning(CampaignProgress progress) {
+        Long campaignId = progress.getCampaignId();
+        SendJob last = sendJobRepository.findTopByCampaignIdOrderByBatchNumberDesc(campaignId).orElse(null);
+        log.info("Resuming planning of campaign {} after job {}", campaignId, last != null ? last.getBatchNumber() : 0);
+        planFrom(campaignId, progress.getBatchSize(), last != null ? last.getLastSubscriberId() : 0L,
+            last != null ? last.getBatchNumber() : 0);
+    }
+
+    private void planFrom(Long campaignId, int batchSize, long afterId, int plannedJobs) {
+        AudienceCursor audience = subscriberRepository.openAudienceCursor(SubscriptionStatus.ACTIVE, afterId, batchSize);
+        List<SendJob> jobs = new ArrayList<>(INSERT_CHUNK);
+        int batchNumber = plannedJobs;
+
+        while (audience.hasNext()) {
+            long pageAfterId = audience.getLastId();
+            List<AudienceMember> page = audience.next();
+            jobs.add(SendJob.builder()
+                .campaignId(campaignId)
+                .batchNumber(++batchNumber)
+                .afterSubscriberId(pageAfterId)
+                .lastSubscriberId(page.get(page.size() - 1).getId())
+                .status(SendJob.SendJobStatus.PENDING)
+                .build());
+            if (jobs.size() >= INSERT_CHUNK) {
+                saveChunk(campaignId, jobs);
+            }
+        }
+        saveChunk(campaignId, jobs);
+
+        log.info("Planned {} send jobs for campaign {}", batchNumber, campaignId);
+        campaignProgressRepository.updateTotalBatches(campaignId, batchNumber);
+        if (batchNumber == 0) {
+            campaignBatchSender.completeCampaign(campaignId);
+        } else {
+            // Workers may already have finished every job before the count was known
+            campaignBatchSender.completeCampaignIfDone(campaignId);
+        }
+    }
+
+    // The heartbeat tells the stalled-campaign recovery that planning is still going
+    private void saveChunk(Long campaignId, List<SendJob> jobs) {
+        sendJobRepository.saveAll(jobs);
+        jobs.clear();
+        campaignProgressRepository.touchHeartbeats(List.of(campaignId), LocalDateTime.now());
+    }
+
+    /**
+     * Claim up to {@code limit} jobs for {@code owner} under a lease of {@code leaseMs}
+     */
+    @Transactional
+    public List<SendJob> claim(String owner, int limit, long leaseMs) {
+        LocalDateTime now = LocalDateTime.now();
+        List<SendJob> jobs = sendJobRepository.lockClaimable(now, limit);
+        for (SendJob job : jobs) {
+            job.setStatus(SendJob.SendJobStatus.CLAIMED);
+            job.setOwner(owner);
+            job.setLeaseExpiresAt(now.plusNanos(leaseMs * 1_000_000L));
+            job.setAttempts(job.getAttempts() + 1);
+        }
+        return sendJobRepository.saveAll(jobs);
+    }
+}
@@ -0,0 +1,165 @@
+package in.osop.messaging_platform.service;
+
+import in.osop.messaging_platform.dto.AudienceMember;
+import in.osop.messaging_platform.model.CampaignProgress;
+import in.osop.messaging_platform.model.SendJob;
+import in.osop.messaging_platform.model.SubscriptionStatus;
+import in.osop.messaging_platform.repository.CampaignProgressRepository;
+import in.osop.messaging_platform.repository.SendJobRepository;
+import in.osop.messaging_platform.repository.SubscriberRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Claims send jobs from the shared table and sends them on this node.
+ *
+ * Every node runs a worker, so the jobs of one campaign spread over the whole
+ * cluster. Claimed jobs are held under a lease that the heartbeat keeps
+ * extending; if the node dies the lease runs out and another node claims them.
+ */
+@Service
+@ConditionalOnProperty(name = "messaging.dispatch.mode", havingValue = "jobs")
+@RequiredArgsConstructor
+@Slf4j
+public class SendJobWorker {
+
+    private final SendJobService sendJobService;
+    private final SendJobRepository sendJobRepository;
+    private final SubscriberRepository subscriberRepository;
+    private final CampaignProgressRepository campaignProgressRepository;
+    private final CampaignBatchSender campaignBatchSender;
+    private final CampaignRunRegistry campaignRunRegistry;
+    private final Executor emailTaskExecutor;
+
+    @Value("${messaging.jobs.max-in-flight:4}")
+    private int maxInFlight;
+
+    @Value("${messaging.jobs.lease-ms:60000}")
+    private long leaseMs;
+
+    @Value("${messaging.jobs.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${messaging.jobs.pause-backoff-ms:30000}")
+    private long pauseBackoffMs;
+
+    private final String workerId = resolveWorkerId();
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+
+    @Scheduled(fixedDelayString = "${messaging.jobs.poll-interval-ms:1000}")
+    public void poll() {
+        int capacity = maxInFlight - inFlight.size();
+        if (capacity <= 0) {
+            return;
+        }
+        for (SendJob job : sendJobService.claim(workerId, capacity, leaseMs)) {
+            inFlight.add(job.getId());
+            emailTaskExecutor.execute(() -> run(job));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${messaging.jobs.heartbeat-interval-ms:15000}")
+    public void heartbeat() {
+        if (inFlight.isEmpty()) {
+            return;
+        }
+        sendJobRepository.extendLeases(List.copyOf(inFlight), workerId, SendJob.SendJobStatus.CLAIMED,
+            LocalDateTime.now().plusNanos(leaseMs * 1_000_000L));
+    }
+
+    private void run(SendJob job) {
+        Long campaignId = job.getCampaignId();
+        try {
+            CampaignProgress.CampaignProgressStatus status = campaignProgressRepository
+                .findStatusByCampaignId(campaignId)
+                .orElse(null);
+            if (status == CampaignProgress.CampaignProgressStatus.PAUSED) {
+                park(job);
+                return;
+            }
+            if (status != CampaignProgress.CampaignProgressStatus.RUNNING) {
+                log.info("Cancelling send job {} of campaign {} in status {}", job.getBatchNumber(), campaignId, status);
+                campaignBatchSender.release(campaignId);
+                finish(job, SendJob.SendJobStatus.CANCELLED, null);
+                return;
+            }
+
+            campaignRunRegistry.register(campaignId);
+            // An earlier attempt may have sent part of the shard before failing, pausing or losing its lease
+            List<AudienceMember> recipients = campaignBatchSender.withoutDelivered(campaignId,
+                subscriberRepository.findAudienceInRange(
+                    SubscriptionStatus.ACTIVE, job.getAfterSubscriberId(), job.getLastSubscriberId()));
+            campaignBatchSender.sendBatch(campaignBatchSender.contextFor(campaignId), recipients, job.getBatchNumber())
+                .whenComplete((completed, error) -> {
+                    if (error != null) {
+                        fail(job, error);
+                    } else if (completed) {
+                        finish(job, SendJob.SendJobStatus.DONE, null);
+                    } else if (campaignRunRegistry.signalOf(campaignId) == CampaignRunRegistry.Signal.PAUSE) {
+                        park(job);
+                    } else {
+                        finish(job, SendJob.SendJobStatus.CANCELLED, null);
+                    }
+                });
+        } catch (Exception e) {
+            fail(job, e);
+        }
+    }
+
+    private void park(SendJob job) {
+        try {
+            sendJobRepository.parkJob(job.getId(), workerId, SendJob.SendJobStatus.CLAIMED,
+                LocalDateTime.now().plusNanos(pauseBackoffMs * 1_000_000L));
+        } finally {
+            inFlight.remove(job.getId());
+        }
+    }
+
+    private void fail(SendJob job, Throwable error) {
+        log.error("Send job {} of campaign {} failed on attempt {}: {}",
+            job.getBatchNumber(), job.getCampaignId(), job.getAttempts(), error.getMessage(), error);
+        SendJob.SendJobStatus status = job.getAttempts() >= maxAttempts
+            ? SendJob.SendJobStatus.FAILED
+            : SendJob.SendJobStatus.PENDING;
+        finish(job, status, error.getMessage());
+    }
+
+    private void finish(SendJob job, SendJob.SendJobStatus status, String error) {
+        try {
+            int updated = sendJobRepository.finishJob(job.getId(), workerId, SendJob.SendJobStatus.CLAIMED, status, error);
+            if (updated == 0) {
+                log.warn("Lost the lease on send job {} of campaign {}", job.getBatchNumber(), job.getCampaignId());
+            } else if (status == SendJob.SendJobStatus.DONE) {
+                campaignBatchSender.completeBatch(job.getCampaignId());
+            } else if (status == SendJob.SendJobStatus.FAILED) {
+                // Out of attempts: the job is terminal, so its unsent recipients count as failed
+                campaignBatchSender.failBatch(job.getCampaignId(), subscriberRepository.findAudienceInRange(
+                    SubscriptionStatus.ACTIVE, job.getAfterSubscriberId(), job.getLastSubscriberId()));
+            }
+        } finally {
+            inFlight.remove(job.getId());
+        }
+    }
+
+    private static String resolveWorkerId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "unknown";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
@@ -0,0 +1,132 @@
+package in.osop.messaging_platform.service;
+
+import in.osop.messaging_platform.model.Tenant;
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.EstimationProbe;
+import io.github.bucket4j.Refill;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Token-bucket rate limiting for outbound sends, built on Bucket4j.
+ *
+ * Buckets refill greedily (continuously) and hold at most one second worth of
+ * tokens, so traffic is paced smoothly instead of going out in bursts. A send
+ * normally has to pass several buckets at once: the campaign's own pace, the
+ * tenant's plan allowance and the relay's ceiling. Callers never block; when
+ * no tokens are available they get the time to wait and schedule themselves.
+ */
+@Service
+@Slf4j
+public class SendRateLimiter {
+
+    @Value("${rate-limit.relay.messages-per-second:50}")
+    private long relayMessagesPerSecond;
+
+    @Value("${rate-limit.tenant.free.messages-per-minute:60}")
+    private long freeMessagesPerMinute;
+
+    @Value("${rate-limit.tenant.starter.messages-per-minute:600}")
+    private long starterMessagesPerMinute;
+
+    @Value("${rate-limit.tenant.professional.messages-per-minute:3000}")
+    private long professionalMessagesPerMinute;
+
+    @Value("${rate-limit.tenant.enterprise.messages-per-minute:12000}")
+    private long enterpriseMessagesPerMinute;
+
+    private final Map<String, Bucket> relayBuckets = new ConcurrentHashMap<>();
+    private final Map<Long, Bucket> tenantBuckets = new ConcurrentHashMap<>();
+
+    /**
+     * Bucket pacing a single campaign, or {@code null} when the campaign is unthrottled.
+     */
+    public Bucket campaignBucket(Integer ratePerMinute) {
+        if (ratePerMinute == null || ratePerMinute <= 0) {
+            return null;
+        }
+        return perMinute(ratePerMinute);
+    }
+
+    /**
+     * Shared bucket for every send going through the given relay.
+     */
+    public Bucket relayBucket(String relayId) {
+        return relayBuckets.computeIfAbsent(relayId, id -> perMinute(relayMessagesPerSecond * 60));
+    }
+
+    /**
+     * Shared bucket for every send made on behalf of a tenant, sized by plan.
+     */
+    public Bucket tenantBucket(Long tenantId, Tenant.SubscriptionPlan plan) {
+        return tenantBuckets.computeIfAbsent(tenantId, id -> perMinute(messagesPerMinute(plan)));
+    }
+
+    /**
+     * Bucket pacing sends to one recipient domain (or provider), owned by the caller.
+     */
+    public Bucket domainBucket(long messagesPerMinute) {
+        return perMinute(messagesPerMinute);
+    }
+
+    /**
+     * Take up to {@code wanted} tokens from every bucket without blocking.
+     *
+     * @return the number of tokens granted by all buckets, 0 when any bucket is empty
+     */
+    public long tryAcquire(List<Bucket> buckets, long wanted) {
+        long granted = wanted;
+        for (int i = 0; i < buckets.size() && granted > 0; i++) {
+            long consumed = buckets.get(i).tryConsumeAsMuchAsPossible(granted);
+            if (consumed < granted) {
+                // Hand back what earlier buckets gave beyond this bucket's grant
+                for (int j = 0; j < i; j++) {
+                    buckets.get(j).addTokens(granted - consumed);
+                }
+                granted = consumed;
+            }
+        }
+        return granted;
+    }
+
+    /**
+     * Nanoseconds until every bucket can hand out at least one token.
+     */
+    public long nanosUntilAvailable(List<Bucket> buckets) {
+        long wait = 0;
+        for (Bucket bucket : buckets) {
+            EstimationProbe probe = bucket.estimateAbilityToConsume(1);
+            if (!probe.canBeConsumed()) {
+                wait = Math.max(wait, probe.getNanosToWaitForRefill());
+            }
+        }
+        return wait;
+    }
+
+    private long messagesPerMinute(Tenant.SubscriptionPlan plan) {
+        if (plan == null) {
+            return freeMessagesPerMinute;
+        }
+        return switch (plan) {
+            case FREE -> freeMessagesPerMinute;
+            case STARTER -> starterMessagesPerMinute;
+            case PROFESSIONAL -> professionalMessagesPerMinute;
+            case ENTERPRISE -> enterpriseMessagesPerMinute;
+        };
+    }
+
+    private Bucket perMinute(long messagesPerMinute) {
+        // Burst capacity is one second's worth so the refill rate dominates
+        long capacity = Math.max(1, messagesPerMinute / 60);
+        return Bucket.builder()
+            .addLimit(Bandwidth.classic(capacity, Refill.greedy(messagesPerMinute, Duration.ofMinutes(1))))
+            .build();
+    }
+}
@@ -0,0 +1,101 @@
+package in.osop.messaging_platform.service;
+
+import jakarta.mail.MessagingException;
+import org.eclipse.angus.mail.smtp.SMTPAddressFailedException;
+import org.eclipse.angus.mail.smtp.SMTPSendFailedException;
+import org.eclipse.angus.mail.smtp.SMTPSenderFailedException;
+
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+
+/**
+ * Reads what a failed send tells us from the SMTP reply buried in its exception chain.
+ */
+final class SmtpReplies {
+
+    private static final int MAX_DEPTH = 10;
+
+    private SmtpReplies() {
+    }
+
+    /**
+     * First SMTP reply code found in the failure chain, or -1 when there is none
+     */
+    static int replyCode(Throwable failure) {
+        Throwable cause = failure;
+        for (int depth = 0; cause != null && depth < MAX_DEPTH; depth++) {
+            int code = ownReplyCode(cause);
+            if (code > 0) {
+                return code;
+            }
+            cause = next(cause);
+        }
+        return -1;
+    }
+
+    /**
+     * Whether the relay timed out or refused the connection
+     */
+    static boolean isTimeout(Throwable failure) {
+        Throwable cause = failure;
+        for (int depth = 0; cause != null && depth < MAX_DEPTH; depth++) {
+            if (cause instanceof SocketTimeoutException || cause instanceof ConnectException) {
+                return true;
+            }
+            cause = next(cause);
+        }
+        return false;
+    }
+
+    /**
+     * A 4xx reply: try again later
+     */
+    static boolean isTransient(Throwable failure) {
+        int code = replyCode(failure);
+        return code >= 400 && code < 500;
+    }
+
+    /**
+     * A 5xx reply: retrying will not help
+     */
+    static boolean isPermanent(Throwable failure) {
+        int code = replyCode(failure);
+        return code >= 500 && code < 600;
+    }
+
+    /**
+     * A 5xx reply to RCPT TO: the relay rejected the recipient address itself.
+     * Message-level and sender rejections don't say anything about the recipient.
+     */
+    static boolean isRecipientRejected(Throwable failure) {
+        Throwable cause = failure;
+        for (int depth = 0; cause != null && depth < MAX_DEPTH; depth++) {
+            if (cause instanceof SMTPAddressFailedException e) {
+                return e.getReturnCode() >= 500 && e.getReturnCode() < 600;
+            }
+            cause = next(cause);
+        }
+        return false;
+    }
+
+    private static int ownReplyCode(Throwable failure) {
+        if (failure instanceof SMTPSendFailedException e) {
+            return e.getReturnCode();
+        }
+        if (failure instanceof SMTPAddressFailedException e) {
+            return e.getReturnCode();
+        }
+        if (failure instanceof SMTPSenderFailedException e) {
+            return e.getReturnCode();
+        }
+        return -1;
+    }
+
+    private static Throwable next(Throwable failure) {
+        // Per-recipient failures hang off SendFailedException as chained "next" exceptions
+        if (failure instanceof MessagingException messagingException && messagingException.getNextException() != null) {
+            return messagingException.getNextException();
+        }
+        return failure.getCause();
+    }
+}
@@ -0,0 +1,416 @@
+package in.osop.messaging_platform.service;
+
+import in.osop.messaging_platform.model.SendPriority;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of authenticated SMTP transports for the configured relay.
+ *
+ * {@link JavaMailSenderImpl#send} opens a new connection (TCP connect, STARTTLS,
+ * AUTH) for every call. This pool keeps up to {@code mail.pool.max-connections}
+ * transports open, sends many messages over each one, validates connections that
+ * have been idle and recycles a connection after a fixed number of messages.
+ *
+ * Sends go through two lanes. {@code mail.pool.reserved-transactional-connections}
+ * connections are off limits to bulk campaign sends, and a bulk batch yields
+ * its connection between messages while a transactional send is waiting.
+ * Below that ceiling bulk concurrency follows an {@link AdaptiveConcurrencyLimit}
+ * fed by every send's latency and SMTP reply, exported as
+ * {@code mail.send.concurrency.limit}.
+ * Time spent waiting for a connection is recorded per lane as
+ * {@code mail.send.queue.wait} with p50/p99.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SmtpTransportPool {
+
+    private final JavaMailSenderImpl mailSender;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${mail.pool.max-connections:8}")
+    private int maxConnections;
+
+    @Value("${mail.pool.max-messages-per-connection:100}")
+    private int maxMessagesPerConnection;
+
+    @Value("${mail.pool.validate-after-idle-ms:10000}")
+    private long validateAfterIdleMs;
+
+    @Value("${mail.pool.max-idle-ms:60000}")
+    private long maxIdleMs;
+
+    @Value("${mail.pool.borrow-timeout-ms:30000}")
+    private long borrowTimeoutMs;
+
+    @Value("${mail.pool.reserved-transactional-connections:1}")
+    private int reservedTransactionalConnections;
+
+    @Value("${mail.pool.adaptive.initial-limit:2}")
+    private int adaptiveInitialLimit;
+
+    @Value("${mail.pool.adaptive.min-limit:1}")
+    private int adaptiveMinLimit;
+
+    @Value("${mail.pool.adaptive.backoff-ratio:0.7}")
+    private double adaptiveBackoffRatio;
+
+    @Value("${mail.pool.adaptive.latency-tolerance:2.0}")
+    private double adaptiveLatencyTolerance;
+
+    private final BlockingDeque<PooledTransport> idleTransports = new LinkedBlockingDeque<>();
+    private final AtomicInteger transactionalWaiting = new AtomicInteger();
+    private final Map<SendPriority, Timer> queueWaitTimers = new EnumMap<>(SendPriority.class);
+    private Semaphore permits;
+    private AdaptiveConcurrencyLimit bulkLimit;
+    private Counter preemptions;
+
+    @PostConstruct
+    public void init() {
+        permits = new Semaphore(maxConnections, true);
+        bulkLimit = new AdaptiveConcurrencyLimit(adaptiveInitialLimit, adaptiveMinLimit,
+            maxConnections - reservedTransactionalConnections, adaptiveBackoffRatio, adaptiveLatencyTolerance);
+        Gauge.builder("mail.send.concurrency.limit", bulkLimit, AdaptiveConcurrencyLimit::getLimit)
+            .description("Current adaptive limit on concurrent bulk SMTP connections")
+            .register(meterRegistry);
+        Gauge.builder("mail.send.concurrency.in-flight", bulkLimit, AdaptiveConcurrencyLimit::getInFlight)
+            .description("Bulk SMTP connections currently in use")
+            .register(meterRegistry);
+        for (SendPriority priority : SendPriority.values()) {
+            queueWaitTimers.put(priority, Timer.builder("mail.send.queue.wait")
+                .description("Time a send waited for an SMTP connection")
+                .tag("lane", priority.name().toLowerCase(Locale.ROOT))
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry));
+        }
+        preemptions = Counter.builder("mail.send.preemptions")
+            .description("Bulk sends that gave up their connection to a transactional send")
+            .register(meterRegistry);
+        log.info("SMTP transport pool for relay {} initialised with {} connections, {} messages per connection",
+            getRelayId(), maxConnections, maxMessagesPerConnection);
+    }
+
+    /**
+     * Identifier of the relay this pool sends through (host:port).
+     */
+    public String getRelayId() {
+        return mailSender.getHost() + ":" + mailSender.getPort();
+    }
+
+    /**
+     * Send a single transactional message over a pooled connection.
+     */
+    public void send(MimeMessage message) throws MessagingException {
+        send(message, SendPriority.TRANSACTIONAL);
+    }
+
+    /**
+     * Send a single message over a pooled connection in the given lane.
+     */
+    public void send(MimeMessage message, SendPriority priority) throws MessagingException {
+        Map<Integer, Exception> failures = sendAll(List.of(message), priority);
+        Exception failure = failures.get(0);
+        if (failure instanceof MessagingException messagingException) {
+            throw messagingException;
+        }
+        if (failure != null) {
+            throw new MessagingException(failure.getMessage(), failure);
+        }
+    }
+
+    /**
+     * Send a batch of messages over one pooled connection.
+     *
+     * Never throws for individual messages: the returned map holds the failure
+     * for each message index that could not be sent and is empty when every
+     * message was accepted by the relay. Bulk batches hand their connection to
+     * a waiting transactional send between messages and then queue up again.
+     */
+    public Map<Integer, Exception> sendAll(List<MimeMessage> messages, SendPriority priority) {
+        Map<Integer, Exception> failures = new HashMap<>();
+        if (messages.isEmpty()) {
+            return failures;
+        }
+
+        try {
+            acquirePermit(priority);
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            log.error("Could not obtain SMTP connection to {}: {}", getRelayId(), e.getMessage());
+            for (int i = 0; i < messages.size(); i++) {
+                failures.put(i, e);
+            }
+            return failures;
+        }
+
+        PooledTransport pooled = null;
+        boolean holdsPermit = true;
+        try {
+            for (int i = 0; i < messages.size(); i++) {
+                if (!holdsPermit) {
+                    holdsPermit = reacquirePermit(failures, i, messages.size());
+                    if (!holdsPermit) {
+                        break;
+                    }
+                }
+                if (pooled == null) {
+                    pooled = connect(priority, failures, i, messages.size());
+                    if (pooled == null) {
+                        break;
+                    }
+                }
+                MimeMessage message = messages.get(i);
+                long sendStart = System.nanoTime();
+                try {
+                    prepare(message);
+                    pooled.transport.sendMessage(message, message.getAllRecipients());
+                    pooled.messagesSent++;
+                    sample(priority, System.nanoTime() - sendStart, AdaptiveConcurrencyLimit.Outcome.SUCCESS);
+                } catch (SendFailedException e) {
+                    // Recipient-level rejection; the connection itself is still usable
+                    failures.put(i, e);
+                    sample(priority, System.nanoTime() - sendStart, classify(e));
+                } catch (MessagingException | IllegalStateException e) {
+                    failures.put(i, e);
+                    sample(priority, System.nanoTime() - sendStart, classify(e));
+                    if (!pooled.isUsable()) {
+                        log.warn("SMTP connection to {} lost after {} messages: {}",
+                            getRelayId(), pooled.messagesSent, e.getMessage());
+                        close(pooled);
+                        pooled = null;
+                    }
+                }
+
+                if (pooled != null && pooled.messagesSent >= maxMessagesPerConnection) {
+                    log.debug("Recycling SMTP connection to {} after {} messages", getRelayId(), pooled.messagesSent);
+                    close(pooled);
+                    pooled = null;
+                }
+
+                if (priority == SendPriority.BULK && i < messages.size() - 1 && transactionalWaiting.get() > 0) {
+                    // Step aside; the fair semaphore lets the transactional send in first
+                    if (pooled != null) {
+                        release(pooled);
+                        pooled = null;
+                    } else {
+                        permits.release();
+                    }
+                    holdsPermit = false;
+                    preemptions.increment();
+                }
+            }
+        } finally {
+            if (pooled != null) {
+                release(pooled);
+            } else if (holdsPermit) {
+                permits.release();
+            }
+            if (priority == SendPriority.BULK) {
+                bulkLimit.release();
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Close connections that have sat idle longer than the configured limit.
+     */
+    @Scheduled(fixedDelay = 30000)
+    public void evictIdleTransports() {
+        long now = System.currentTimeMillis();
+        List<PooledTransport> keep = new ArrayList<>();
+        PooledTransport pooled;
+        while ((pooled = idleTransports.pollFirst()) != null) {
+            if (now - pooled.lastUsedAt > maxIdleMs) {
+                close(pooled);
+            } else {
+                keep.add(pooled);
+            }
+        }
+        keep.forEach(idleTransports::offerLast);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        PooledTransport pooled;
+        while ((pooled = idleTransports.pollFirst()) != null) {
+            close(pooled);
+        }
+    }
+
+    private void acquirePermit(SendPriority priority) throws MessagingException, InterruptedException {
+        long start = System.nanoTime();
+        if (priority == SendPriority.TRANSACTIONAL) {
+            transactionalWaiting.incrementAndGet();
+            try {
+                acquire(permits);
+            } finally {
+                transactionalWaiting.decrementAndGet();
+            }
+        } else {
+            // Bulk sends stay under the adaptive limit, which never reaches the reserved connections
+            if (!bulkLimit.tryAcquire(borrowTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new MessagingException("Timed out waiting for an SMTP connection to " + getRelayId());
+            }
+            try {
+                acquire(permits);
+            } catch (MessagingException | InterruptedException e) {
+                bulkLimit.release();
+                throw e;
+            }
+        }
+        queueWaitTimers.get(priority).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    private void acquire(Semaphore semaphore) throws MessagingException, InterruptedException {
+        if (!semaphore.tryAcquire(borrowTimeoutMs, TimeUnit.MILLISECONDS)) {
+            throw new MessagingException("Timed out waiting for an SMTP connection to " + getRelayId());
+        }
+    }
+
+    /**
+     * Feed a send or connect outcome to the bulk limit. Transactional sends don't
+     * run under that limit, so their latency and failures must not move it.
+     */
+    private void sample(SendPriority priority, long latencyNanos, AdaptiveConcurrencyLimit.Outcome outcome) {
+        if (priority == SendPriority.BULK) {
+            bulkLimit.onSample(latencyNanos, outcome);
+        }
+    }
+
+    private boolean reacquirePermit(Map<Integer, Exception> failures, int from, int to) {
+        long start = System.nanoTime();
+        try {
+            acquire(permits);
+            queueWaitTimers.get(SendPriority.BULK).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return true;
+        } catch (MessagingException | InterruptedException e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            log.error("Could not get SMTP connection to {} back after yielding: {}", getRelayId(), e.getMessage());
+            for (int i = from; i < to; i++) {
+                failures.put(i, e);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Reuse an idle connection, or open a new one; the caller already holds a permit
+     */
+    private PooledTransport connect(SendPriority priority, Map<Integer, Exception> failures, int from, int to) {
+        try {
+            PooledTransport pooled;
+            while ((pooled = idleTransports.pollFirst()) != null) {
+                long idleFor = System.currentTimeMillis() - pooled.lastUsedAt;
+                if (idleFor > maxIdleMs) {
+                    close(pooled);
+                } else if (idleFor > validateAfterIdleMs && !pooled.isUsable()) {
+                    // isConnected() issues a NOOP on SMTP transports
+                    close(pooled);
+                } else {
+                    return pooled;
+                }
+            }
+            return open();
+        } catch (MessagingException | RuntimeException e) {
+            log.error("Could not connect to SMTP relay {}: {}", getRelayId(), e.getMessage());
+            sample(priority, 0, classify(e));
+            for (int i = from; i < to; i++) {
+                failures.put(i, e);
+            }
+            return null;
+        }
+    }
+
+    private PooledTransport open() throws MessagingException {
+        Transport transport = mailSender.getSession().getTransport(mailSender.getProtocol());
+        transport.connect(mailSender.getHost(), mailSender.getPort(), mailSender.getUsername(), mailSender.getPassword());
+        log.debug("Opened SMTP connection to {}", getRelayId());
+        return new PooledTransport(transport);
+    }
+
+    private void release(PooledTransport pooled) {
+        pooled.lastUsedAt = System.currentTimeMillis();
+        idleTransports.offerFirst(pooled);
+        permits.release();
+    }
+
+    private void close(PooledTransport pooled) {
+        try {
+            pooled.transport.close();
+        } catch (MessagingException e) {
+            log.debug("Error closing SMTP connection to {}: {}", getRelayId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Whether a failure says the relay wants us to slow down: a 4xx reply or a timeout
+     */
+    private AdaptiveConcurrencyLimit.Outcome classify(Exception failure) {
+        if (SmtpReplies.isTimeout(failure)) {
+            return AdaptiveConcurrencyLimit.Outcome.TIMEOUT;
+        }
+        if (SmtpReplies.isTransient(failure)) {
+            return AdaptiveConcurrencyLimit.Outcome.DEFERRED;
+        }
+        return AdaptiveConcurrencyLimit.Outcome.REJECTED;
+    }
+
+    private void prepare(MimeMessage message) throws MessagingException {
+        // Mirrors JavaMailSenderImpl#doSend, which Transport#sendMessage does not do for us
+        if (message.getSentDate() == null) {
+            message.setSentDate(new Date());
+        }
+        String messageId = message.getMessageID();
+        message.saveChanges();
+        if (messageId != null) {
+            message.setHeader("Message-ID", messageId);
+        }
+    }
+
+    private static final class PooledTransport {
+        private final Transport transport;
+        private int messagesSent;
+        private long lastUsedAt = System.currentTimeMillis();
+
+        private PooledTransport(Transport transport) {
+            this.transport = transport;
+        }
+
+        private boolean isUsable() {
+            return transport.isConnected();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package in.osop.messaging_platform.service;
+
+import jakarta.activation.DataHandler;
+import jakarta.activation.DataSource;
+import jakarta.mail.EncodingAware;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Part;
+import jakarta.mail.internet.MimeBodyPart;
+import jakarta.mail.internet.PreencodedMimeBodyPart;
+import jakarta.mail.util.SharedFileInputStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+
+/**
+ * An attachment base64-encoded once into a temp file, for a send that goes to
+ * many recipients.
+ *
+ * Every message gets its own small {@link MimeBodyPart} (a part can only have
+ * one parent), but they all stream the same encoded file: nothing is re-encoded
+ * per recipient and the attachment is copied from disk to the SMTP connection
+ * as the message is written, never held in heap. The file is deleted on close.
+ */
+@Slf4j
+public final class SpooledAttachment implements Closeable {
+
+    private static final String ENCODING = "base64";
+
+    private final String fileName;
+    private final String contentType;
+    private final Path file;
+    private final SharedFileInputStream encoded;
+    private final long encodedSize;
+
+    private SpooledAttachment(String fileName, String contentType, Path file) throws IOException {
+        this.fileName = fileName;
+        this.contentType = contentType;
+        this.file = file;
+        this.encoded = new SharedFileInputStream(file.toFile());
+        this.encodedSize = Files.size(file);
+    }
+
+    public static SpooledAttachment spool(MultipartFile attachment) throws IOException {
+        String contentType = attachment.getContentType() != null ? attachment.getContentType() : "application/octet-stream";
+        Path file = Files.createTempFile("attachment-", ".b64");
+        try {
+            // MIME encoder: 76 character lines separated by CRLF, as RFC 2045 wants them on the wire
+            try (InputStream in = attachment.getInputStream();
+                 OutputStream out = Base64.getMimeEncoder().wrap(Files.newOutputStream(file))) {
+                in.transferTo(out);
+            }
+            SpooledAttachment spooled = new SpooledAttachment(attachment.getOriginalFilename(), contentType, file);
+            log.debug("Spooled attachment {} ({} bytes, {} encoded)", spooled.fileName, attachment.getSize(), spooled.encodedSize);
+            return spooled;
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * A new attachment part for one message, reading the shared encoded file
+     */
+    public MimeBodyPart newBodyPart() throws MessagingException {
+        MimeBodyPart part = new PreencodedMimeBodyPart(ENCODING);
+        part.setDataHandler(new DataHandler(new EncodedDataSource()));
+        part.setDisposition(Part.ATTACHMENT);
+        if (fileName != null) {
+            part.setFileName(fileName);
+        }
+        part.setHeader("Content-Type", contentType);
+        return part;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            encoded.close();
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * The encoded bytes; EncodingAware so Jakarta Mail takes the encoding as
+     * given instead of scanning the data to pick one
+     */
+    private final class EncodedDataSource implements DataSource, EncodingAware {
+
+        @Override
+        public InputStream getInputStream() {
+            return encoded.newStream(0, -1);
+        }
+
+        @Override
+        public OutputStream getOutputStream() throws IOException {
+            throw new IOException("Spooled attachments are read-only");
+        }
+
+        @Override
+        public String getContentType() {
+            return contentType;
+        }
+
+        @Override
+        public String getName() {
+            return fileName;
+        }
+
+        @Override
+        public String getEncoding() {
+            return ENCODING;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package in.osop.messaging_platform.service;
+
+import in.osop.messaging_platform.model.EmailTemplate;
+import in.osop.messaging_platform.repository.EmailTemplateRepository;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Compiled templates cached by {@code (templateId, version)}.
+ *
+ * A lookup reads only the template's current version, so a template edited on
+ * another node is recompiled here as soon as its version moves on. Edits made
+ * through this node also evict the template's entries right away and again once
+ * the editing transaction commits.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TemplateCache {
+
+    private final EmailTemplateRepository templateRepository;
+
+    @Value("${template.cache.max-entries:1000}")
+    private int maxEntries;
+
+    // Least recently used first; guarded by itself
+    private final Map<Key, Compiled> compiled = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Compiled> eldest) {
+            return size() > maxEntries;
+        }
+    };
+
+    /**
+     * The compiled current version of an active template, given the id as sent
+     * in a message request
+     */
+    public Optional<Compiled> find(String templateId) {
+        if (templateId == null || templateId.isBlank()) {
+            return Optional.empty();
+        }
+        try {
+            return find(Long.valueOf(templateId.trim()));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+
+    public Optional<Compiled> find(Long templateId) {
+        Optional<Integer> version = templateRepository.findActiveVersionById(templateId);
+        if (version.isEmpty()) {
+            return Optional.empty();
+        }
+        Key key = new Key(templateId, version.get());
+        synchronized (compiled) {
+            Compiled cached = compiled.get(key);
+            if (cached != null) {
+                return Optional.of(cached);
+            }
+        }
+        return templateRepository.findById(templateId).map(this::compile);
+    }
+
+    /**
+     * Compile a loaded template, or return its cached compiled form
+     */
+    public Compiled compile(EmailTemplate template) {
+        Key key = new Key(template.getId(), template.getVersion());
+        synchronized (compiled) {
+            Compiled cached = compiled.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        Compiled fresh = new Compiled(template.getId(), template.getVersion(),
+            CompiledTemplate.compile(template.getSubject()),
+            CompiledTemplate.compile(template.getContentHtml()),
+            CompiledTemplate.compile(template.getContentText()));
+        synchronized (compiled) {
+            compiled.putIfAbsent(key, fresh);
+        }
+        log.debug("Compiled template {} version {}", template.getId(), template.getVersion());
+        return fresh;
+    }
+
+    /**
+     * Drop every cached version of a template, now and after the surrounding
+     * transaction commits so a lookup racing the edit cannot keep stale content
+     */
+    public void invalidate(Long templateId) {
+        evict(templateId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(templateId);
+                }
+            });
+        }
+    }
+
+    private void evict(Long templateId) {
+        synchronized (compiled) {
+            compiled.keySet().removeIf(key -> key.templateId.equals(templateId));
+        }
+    }
+
+    /**
+     * Subject, HTML and text content of one template version
+     */
+    @Getter
+    public static final class Compiled {
+        private final Long templateId;
+        private final Integer version;
+        private final CompiledTemplate subject;
+        private final CompiledTemplate contentHtml;
+        private final CompiledTemplate contentText;
+
+        private Compiled(Long templateId, Integer version, CompiledTemplate subject,
+                         CompiledTemplate contentHtml, CompiledTemplate contentText) {
+            this.templateId = templateId;
+            this.version = version;
+            this.subject = subject;
+            this.contentHtml = contentHtml;
+            this.contentText = contentText;
+        }
+    }
+
+    private static final class Key {
+        private final Long templateId;
+        private final Integer version;
+
+        private Key(Long templateId, Integer version) {
+            this.templateId = templateId;
+            this.version = version;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key other)) {
+                return false;
+            }
+            return templateId.equals(other.templateId) && Objects.equals(version, other.version);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * templateId.hashCode() + Objects.hashCode(version);
+        }
+    }
+}
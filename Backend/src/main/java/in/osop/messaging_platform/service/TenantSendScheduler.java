@@ -0,0 +1,203 @@
+package in.osop.messaging_platform.service;
+
+import in.osop.messaging_platform.model.Tenant;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Weighted fair queueing of campaign batches across tenants.
+ *
+ * Every batch sent on this node is queued here under its tenant and started
+ * once one of {@code send.fairness.max-active-batches} slots is free. Batches
+ * are tagged with a virtual finish time (self-clocked fair queueing): a tenant's
+ * batch costs its recipient count divided by the weight of the tenant's plan, so
+ * a tenant with a huge campaign can only get ahead of the others by its weight
+ * and batches of concurrently running campaigns are interleaved. Each plan also
+ * caps how many batches a single tenant may have sending at once.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TenantSendScheduler {
+
+    private final Executor emailTaskExecutor;
+
+    @Value("${send.fairness.max-active-batches:8}")
+    private int maxActiveBatches;
+
+    @Value("${send.fairness.free.weight:1}")
+    private int freeWeight;
+
+    @Value("${send.fairness.starter.weight:2}")
+    private int starterWeight;
+
+    @Value("${send.fairness.professional.weight:4}")
+    private int professionalWeight;
+
+    @Value("${send.fairness.enterprise.weight:8}")
+    private int enterpriseWeight;
+
+    @Value("${send.fairness.free.max-in-flight:1}")
+    private int freeMaxInFlight;
+
+    @Value("${send.fairness.starter.max-in-flight:1}")
+    private int starterMaxInFlight;
+
+    @Value("${send.fairness.professional.max-in-flight:2}")
+    private int professionalMaxInFlight;
+
+    @Value("${send.fairness.enterprise.max-in-flight:3}")
+    private int enterpriseMaxInFlight;
+
+    // Guarded by this; campaigns without a tenant share the null key
+    private final Map<Long, TenantQueue> tenants = new HashMap<>();
+    private double virtualTime;
+    private int activeBatches;
+
+    /**
+     * Queue a batch for its tenant. {@code send} is invoked once the batch is
+     * scheduled and the returned future follows the future it returns.
+     */
+    public CompletableFuture<Boolean> submit(Long tenantId, Tenant.SubscriptionPlan plan, int size,
+                                             Supplier<CompletableFuture<Boolean>> send) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        synchronized (this) {
+            TenantQueue tenant = tenants.computeIfAbsent(tenantId,
+                id -> new TenantQueue(id, weight(plan), maxInFlight(plan)));
+            double start = Math.max(virtualTime, tenant.lastFinishTag);
+            tenant.lastFinishTag = start + (double) Math.max(1, size) / tenant.weight;
+            tenant.pending.add(new QueuedBatch(tenant.lastFinishTag, send, result));
+        }
+        dispatch();
+        return result;
+    }
+
+    /**
+     * Start queued batches with the lowest finish tags while slots are free
+     */
+    private void dispatch() {
+        List<Runnable> starts = new ArrayList<>();
+        synchronized (this) {
+            while (activeBatches < maxActiveBatches) {
+                TenantQueue next = null;
+                for (TenantQueue tenant : tenants.values()) {
+                    if (tenant.pending.isEmpty() || tenant.inFlight >= tenant.maxInFlight) {
+                        continue;
+                    }
+                    if (next == null || tenant.pending.peek().finishTag < next.pending.peek().finishTag) {
+                        next = tenant;
+                    }
+                }
+                if (next == null) {
+                    break;
+                }
+                QueuedBatch batch = next.pending.poll();
+                virtualTime = Math.max(virtualTime, batch.finishTag);
+                next.inFlight++;
+                activeBatches++;
+                TenantQueue tenant = next;
+                starts.add(() -> start(tenant, batch));
+            }
+        }
+        for (Runnable start : starts) {
+            try {
+                emailTaskExecutor.execute(start);
+            } catch (RejectedExecutionException e) {
+                start.run();
+            }
+        }
+    }
+
+    private void start(TenantQueue tenant, QueuedBatch batch) {
+        CompletableFuture<Boolean> sending;
+        try {
+            sending = batch.send.get();
+        } catch (Exception e) {
+            sending = CompletableFuture.failedFuture(e);
+        }
+        sending.whenComplete((completed, error) -> {
+            finished(tenant);
+            if (error != null) {
+                batch.result.completeExceptionally(error);
+            } else {
+                batch.result.complete(completed);
+            }
+        });
+    }
+
+    private void finished(TenantQueue tenant) {
+        synchronized (this) {
+            tenant.inFlight--;
+            activeBatches--;
+            if (tenant.inFlight == 0 && tenant.pending.isEmpty()) {
+                tenants.remove(tenant.tenantId, tenant);
+            }
+        }
+        dispatch();
+    }
+
+    private int weight(Tenant.SubscriptionPlan plan) {
+        if (plan == null) {
+            return freeWeight;
+        }
+        return Math.max(1, switch (plan) {
+            case FREE -> freeWeight;
+            case STARTER -> starterWeight;
+            case PROFESSIONAL -> professionalWeight;
+            case ENTERPRISE -> enterpriseWeight;
+        });
+    }
+
+    private int maxInFlight(Tenant.SubscriptionPlan plan) {
+        if (plan == null) {
+            return freeMaxInFlight;
+        }
+        return Math.max(1, switch (plan) {
+            case FREE -> freeMaxInFlight;
+            case STARTER -> starterMaxInFlight;
+            case PROFESSIONAL -> professionalMaxInFlight;
+            case ENTERPRISE -> enterpriseMaxInFlight;
+        });
+    }
+
+    private static final class TenantQueue {
+        private final Long tenantId;
+        private final int weight;
+        private final int maxInFlight;
+        private final Deque<QueuedBatch> pending = new ArrayDeque<>();
+        private double lastFinishTag;
+        private int inFlight;
+
+        private TenantQueue(Long tenantId, int weight, int maxInFlight) {
+            this.tenantId = tenantId;
+            this.weight = weight;
+            this.maxInFlight = maxInFlight;
+        }
+    }
+
+    private static final class QueuedBatch {
+        private final double finishTag;
+        private final Supplier<CompletableFuture<Boolean>> send;
+        private final CompletableFuture<Boolean> result;
+
+        private QueuedBatch(double finishTag, Supplier<CompletableFuture<Boolean>> send,
+                            CompletableFuture<Boolean> result) {
+            this.finishTag = finishTag;
+            this.send = send;
+            this.result = result;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package in.osop.messaging_platform.service;
+
+import in.osop.messaging_platform.model.EmailEventType;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+
+/**
+ * One open or click as it comes off a tracking endpoint, on its way through
+ * {@link TrackingEventIngest} to an email_events row.
+ */
+@Getter
+@ToString
+public final class TrackingEvent {
+
+    private final EmailEventType eventType;
+    private final TrackingToken token;
+    private final String linkUrl;
+    private final String ipAddress;
+    private final String userAgent;
+    private final LocalDateTime occurredAt;
+    // Set by the ingest: the subscriber's first event of this type for the campaign
+    @Setter
+    private boolean unique = true;
+    // Set by the ingest: country code from the IP address, and the user agent's classification
+    @Setter
+    private String location;
+    @Setter
+    private String deviceType;
+    @Setter
+    private String browser;
+    @Setter
+    private String os;
+
+    private TrackingEvent(EmailEventType eventType, TrackingToken token, String linkUrl,
+                          String ipAddress, String userAgent) {
+        this.eventType = eventType;
+        this.token = token;
+        this.linkUrl = linkUrl;
+        this.ipAddress = ipAddress;
+        this.userAgent = userAgent;
+        this.occurredAt = LocalDateTime.now();
+    }
+
+    public static TrackingEvent opened(TrackingToken token, String ipAddress, String userAgent) {
+        return new TrackingEvent(EmailEventType.OPENED, token, null, ipAddress, userAgent);
+    }
+
+    public static TrackingEvent clicked(TrackingToken token, String linkUrl, String ipAddress, String userAgent) {
+        return new TrackingEvent(EmailEventType.CLICKED, token, linkUrl, ipAddress, userAgent);
+    }
+}
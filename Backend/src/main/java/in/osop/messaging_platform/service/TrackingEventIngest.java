@@ -0,0 +1,269 @@
+package in.osop.messaging_platform.service;
+
+import in.osop.messaging_platform.model.EmailEventType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Takes opens and clicks off the tracking endpoints without touching the database.
+ *
+ * The endpoint publishes a {@link TrackingEvent} into one of a few lock-free
+ * ring buffers and answers at once. Each ring has its own consumer thread that
+ * resolves the country and classifies the user agent, marks repeat opens and clicks with
+ * {@link UniqueEngagementTracker}, inserts the events with a JDBC batch, then
+ * hands their side effects on:
+ * campaign counters to {@link CampaignCounterAggregator} and the live delivery
+ * status updates. Events of one subscriber always go to the same ring. When a ring is
+ * full the event is dropped and counted; a tracking hit never waits. A consumer
+ * that finds its ring empty backs off, up to the flush interval, instead of
+ * polling it every millisecond.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TrackingEventIngest {
+
+    private static final String INSERT_SQL = "INSERT INTO email_events (tenant_id, campaign_id, subscriber_id, " +
+        "event_type, event_data, ip_address, user_agent, location, device_type, browser, os, created_at, processed) " +
+        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // An idle consumer sleeps this long before looking at its ring again, doubling
+    // each time it finds nothing, up to the flush interval
+    private static final long MIN_IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CampaignCounterAggregator campaignCounterAggregator;
+    private final UniqueEngagementTracker uniqueEngagementTracker;
+    private final UserAgentClassifier userAgentClassifier;
+    private final GeoIpLookup geoIpLookup;
+    private final EmailDeliveryTrackingService emailDeliveryTrackingService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${tracking.ingest.consumers:2}")
+    private int consumers;
+
+    @Value("${tracking.ingest.ring-capacity:65536}")
+    private int ringCapacity;
+
+    @Value("${tracking.ingest.batch-size:500}")
+    private int batchSize;
+
+    @Value("${tracking.ingest.flush-interval-ms:200}")
+    private long flushIntervalMs;
+
+    private final List<MpscRingBuffer<TrackingEvent>> rings = new ArrayList<>();
+    private final List<Thread> consumerThreads = new ArrayList<>();
+    private volatile boolean running = true;
+    private Counter dropped;
+
+    @PostConstruct
+    public void start() {
+        dropped = Counter.builder("tracking.ingest.dropped")
+            .description("Tracking events dropped because their ring buffer was full")
+            .register(meterRegistry);
+        for (int i = 0; i < consumers; i++) {
+            MpscRingBuffer<TrackingEvent> ring = new MpscRingBuffer<>(ringCapacity);
+            rings.add(ring);
+            Thread consumer = new Thread(() -> consume(ring), "TrackingEventIngest-" + i);
+            consumer.setDaemon(true);
+            consumerThreads.add(consumer);
+            consumer.start();
+        }
+        log.info("Tracking event ingest started with {} consumers of {} events each", consumers, rings.get(0).capacity());
+    }
+
+    /**
+     * Hand an event to the background consumers; false if it had to be dropped
+     */
+    public boolean publish(TrackingEvent event) {
+        if (!running || !rings.get(shard(event)).offer(event)) {
+            dropped.increment();
+            return false;
+        }
+        return true;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        // Consumers drain their rings before they exit
+        running = false;
+        for (Thread consumer : consumerThreads) {
+            LockSupport.unpark(consumer);
+        }
+        for (Thread consumer : consumerThreads) {
+            consumer.join(10000);
+        }
+    }
+
+    private int shard(TrackingEvent event) {
+        TrackingToken token = event.getToken();
+        long key = token.getSubscriberId() != 0 ? token.getSubscriberId() : token.getEventId();
+        return (int) Math.floorMod((key * 0x9E3779B97F4A7C15L) >>> 32, (long) rings.size());
+    }
+
+    private void consume(MpscRingBuffer<TrackingEvent> ring) {
+        List<TrackingEvent> batch = new ArrayList<>(batchSize);
+        long flushNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        long idleParkNanos = MIN_IDLE_PARK_NANOS;
+        long firstTakenAt = 0;
+        while (running || !ring.isEmpty()) {
+            int taken = batch.size();
+            ring.drain(batch::add, batchSize - batch.size());
+            if (taken == 0 && !batch.isEmpty()) {
+                firstTakenAt = System.nanoTime();
+            }
+            if (batch.size() >= batchSize
+                || (!batch.isEmpty() && (!running || System.nanoTime() - firstTakenAt >= flushNanos))) {
+                process(batch);
+                batch.clear();
+                idleParkNanos = MIN_IDLE_PARK_NANOS;
+                continue;
+            }
+            idleParkNanos = batch.size() > taken
+                ? MIN_IDLE_PARK_NANOS
+                : Math.min(idleParkNanos * 2, Math.max(flushNanos, MIN_IDLE_PARK_NANOS));
+            long parkNanos = idleParkNanos;
+            if (!batch.isEmpty()) {
+                // Wake up in time to flush what is already taken
+                parkNanos = Math.min(parkNanos, Math.max(firstTakenAt + flushNanos - System.nanoTime(), 0));
+            }
+            LockSupport.parkNanos(parkNanos);
+        }
+        if (!batch.isEmpty()) {
+            process(batch);
+        }
+    }
+
+    // Each event is handled on its own, so one failing side effect does not skip the rest of the batch
+    private void process(List<TrackingEvent> batch) {
+        for (TrackingEvent event : batch) {
+            try {
+                enrich(event);
+            } catch (Exception e) {
+                log.error("Failed to enrich tracking event {}: {}", event, e.getMessage());
+            }
+            markUnique(event);
+        }
+        insert(batch);
+        for (TrackingEvent event : batch) {
+            try {
+                campaignCounterAggregator.record(TrackingToken.idOrNull(event.getToken().getCampaignId()), event.getEventType());
+                notifyDeliveryTracking(event);
+            } catch (Exception e) {
+                log.error("Failed to apply tracking event {}: {}", event, e.getMessage(), e);
+            }
+        }
+    }
+
+    private void enrich(TrackingEvent event) {
+        event.setLocation(geoIpLookup.country(event.getIpAddress()));
+        UserAgentClassifier.Classification classification = userAgentClassifier.classify(event.getUserAgent());
+        event.setDeviceType(classification.getDeviceType());
+        event.setBrowser(classification.getClient());
+        event.setOs(classification.getOs());
+    }
+
+    private void markUnique(TrackingEvent event) {
+        TrackingToken token = event.getToken();
+        if (token.getCampaignId() == 0 || token.getSubscriberId() == 0) {
+            return;
+        }
+        try {
+            event.setUnique(uniqueEngagementTracker.recordFirst(token.getCampaignId(), event.getEventType(), token.getSubscriberId()));
+            if (event.getEventType() == EmailEventType.CLICKED) {
+                // A click proves the email was opened, even if the pixel was blocked
+                uniqueEngagementTracker.recordFirst(token.getCampaignId(), EmailEventType.OPENED, token.getSubscriberId());
+            }
+        } catch (Exception e) {
+            // Still write the event, counted as unique
+            log.error("Failed to check unique {} for {}: {}", event.getEventType(), token, e.getMessage());
+        }
+    }
+
+    private void notifyDeliveryTracking(TrackingEvent event) {
+        long eventId = event.getToken().getEventId();
+        if (eventId == 0) {
+            return;
+        }
+        if (event.getEventType() == EmailEventType.OPENED) {
+            emailDeliveryTrackingService.trackEmailOpen(eventId, event.getIpAddress(), event.getUserAgent());
+        } else {
+            emailDeliveryTrackingService.trackEmailClick(eventId, event.getLinkUrl(), event.getIpAddress(), event.getUserAgent());
+        }
+    }
+
+    private void insert(List<TrackingEvent> rows) {
+        try {
+            jdbcTemplate.batchUpdate(INSERT_SQL, rows, rows.size(), this::bind);
+        } catch (Exception e) {
+            log.error("Batch insert of {} tracking events failed, retrying row by row: {}", rows.size(), e.getMessage());
+            for (TrackingEvent row : rows) {
+                try {
+                    jdbcTemplate.update(INSERT_SQL, ps -> bind(ps, row));
+                } catch (Exception rowError) {
+                    log.error("Dropping tracking event {}: {}", row, rowError.getMessage());
+                }
+            }
+        }
+    }
+
+    private void bind(PreparedStatement ps, TrackingEvent row) throws SQLException {
+        TrackingToken token = row.getToken();
+        setId(ps, 1, token.getTenantId());
+        setId(ps, 2, token.getCampaignId());
+        setId(ps, 3, token.getSubscriberId());
+        ps.setString(4, row.getEventType().name());
+        ps.setString(5, eventData(row));
+        ps.setString(6, row.getIpAddress());
+        ps.setString(7, row.getUserAgent());
+        ps.setString(8, row.getLocation());
+        ps.setString(9, row.getDeviceType());
+        ps.setString(10, row.getBrowser());
+        ps.setString(11, row.getOs());
+        ps.setTimestamp(12, Timestamp.valueOf(row.getOccurredAt()));
+        ps.setBoolean(13, false);
+    }
+
+    // IP address and user agent have columns of their own and are not repeated here
+    private static String eventData(TrackingEvent event) {
+        Map<String, Object> eventData = new HashMap<>();
+        if (event.getEventType() == EmailEventType.OPENED) {
+            eventData.put("openedAt", event.getOccurredAt().toString());
+        } else {
+            eventData.put("clickedAt", event.getOccurredAt().toString());
+            eventData.put("linkUrl", event.getLinkUrl() != null ? event.getLinkUrl() : "unknown");
+            eventData.put("linkIndex", event.getToken().getLinkIndex());
+        }
+        if (event.getToken().getEventId() != 0) {
+            eventData.put("originalEventId", event.getToken().getEventId());
+        }
+        eventData.put("unique", event.isUnique());
+        return eventData.toString();
+    }
+
+    private static void setId(PreparedStatement ps, int index, long id) throws SQLException {
+        if (id != 0) {
+            ps.setLong(index, id);
+        } else {
+            ps.setNull(index, Types.BIGINT);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package in.osop.messaging_platform.service;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * What an open pixel, tracked link or unsubscribe link refers to. Ids that do
+ * not apply (a transactional email has no campaign) are 0.
+ */
+@Getter
+@EqualsAndHashCode
+@ToString
+public final class TrackingToken {
+
+    private final long tenantId;
+    private final long campaignId;
+    private final long subscriberId;
+    private final long eventId;
+    // 0 for the open pixel and unsubscribe link, 1-based position of a tracked link otherwise
+    private final int linkIndex;
+
+    public TrackingToken(long tenantId, long campaignId, long subscriberId, long eventId, int linkIndex) {
+        if (tenantId < 0 || campaignId < 0 || subscriberId < 0 || eventId < 0 || linkIndex < 0) {
+            throw new IllegalArgumentException("Tracking ids must not be negative");
+        }
+        this.tenantId = tenantId;
+        this.campaignId = campaignId;
+        this.subscriberId = subscriberId;
+        this.eventId = eventId;
+        this.linkIndex = linkIndex;
+    }
+
+    public static TrackingToken of(Long tenantId, Long campaignId, Long subscriberId, Long eventId) {
+        return new TrackingToken(orZero(tenantId), orZero(campaignId), orZero(subscriberId), orZero(eventId), 0);
+    }
+
+    public TrackingToken forLink(int linkIndex) {
+        return new TrackingToken(tenantId, campaignId, subscriberId, eventId, linkIndex);
+    }
+
+    /**
+     * The id as a nullable Long, the way entities hold it
+     */
+    public static Long idOrNull(long id) {
+        return id != 0 ? id : null;
+    }
+
+    private static long orZero(Long id) {
+        return id != null ? id : 0;
+    }
+}
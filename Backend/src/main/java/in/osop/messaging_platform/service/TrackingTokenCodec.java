@@ -0,0 +1,154 @@
+package in.osop.messaging_platform.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Optional;
+
+/**
+ * Signs and verifies tracking tokens.
+ *
+ * A token is a version byte, the five ids of a {@link TrackingToken} as unsigned
+ * varints and the first {@value #MAC_LENGTH} bytes of an HMAC-SHA256 over them,
+ * base64url without padding: about 20 characters for a typical campaign link.
+ * The MAC of a link token also covers the link's target, so the redirect cannot
+ * be pointed elsewhere, and only link tokens verify against a target: the open
+ * and unsubscribe tokens every email carries cannot be replayed as clicks.
+ * Verification is all in memory; malformed tokens are rejected on their length
+ * or encoding before any MAC is computed.
+ */
+@Service
+@Slf4j
+public class TrackingTokenCodec {
+
+    private static final byte VERSION = 1;
+    private static final int MAC_LENGTH = 10;
+    private static final int MAX_VARINT_BYTES = 10;
+    private static final int MAX_PAYLOAD = 1 + 5 * MAX_VARINT_BYTES;
+    private static final int MIN_ENCODED_LENGTH = encodedLength(1 + 5 + MAC_LENGTH);
+    private static final int MAX_ENCODED_LENGTH = encodedLength(MAX_PAYLOAD + MAC_LENGTH);
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final ThreadLocal<Mac> macs;
+
+    public TrackingTokenCodec(@Value("${tracking.token.secret}") String secret) {
+        byte[] key = secret.getBytes(StandardCharsets.UTF_8);
+        if (key.length < 32) {
+            throw new IllegalStateException("tracking.token.secret must be at least 32 bytes");
+        }
+        SecretKeySpec keySpec = new SecretKeySpec(key, "HmacSHA256");
+        this.macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance("HmacSHA256");
+                mac.init(keySpec);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HmacSHA256 is not available", e);
+            }
+        });
+    }
+
+    /**
+     * Sign a token; {@code target} is the link a link token redirects to and
+     * is ignored for the open pixel and unsubscribe tokens
+     */
+    public String encode(TrackingToken token, String target) {
+        byte[] buffer = new byte[MAX_PAYLOAD + MAC_LENGTH];
+        buffer[0] = VERSION;
+        int length = 1;
+        length = writeVarLong(buffer, length, token.getTenantId());
+        length = writeVarLong(buffer, length, token.getCampaignId());
+        length = writeVarLong(buffer, length, token.getSubscriberId());
+        length = writeVarLong(buffer, length, token.getEventId());
+        length = writeVarLong(buffer, length, token.getLinkIndex());
+        byte[] mac = mac(buffer, length, token.getLinkIndex() > 0 ? target : null);
+        System.arraycopy(mac, 0, buffer, length, MAC_LENGTH);
+        return ENCODER.encodeToString(Arrays.copyOf(buffer, length + MAC_LENGTH));
+    }
+
+    /**
+     * The token, if it is well formed and was signed by us for this target.
+     * A {@code null} target accepts only open and unsubscribe tokens, any other
+     * target only link tokens.
+     */
+    public Optional<TrackingToken> decode(String encoded, String target) {
+        if (encoded == null || encoded.length() < MIN_ENCODED_LENGTH || encoded.length() > MAX_ENCODED_LENGTH) {
+            return Optional.empty();
+        }
+        byte[] bytes;
+        try {
+            bytes = DECODER.decode(encoded);
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+        int payloadLength = bytes.length - MAC_LENGTH;
+        if (bytes[0] != VERSION) {
+            return Optional.empty();
+        }
+
+        long[] ids = new long[5];
+        int position = 1;
+        for (int i = 0; i < ids.length; i++) {
+            long value = 0;
+            int shift = 0;
+            while (true) {
+                if (position >= payloadLength || shift >= 7 * MAX_VARINT_BYTES) {
+                    return Optional.empty();
+                }
+                byte b = bytes[position++];
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+                if ((b & 0x80) == 0) {
+                    break;
+                }
+            }
+            ids[i] = value;
+        }
+        if (position != payloadLength || ids[0] < 0 || ids[1] < 0 || ids[2] < 0 || ids[3] < 0
+            || ids[4] < 0 || ids[4] > Integer.MAX_VALUE) {
+            return Optional.empty();
+        }
+
+        int linkIndex = (int) ids[4];
+        if ((linkIndex > 0) != (target != null)) {
+            return Optional.empty();
+        }
+        byte[] expected = mac(bytes, payloadLength, linkIndex > 0 ? target : null);
+        if (!MessageDigest.isEqual(Arrays.copyOf(expected, MAC_LENGTH),
+                Arrays.copyOfRange(bytes, payloadLength, bytes.length))) {
+            return Optional.empty();
+        }
+        return Optional.of(new TrackingToken(ids[0], ids[1], ids[2], ids[3], linkIndex));
+    }
+
+    private byte[] mac(byte[] payload, int length, String target) {
+        Mac mac = macs.get();
+        mac.update(payload, 0, length);
+        if (target != null) {
+            mac.update(target.getBytes(StandardCharsets.UTF_8));
+        }
+        return mac.doFinal();
+    }
+
+    private static int writeVarLong(byte[] buffer, int position, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        return position;
+    }
+
+    private static int encodedLength(int bytes) {
+        return (bytes * 4 + 2) / 3;
+    }
+}
@@ -0,0 +1,217 @@
+package in.osop.messaging_platform.service;
+
+import in.osop.messaging_platform.model.EmailEventType;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Which subscribers opened or clicked a campaign, as one roaring bitmap of
+ * subscriber ids per campaign and event type.
+ *
+ * The tracking ingest asks {@link #recordFirst} before it writes an event, so
+ * repeat opens are recognised in memory. Bitmaps of active campaigns stay in
+ * memory and are written back to campaign_engagement on a timer; the write
+ * merges with the stored bitmap under a row lock, so nodes sharing a campaign
+ * add to each other's bits rather than overwrite them. Unique counts are the
+ * bitmap's cardinality, or the stored one for campaigns not in memory.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class UniqueEngagementTracker {
+
+    private static final String SELECT_FOR_UPDATE_SQL =
+        "SELECT subscribers FROM campaign_engagement WHERE campaign_id = ? AND event_type = ? FOR UPDATE";
+    private static final String UPSERT_SQL = "INSERT INTO campaign_engagement (campaign_id, event_type, subscribers, " +
+        "cardinality, updated_at) VALUES (?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE subscribers = VALUES(subscribers), " +
+        "cardinality = VALUES(cardinality), updated_at = VALUES(updated_at)";
+    // Roaring bitmaps hold 32-bit values, read as unsigned
+    private static final long MAX_SUBSCRIBER_ID = 0xFFFFFFFFL;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${tracking.unique.idle-minutes:30}")
+    private long idleMinutes;
+
+    private final Map<EngagementKey, Engagement> engagements = new ConcurrentHashMap<>();
+
+    /**
+     * Whether events of this type are tracked per subscriber
+     */
+    public static boolean isTracked(EmailEventType eventType) {
+        return eventType == EmailEventType.OPENED || eventType == EmailEventType.CLICKED;
+    }
+
+    /**
+     * Record that a subscriber opened or clicked a campaign; true the first time.
+     * Ids that do not fit a bitmap cannot be deduplicated and always count as first.
+     */
+    public boolean recordFirst(long campaignId, EmailEventType eventType, long subscriberId) {
+        if (!isTracked(eventType) || subscriberId <= 0 || subscriberId > MAX_SUBSCRIBER_ID) {
+            return true;
+        }
+        Engagement engagement = engagementFor(new EngagementKey(campaignId, eventType));
+        synchronized (engagement) {
+            engagement.lastTouched = System.currentTimeMillis();
+            if (engagement.subscribers.checkedAdd((int) subscriberId)) {
+                engagement.dirty = true;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    public long getUniqueOpens(Long campaignId) {
+        return uniqueCount(campaignId, EmailEventType.OPENED);
+    }
+
+    public long getUniqueClicks(Long campaignId) {
+        return uniqueCount(campaignId, EmailEventType.CLICKED);
+    }
+
+    /**
+     * Unique clicks as a percentage of unique opens
+     */
+    public double getClickToOpenRate(Long campaignId) {
+        long opens = getUniqueOpens(campaignId);
+        return opens > 0 ? (double) getUniqueClicks(campaignId) / opens * 100.0 : 0.0;
+    }
+
+    @Scheduled(fixedDelayString = "${tracking.unique.flush-interval-ms:5000}")
+    public void flush() {
+        long idleBefore = System.currentTimeMillis() - idleMinutes * 60_000;
+        for (Map.Entry<EngagementKey, Engagement> entry : engagements.entrySet()) {
+            Engagement engagement = entry.getValue();
+            boolean dirty;
+            synchronized (engagement) {
+                dirty = engagement.dirty;
+            }
+            if (dirty) {
+                write(entry.getKey(), engagement);
+            } else if (engagement.lastTouched < idleBefore) {
+                // Campaign has gone quiet; it is reloaded if it is touched again
+                if (engagements.remove(entry.getKey(), engagement) && engagement.dirty) {
+                    write(entry.getKey(), engagement);
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private long uniqueCount(Long campaignId, EmailEventType eventType) {
+        Engagement engagement = engagements.get(new EngagementKey(campaignId, eventType));
+        if (engagement != null) {
+            synchronized (engagement) {
+                return engagement.subscribers.getLongCardinality();
+            }
+        }
+        List<Long> stored = jdbcTemplate.queryForList(
+            "SELECT cardinality FROM campaign_engagement WHERE campaign_id = ? AND event_type = ?",
+            Long.class, campaignId, eventType.name());
+        return stored.isEmpty() ? 0 : stored.get(0);
+    }
+
+    private Engagement engagementFor(EngagementKey key) {
+        Engagement engagement = engagements.get(key);
+        if (engagement != null) {
+            return engagement;
+        }
+        // Loaded outside the map so the database read does not hold up other campaigns
+        List<byte[]> stored = jdbcTemplate.query(
+            "SELECT subscribers FROM campaign_engagement WHERE campaign_id = ? AND event_type = ?",
+            (rs, row) -> rs.getBytes(1), key.campaignId, key.eventType.name());
+        Engagement loaded = new Engagement(stored.isEmpty() ? new RoaringBitmap() : deserialize(stored.get(0)));
+        Engagement existing = engagements.putIfAbsent(key, loaded);
+        return existing != null ? existing : loaded;
+    }
+
+    private void write(EngagementKey key, Engagement engagement) {
+        RoaringBitmap snapshot;
+        synchronized (engagement) {
+            snapshot = engagement.subscribers.clone();
+            engagement.dirty = false;
+        }
+        try {
+            RoaringBitmap stored = transactionTemplate.execute(status -> {
+                List<byte[]> rows = jdbcTemplate.query(SELECT_FOR_UPDATE_SQL,
+                    (rs, row) -> rs.getBytes(1), key.campaignId, key.eventType.name());
+                RoaringBitmap merged = snapshot.clone();
+                RoaringBitmap other = rows.isEmpty() ? null : deserialize(rows.get(0));
+                if (other != null) {
+                    merged.or(other);
+                }
+                merged.runOptimize();
+                jdbcTemplate.update(UPSERT_SQL, key.campaignId, key.eventType.name(), serialize(merged),
+                    merged.getLongCardinality(), Timestamp.valueOf(LocalDateTime.now()));
+                return other;
+            });
+            if (stored != null) {
+                // Take in what other nodes recorded, so their subscribers dedupe here too
+                synchronized (engagement) {
+                    engagement.subscribers.or(stored);
+                }
+            }
+        } catch (Exception e) {
+            synchronized (engagement) {
+                engagement.dirty = true;
+            }
+            log.error("Failed to store unique {} of campaign {}: {}", key.eventType, key.campaignId, e.getMessage());
+        }
+    }
+
+    private static byte[] serialize(RoaringBitmap bitmap) {
+        ByteBuffer buffer = ByteBuffer.allocate(bitmap.serializedSizeInBytes());
+        bitmap.serialize(buffer);
+        return buffer.array();
+    }
+
+    private static RoaringBitmap deserialize(byte[] bytes) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        try {
+            bitmap.deserialize(ByteBuffer.wrap(bytes));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Corrupt engagement bitmap", e);
+        }
+        return bitmap;
+    }
+
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    private static final class EngagementKey {
+        private final long campaignId;
+        private final EmailEventType eventType;
+    }
+
+    private static final class Engagement {
+        private final RoaringBitmap subscribers;
+        private boolean dirty;
+        private volatile long lastTouched = System.currentTimeMillis();
+
+        private Engagement(RoaringBitmap subscribers) {
+            this.subscribers = subscribers;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package in.osop.messaging_platform.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Device type, client and OS of a tracking hit, from its User-Agent header.
+ *
+ * Classification is a handful of substring checks, ordered so the specific
+ * tokens win (every Chrome UA also says "Safari", every Edge UA "Chrome").
+ * Mail clients and image proxies send very few distinct user agents, so results
+ * are kept in a bounded LRU cache and most lookups are a map hit.
+ */
+@Service
+@Slf4j
+public class UserAgentClassifier {
+
+    public static final String UNKNOWN = "Unknown";
+
+    private static final Classification NONE = new Classification(UNKNOWN, UNKNOWN, UNKNOWN);
+    // Longer headers are not real clients and would only bloat the cache
+    private static final int MAX_USER_AGENT_LENGTH = 512;
+    // Platform token as in "X11; CrOS x86_64"; a bare "cros" also matches "microsoft"
+    private static final String CHROME_OS_TOKEN = "cros ";
+
+    @Value("${tracking.user-agent.cache-size:1000}")
+    private int maxEntries;
+
+    // Least recently used first; guarded by itself
+    private final Map<String, Classification> classified = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Classification> eldest) {
+            return size() > maxEntries;
+        }
+    };
+
+    public Classification classify(String userAgent) {
+        if (userAgent == null || userAgent.isBlank() || userAgent.length() > MAX_USER_AGENT_LENGTH) {
+            return NONE;
+        }
+        synchronized (classified) {
+            Classification cached = classified.get(userAgent);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        Classification fresh = parse(userAgent);
+        synchronized (classified) {
+            classified.putIfAbsent(userAgent, fresh);
+        }
+        log.debug("Classified user agent {} as {}", userAgent, fresh);
+        return fresh;
+    }
+
+    private static Classification parse(String userAgent) {
+        String ua = userAgent.toLowerCase(Locale.ROOT);
+        String deviceType = deviceType(ua);
+        // An image proxy fetches on the reader's behalf and says nothing true about their OS
+        return new Classification(deviceType, client(ua), deviceType.equals("Proxy") ? UNKNOWN : os(ua));
+    }
+
+    private static String deviceType(String ua) {
+        if (ua.contains("googleimageproxy") || ua.contains("yahoomailproxy") || ua.contains("ggpht.com")) {
+            return "Proxy";
+        }
+        if (ua.contains("bot") || ua.contains("spider") || ua.contains("crawl") || ua.contains("curl/")
+            || ua.contains("python-") || ua.contains("java/") || ua.contains("wget/")) {
+            return "Bot";
+        }
+        if (ua.contains("ipad") || ua.contains("tablet") || (ua.contains("android") && !ua.contains("mobile"))) {
+            return "Tablet";
+        }
+        if (ua.contains("iphone") || ua.contains("ipod") || ua.contains("mobile") || ua.contains("android")) {
+            return "Mobile";
+        }
+        if (ua.contains("windows") || ua.contains("macintosh") || ua.contains("x11") || ua.contains(CHROME_OS_TOKEN)) {
+            return "Desktop";
+        }
+        return UNKNOWN;
+    }
+
+    private static String client(String ua) {
+        if (ua.contains("googleimageproxy") || ua.contains("ggpht.com")) {
+            return "Gmail";
+        }
+        if (ua.contains("yahoomailproxy")) {
+            return "Yahoo Mail";
+        }
+        if (ua.contains("microsoft outlook") || ua.contains("ms-office") || ua.contains("outlook-")) {
+            return "Outlook";
+        }
+        if (ua.contains("thunderbird")) {
+            return "Thunderbird";
+        }
+        if (ua.contains("edg/") || ua.contains("edga/") || ua.contains("edgios/")) {
+            return "Edge";
+        }
+        if (ua.contains("opr/") || ua.contains("opera")) {
+            return "Opera";
+        }
+        if (ua.contains("samsungbrowser/")) {
+            return "Samsung Internet";
+        }
+        if (ua.contains("firefox/") || ua.contains("fxios/")) {
+            return "Firefox";
+        }
+        if (ua.contains("chrome/") || ua.contains("crios/")) {
+            return "Chrome";
+        }
+        if (ua.contains("safari/")) {
+            return "Safari";
+        }
+        if (ua.contains("applewebkit/") && (ua.contains("macintosh") || ua.contains("iphone") || ua.contains("ipad"))) {
+            // Apple Mail renders with WebKit but, unlike Safari, does not name itself
+            return "Apple Mail";
+        }
+        return UNKNOWN;
+    }
+
+    private static String os(String ua) {
+        if (ua.contains("windows")) {
+            return "Windows";
+        }
+        if (ua.contains("iphone") || ua.contains("ipad") || ua.contains("ipod")) {
+            return "iOS";
+        }
+        if (ua.contains("mac os x") || ua.contains("macintosh")) {
+            return "macOS";
+        }
+        if (ua.contains("android")) {
+            return "Android";
+        }
+        if (ua.contains(CHROME_OS_TOKEN)) {
+            return "Chrome OS";
+        }
+        if (ua.contains("linux")) {
+            return "Linux";
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * What a user agent was classified as; Unknown where nothing matched
+     */
+    public static final class Classification {
+        private final String deviceType;
+        private final String client;
+        private final String os;
+
+        private Classification(String deviceType, String client, String os) {
+            this.deviceType = deviceType;
+            this.client = client;
+            this.os = os;
+        }
+
+        public String getDeviceType() {
+            return deviceType;
+        }
+
+        /**
+         * Browser or mail client
+         */
+        public String getClient() {
+            return client;
+        }
+
+        public String getOs() {
+            return os;
+        }
+
+        @Override
+        public String toString() {
+            return deviceType + "/" + client + "/" + os;
+        }
+    }
+}
@@ -12,6 +12,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 @Service
@@ -23,7 +24,7 @@ public class EmailDeliveryTrackingServiceImpl implements EmailDeliveryTrackingSe
     private final WebSocketService webSocketService;
     
     // Cache for delivery status to avoid database queries
-    private final Map<Long, DeliveryStatus> deliveryStatusCache = new HashMap<>();
+    private final Map<Long, DeliveryStatus> deliveryStatusCache = new ConcurrentHashMap<>();
     
     @Override
     @Transactional
@@ -131,79 +132,39 @@ public class EmailDeliveryTrackingServiceImpl implements EmailDeliveryTrackingSe
     }
     
     @Override
-    @Transactional
     public void trackEmailOpen(Long emailEventId, String ipAddress, String userAgent) {
-        try {
-            Optional<EmailEvent> emailEventOpt = emailEventRepository.findById(emailEventId);
-            if (emailEventOpt.isEmpty()) {
-                log.warn("EmailEvent not found for ID: {}", emailEventId);
-                return;
-            }
-            
-            EmailEvent emailEvent = emailEventOpt.get();
-            
-            // Create open event
-            EmailEvent openEvent = EmailEvent.builder()
-                .email(emailEvent.getEmail())
-                .eventType(EmailEventType.OPENED)
-                .eventData(String.format("ipAddress=%s,userAgent=%s,originalEventId=%d", 
-                    ipAddress, userAgent, emailEventId))
-                .createdAt(LocalDateTime.now())
-                .processed(false)
-                .build();
-            
-            emailEventRepository.save(openEvent);
-            
-            // Update delivery status
-            trackDeliveryStatus(emailEventId, DeliveryStatus.OPENED, Map.of(
-                "ipAddress", ipAddress,
-                "userAgent", userAgent,
-                "openedAt", LocalDateTime.now().toString()
-            ));
-            
-            log.info("Tracked email open for {} from IP: {}", emailEvent.getEmail(), ipAddress);
-            
-        } catch (Exception e) {
-            log.error("Failed to track email open for emailEventId {}: {}", emailEventId, e.getMessage());
-        }
+        notifyEngagement(emailEventId, DeliveryStatus.OPENED, Map.of(
+            "ipAddress", ipAddress != null ? ipAddress : "unknown",
+            "userAgent", userAgent != null ? userAgent : "unknown",
+            "openedAt", LocalDateTime.now().toString()
+        ));
     }
     
     @Override
-    @Transactional
     public void trackEmailClick(Long emailEventId, String url, String ipAddress, String userAgent) {
+        notifyEngagement(emailEventId, DeliveryStatus.CLICKED, Map.of(
+            "clickedUrl", url != null ? url : "unknown",
+            "ipAddress", ipAddress != null ? ipAddress : "unknown",
+            "userAgent", userAgent != null ? userAgent : "unknown",
+            "clickedAt", LocalDateTime.now().toString()
+        ));
+    }
+    
+    /**
+     * Opens and clicks come straight from tracking hits, which EmailTrackingService
+     * already records as events: only the cached status and live view change here
+     */
+    private void notifyEngagement(Long emailEventId, DeliveryStatus status, Map<String, Object> details) {
         try {
-            Optional<EmailEvent> emailEventOpt = emailEventRepository.findById(emailEventId);
-            if (emailEventOpt.isEmpty()) {
-                log.warn("EmailEvent not found for ID: {}", emailEventId);
-                return;
-            }
-            
-            EmailEvent emailEvent = emailEventOpt.get();
-            
-            // Create click event
-            EmailEvent clickEvent = EmailEvent.builder()
-                .email(emailEvent.getEmail())
-                .eventType(EmailEventType.CLICKED)
-                .eventData(String.format("url=%s,ipAddress=%s,userAgent=%s,originalEventId=%d", 
-                    url, ipAddress, userAgent, emailEventId))
-                .createdAt(LocalDateTime.now())
-                .processed(false)
-                .build();
-            
-            emailEventRepository.save(clickEvent);
-            
-            // Update delivery status
-            trackDeliveryStatus(emailEventId, DeliveryStatus.CLICKED, Map.of(
-                "clickedUrl", url,
-                "ipAddress", ipAddress,
-                "userAgent", userAgent,
-                "clickedAt", LocalDateTime.now().toString()
-            ));
-            
-            log.info("Tracked email click for {} on URL: {}", emailEvent.getEmail(), url);
+            deliveryStatusCache.put(emailEventId, status);
             
+            Map<String, Object> wsData = new HashMap<>(details);
+            wsData.put("emailEventId", emailEventId);
+            wsData.put("status", status.name());
+            wsData.put("timestamp", LocalDateTime.now().toString());
+            webSocketService.sendMessage("email_delivery_update", wsData);
         } catch (Exception e) {
-            log.error("Failed to track email click for emailEventId {}: {}", emailEventId, e.getMessage());
+            log.error("Failed to publish {} for emailEventId {}: {}", status, emailEventId, e.getMessage());
         }
     }
     
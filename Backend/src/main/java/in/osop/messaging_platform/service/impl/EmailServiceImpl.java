@@ -1,5 +1,6 @@
 package in.osop.messaging_platform.service.impl;
 
+import in.osop.messaging_platform.config.TenantContext;
 import in.osop.messaging_platform.dto.MessageRequest;
 import in.osop.messaging_platform.dto.MessageResponse;
 import in.osop.messaging_platform.exception.MessagingException;
@@ -8,26 +9,38 @@ import in.osop.messaging_platform.model.MessageLog;
 import in.osop.messaging_platform.model.MessageStatus;
 import in.osop.messaging_platform.model.EmailEvent;
 import in.osop.messaging_platform.model.EmailEventType;
-import in.osop.messaging_platform.repository.MessageLogRepository;
+import in.osop.messaging_platform.model.Subscriber;
 import in.osop.messaging_platform.repository.EmailEventRepository;
+import in.osop.messaging_platform.repository.SubscriberRepository;
+import in.osop.messaging_platform.service.CompiledTemplate;
 import in.osop.messaging_platform.service.EmailService;
+import in.osop.messaging_platform.service.EmailSkeleton;
 import in.osop.messaging_platform.service.EmailTrackingService;
 import in.osop.messaging_platform.service.EmailValidationService;
 import in.osop.messaging_platform.service.EmailDeliveryTrackingService;
+import in.osop.messaging_platform.service.MessageLogWriter;
+import in.osop.messaging_platform.service.SmtpTransportPool;
+import in.osop.messaging_platform.service.SpooledAttachment;
+import in.osop.messaging_platform.service.TemplateCache;
+import in.osop.messaging_platform.service.TrackingToken;
+import in.osop.messaging_platform.service.TrackingTokenCodec;
 import jakarta.mail.internet.MimeMessage;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.time.LocalDateTime;
-import java.util.Base64;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.regex.Pattern;
 
@@ -36,12 +49,22 @@ import java.util.regex.Pattern;
 @Slf4j
 public class EmailServiceImpl implements EmailService {
 
+    // Basic email validation regex
+    private static final Pattern EMAIL_PATTERN = Pattern.compile("^[a-zA-Z0-9._%+-]+@[a-zA-Z0-9.-]+\\.[a-zA-Z]{2,}$");
+
     private final JavaMailSender mailSender;
-    private final MessageLogRepository messageLogRepository;
+    private final SmtpTransportPool smtpTransportPool;
+    private final MessageLogWriter messageLogWriter;
     private final EmailEventRepository emailEventRepository;
+    private final SubscriberRepository subscriberRepository;
     private final EmailTrackingService emailTrackingService;
     private final EmailValidationService emailValidationService;
     private final EmailDeliveryTrackingService emailDeliveryTrackingService;
+    private final TemplateCache templateCache;
+    private final TrackingTokenCodec trackingTokenCodec;
+
+    @Value("${tracking.base-url:http://localhost:8080/api/tracking}")
+    private String trackingBaseUrl;
 
     @Override
     public MessageResponse sendEmail(MessageRequest request) {
@@ -52,6 +75,46 @@ public class EmailServiceImpl implements EmailService {
         Map<String, EmailValidationService.ValidationResult> validationResults = 
             emailValidationService.validateEmails(recipients);
         
+        // Placeholders are per request: render the template once, then compile the result for tracking
+        String subject = request.getSubject();
+        String content = request.getMessage();
+        Optional<TemplateCache.Compiled> template = templateCache.find(request.getTemplateId());
+        if (template.isPresent()) {
+            content = template.get().getContentHtml().render(request.getPlaceholders());
+            if (subject == null || subject.isBlank()) {
+                subject = template.get().getSubject().render(request.getPlaceholders());
+            }
+        } else if (content != null && request.getPlaceholders() != null && !request.getPlaceholders().isEmpty()) {
+            content = CompiledTemplate.compile(content).render(request.getPlaceholders());
+        }
+        EmailSkeleton skeleton = EmailSkeleton.compileHtml(content != null ? content : "", trackingBaseUrl, trackingTokenCodec,
+            request.isTrackOpens(), request.isTrackClicks(), request.isAddUnsubscribeLink());
+        
+        // Attachments are encoded once and streamed from disk into every message
+        List<SpooledAttachment> attachments = spoolAttachments(request.getAttachments());
+        try {
+            sendToRecipients(request, recipients, validationResults, subject, skeleton, attachments, details);
+        } finally {
+            attachments.forEach(this::closeQuietly);
+        }
+        
+        String status = details.containsValue(MessageStatus.FAILED) ? "PARTIAL" : "SUCCESS";
+        if (!details.containsValue(MessageStatus.SENT)) {
+            status = "FAILED";
+        }
+        
+        return MessageResponse.builder()
+                .status(status)
+                .channel(MessageChannel.EMAIL)
+                .recipients(recipients)
+                .details(details)
+                .build();
+    }
+    
+    private void sendToRecipients(MessageRequest request, List<String> recipients,
+                                  Map<String, EmailValidationService.ValidationResult> validationResults,
+                                  String subject, EmailSkeleton skeleton, List<SpooledAttachment> attachments,
+                                  Map<String, MessageStatus> details) {
         for (String recipient : recipients) {
             EmailValidationService.ValidationResult validation = validationResults.get(recipient);
             
@@ -62,52 +125,71 @@ public class EmailServiceImpl implements EmailService {
                     "Validation failed: " + validation.getReason());
                 
                 // Create EmailEvent record for failed validation
-                createEmailEvent(recipient, request, EmailEventType.BOUNCED);
+                createEmailEvent(recipient, null, request, EmailEventType.BOUNCED);
                 continue;
             }
             
+            // The event is created before sending so this recipient's tracking token carries its own ids
+            Subscriber subscriber = subscriberRepository.findByEmail(recipient).orElse(null);
+            EmailEvent event = createEmailEvent(recipient, subscriber, request, EmailEventType.SENT);
+            
             try {
-                sendEmailToRecipient(recipient, request);
+                sendEmailToRecipient(recipient, subscriber, subject, skeleton, attachments, trackingFor(event, subscriber));
                 details.put(recipient, MessageStatus.SENT);
                 logMessage(recipient, request.getMessage(), MessageStatus.SENT, null);
                 
-                // Create EmailEvent record for analytics
-                Long emailEventId = createEmailEvent(recipient, request, EmailEventType.SENT);
-                request.setEmailEventId(emailEventId); // Store for tracking
-                
                 // Track delivery status
-                emailDeliveryTrackingService.trackDeliveryStatus(emailEventId, 
-                    EmailDeliveryTrackingService.DeliveryStatus.SENT, 
-                    Map.of("validationScore", validation.getReputationScore()));
+                if (event != null) {
+                    emailDeliveryTrackingService.trackDeliveryStatus(event.getId(), 
+                        EmailDeliveryTrackingService.DeliveryStatus.SENT, 
+                        Map.of("validationScore", validation.getReputationScore()));
+                }
                 
             } catch (Exception e) {
                 log.error("Failed to send email to {}: {}", recipient, e.getMessage());
                 details.put(recipient, MessageStatus.FAILED);
                 logMessage(recipient, request.getMessage(), MessageStatus.FAILED, e.getMessage());
                 
-                // Create EmailEvent record for failed emails
-                Long emailEventId = createEmailEvent(recipient, request, EmailEventType.BOUNCED);
+                // The email never left, so its event is a bounce rather than a send
+                Long emailEventId = markBounced(event, recipient, subscriber, request);
                 if (emailEventId != null) {
                     emailDeliveryTrackingService.handleBounce(emailEventId, 
                         EmailDeliveryTrackingService.BounceType.UNKNOWN, e.getMessage());
                 }
             }
         }
-        
-        String status = details.containsValue(MessageStatus.FAILED) ? "PARTIAL" : "SUCCESS";
-        if (!details.containsValue(MessageStatus.SENT)) {
-            status = "FAILED";
+    }
+    
+    private List<SpooledAttachment> spoolAttachments(List<MultipartFile> attachments) {
+        List<SpooledAttachment> spooled = new ArrayList<>();
+        if (attachments == null) {
+            return spooled;
+        }
+        for (MultipartFile attachment : attachments) {
+            if (attachment != null && !attachment.isEmpty()) {
+                try {
+                    spooled.add(SpooledAttachment.spool(attachment));
+                } catch (IOException e) {
+                    log.error("Failed to add attachment {}: {}", attachment.getOriginalFilename(), e.getMessage());
+                    spooled.forEach(this::closeQuietly);
+                    throw new MessagingException("Failed to add attachment " + attachment.getOriginalFilename() + ": " + e.getMessage(), e);
+                }
+            }
+        }
+        return spooled;
+    }
+    
+    private void closeQuietly(SpooledAttachment attachment) {
+        try {
+            attachment.close();
+        } catch (IOException e) {
+            log.warn("Failed to remove spooled attachment {}: {}", attachment.getFileName(), e.getMessage());
         }
-        
-        return MessageResponse.builder()
-                .status(status)
-                .channel(MessageChannel.EMAIL)
-                .recipients(recipients)
-                .details(details)
-                .build();
     }
     
-    private void sendEmailToRecipient(String recipient, MessageRequest request) throws jakarta.mail.MessagingException {
+    private void sendEmailToRecipient(String recipient, Subscriber subscriber, String subject, EmailSkeleton skeleton,
+                                      List<SpooledAttachment> attachments, TrackingToken tracking)
+            throws jakarta.mail.MessagingException {
         // Validate email format
         if (!isValidEmail(recipient)) {
             throw new MessagingException("Invalid email format: " + recipient);
@@ -123,79 +205,23 @@ public class EmailServiceImpl implements EmailService {
             throw new MessagingException("Failed to set sender name: " + e.getMessage(), e);
         }
         
-        helper.setSubject(request.getSubject() != null ? request.getSubject() : "No Subject");
-        
-        // Add tracking pixels and click tracking if enabled
-        String emailContent = request.getMessage();
-        
-        // Create a proper HTML structure if not already present
-        if (!emailContent.trim().toLowerCase().startsWith("<!doctype html") && 
-            !emailContent.trim().toLowerCase().startsWith("<html")) {
-            emailContent = String.format("""
-                <!DOCTYPE html>
-                <html>
-                <head>
-                    <meta charset="UTF-8">
-                    <meta name="viewport" content="width=device-width, initial-scale=1.0">
-                    <style>
-                        body {
-                            font-family: Arial, sans-serif;
-                            line-height: 1.6;
-                            color: #333;
-                            max-width: 600px;
-                            margin: 0 auto;
-                            padding: 20px;
-                        }
-                        img { max-width: 100%%; height: auto; }
-                        a { color: #007bff; text-decoration: none; }
-                        a:hover { text-decoration: underline; }
-                        .footer { margin-top: 30px; font-size: 12px; color: #666; }
-                    </style>
-                </head>
-                <body>
-                    %s
-                </body>
-                </html>
-                """, emailContent);
-        }
+        helper.setSubject(subject != null ? subject : "No Subject");
         
-        // Add tracking pixel and click tracking
-        emailContent = addTrackingToEmail(emailContent, recipient, request);
-        
-        if (request.isAddUnsubscribeLink() && request.getEmailEventId() != null) {
-            String trackingData = Base64.getEncoder().encodeToString(
-                (request.getEmailEventId() + "|" + recipient).getBytes()
-            );
-            String unsubscribeLink = String.format(
-                "<div class='footer'><small><a href='http://localhost:8080/api/tracking/unsubscribe/%s'>Unsubscribe</a></small></div>",
-                trackingData
-            );
-            // Insert unsubscribe link before closing body tag
-            emailContent = emailContent.replace("</body>", unsubscribeLink + "</body>");
-        }
+        // Only the recipient's merge fields and tracking tokens are rendered here, the rest was compiled once per request
+        String emailContent = skeleton.render(recipient, subscriber != null ? subscriber.getFirstName() : null,
+            subscriber != null ? subscriber.getLastName() : null, tracking);
         
         helper.setText(emailContent, true); // true indicates HTML content
         
-        // Handle multiple attachments
-        List<MultipartFile> attachments = request.getAttachments();
-        if (attachments != null && !attachments.isEmpty()) {
-            for (MultipartFile attachment : attachments) {
-                if (attachment != null && !attachment.isEmpty()) {
-                    try {
-                        helper.addAttachment(attachment.getOriginalFilename(), attachment);
-                        log.info("Added attachment: {}", attachment.getOriginalFilename());
-                    } catch (Exception e) {
-                        log.error("Failed to add attachment {}: {}", attachment.getOriginalFilename(), e.getMessage());
-                        throw new MessagingException("Failed to add attachment " + attachment.getOriginalFilename() + ": " + e.getMessage(), e);
-                    }
-                }
-            }
+        // Handle multiple attachments, already encoded by spoolAttachments
+        for (SpooledAttachment attachment : attachments) {
+            helper.getRootMimeMultipart().addBodyPart(attachment.newBodyPart());
+            log.debug("Added attachment: {}", attachment.getFileName());
         }
         
         try {
-            mailSender.send(message);
-            log.info("Email sent successfully to {} with {} attachments", recipient, 
-                attachments != null ? attachments.size() : 0);
+            smtpTransportPool.send(message);
+            log.info("Email sent successfully to {} with {} attachments", recipient, attachments.size());
         } catch (Exception e) {
             log.error("Failed to send email via SMTP to {}: {}", recipient, e.getMessage());
             // In development mode, simulate successful sending
@@ -216,14 +242,42 @@ public class EmailServiceImpl implements EmailService {
                 .errorMessage(errorMessage)
                 .build();
         
-        messageLogRepository.save(log);
+        messageLogWriter.write(log);
     }
     
-    private Long createEmailEvent(String recipient, MessageRequest request, EmailEventType eventType) {
+    /**
+     * Tracking ids of one recipient's email; API sends belong to no campaign.
+     * Without an event there is nothing to attribute opens and clicks to.
+     */
+    private TrackingToken trackingFor(EmailEvent event, Subscriber subscriber) {
+        if (event == null) {
+            return null;
+        }
+        return TrackingToken.of(TenantContext.getCurrentTenant(), null,
+            subscriber != null ? subscriber.getId() : null, event.getId());
+    }
+    
+    private Long markBounced(EmailEvent event, String recipient, Subscriber subscriber, MessageRequest request) {
+        if (event == null) {
+            EmailEvent bounced = createEmailEvent(recipient, subscriber, request, EmailEventType.BOUNCED);
+            return bounced != null ? bounced.getId() : null;
+        }
+        try {
+            event.setEventType(EmailEventType.BOUNCED);
+            return emailEventRepository.save(event).getId();
+        } catch (Exception e) {
+            log.error("Failed to mark EmailEvent {} as bounced: {}", event.getId(), e.getMessage());
+            return event.getId();
+        }
+    }
+    
+    private EmailEvent createEmailEvent(String recipient, Subscriber subscriber, MessageRequest request,
+                                        EmailEventType eventType) {
         try {
             // Create EmailEvent record for analytics
             EmailEvent emailEvent = EmailEvent.builder()
                     .email(recipient)
+                    .subscriber(subscriber)
                     .eventType(eventType)
                     .eventData(Map.of(
                         "subject", request.getSubject() != null ? request.getSubject() : "No Subject",
@@ -236,7 +290,7 @@ public class EmailServiceImpl implements EmailService {
             
             EmailEvent savedEvent = emailEventRepository.save(emailEvent);
             log.info("Created EmailEvent record for {} with type {} and ID {}", recipient, eventType, savedEvent.getId());
-            return savedEvent.getId();
+            return savedEvent;
             
         } catch (Exception e) {
             log.error("Failed to create EmailEvent record for {}: {}", recipient, e.getMessage());
@@ -244,56 +298,12 @@ public class EmailServiceImpl implements EmailService {
         }
     }
     
-    private String addTrackingToEmail(String emailContent, String recipient, MessageRequest request) {
-        try {
-            // Add tracking pixel for open tracking
-            if (request.isTrackOpens() && request.getEmailEventId() != null) {
-                String trackingData = Base64.getEncoder().encodeToString(
-                    (request.getEmailEventId() + "|" + recipient).getBytes()
-                );
-                String trackingPixel = String.format(
-                    "<img src='http://localhost:8080/api/tracking/open/%s' width='1' height='1' style='display:none;' alt='' />",
-                    trackingData
-                );
-                
-                // Add tracking pixel before closing body tag
-                if (emailContent.contains("</body>")) {
-                    emailContent = emailContent.replace("</body>", trackingPixel + "</body>");
-                } else {
-                    emailContent += trackingPixel;
-                }
-            }
-            
-            // Add click tracking to all links
-            if (request.isTrackClicks() && request.getEmailEventId() != null) {
-                String trackingData = Base64.getEncoder().encodeToString(
-                    (request.getEmailEventId() + "|" + recipient + "|").getBytes()
-                );
-                
-                // Replace all href attributes with tracking URLs
-                emailContent = emailContent.replaceAll(
-                    "href=['\"]([^'\"]*)['\"]",
-                    String.format("href='http://localhost:8080/api/tracking/click/%s?url=$1'", trackingData)
-                );
-            }
-            
-            return emailContent;
-            
-        } catch (Exception e) {
-            log.error("Failed to add tracking to email: {}", e.getMessage());
-            return emailContent; // Return original content if tracking fails
-        }
-    }
-    
     private boolean isValidEmail(String email) {
         if (email == null || email.trim().isEmpty()) {
             return false;
         }
         
-        // Basic email validation regex
-        String emailRegex = "^[a-zA-Z0-9._%+-]+@[a-zA-Z0-9.-]+\\.[a-zA-Z]{2,}$";
-        Pattern pattern = Pattern.compile(emailRegex);
-        return pattern.matcher(email.trim()).matches();
+        return EMAIL_PATTERN.matcher(email.trim()).matches();
     }
     
     private boolean isDevelopmentMode() {
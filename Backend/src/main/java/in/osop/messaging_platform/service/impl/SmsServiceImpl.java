@@ -7,7 +7,9 @@ import in.osop.messaging_platform.model.MessageChannel;
 import in.osop.messaging_platform.model.MessageLog;
 import in.osop.messaging_platform.model.MessageStatus;
 import in.osop.messaging_platform.repository.MessageLogRepository;
+import in.osop.messaging_platform.service.CompiledTemplate;
 import in.osop.messaging_platform.service.SmsService;
+import in.osop.messaging_platform.service.TemplateCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -28,6 +30,7 @@ public class SmsServiceImpl implements SmsService {
 
     private final WebClient smsWebClient;
     private final MessageLogRepository messageLogRepository;
+    private final TemplateCache templateCache;
 
     @Value("${sms.api.url}")
     private String smsApiUrl;
@@ -42,10 +45,12 @@ public class SmsServiceImpl implements SmsService {
     public MessageResponse sendSms(MessageRequest request) {
         Map<String, MessageStatus> details = new HashMap<>();
         List<String> recipients = request.getRecipients();
+        // Placeholders are per request, so the text is rendered once for all recipients
+        String messageContent = resolveContent(request);
         
         for (String recipient : recipients) {
             try {
-                sendSmsToRecipient(recipient, request);
+                sendSmsToRecipient(recipient, messageContent);
                 details.put(recipient, MessageStatus.SENT);
                 logMessage(recipient, request.getMessage(), MessageStatus.SENT, null);
             } catch (Exception e) {
@@ -68,16 +73,7 @@ public class SmsServiceImpl implements SmsService {
                 .build();
     }
     
-    private void sendSmsToRecipient(String recipient, MessageRequest request) {
-        // Prepare message content
-        String messageContent = request.getMessage();
-        
-        // Apply template and placeholders if needed
-        if (request.getTemplateId() != null && !request.getTemplateId().isEmpty() && 
-            request.getPlaceholders() != null && !request.getPlaceholders().isEmpty()) {
-            messageContent = applyTemplate(request.getTemplateId(), request.getPlaceholders());
-        }
-        
+    private void sendSmsToRecipient(String recipient, String messageContent) {
         // Build request body for SMS gateway
         Map<String, Object> requestBody = new HashMap<>();
         requestBody.put("apikey", smsApiKey);
@@ -106,22 +102,19 @@ public class SmsServiceImpl implements SmsService {
         }
     }
     
-    private String applyTemplate(String templateId, Map<String, String> placeholders) {
-        // This is a simplified implementation. In a real application,
-        // you might fetch templates from a database or external service.
-        String template = getTemplateContent(templateId);
-        
-        // Replace placeholders with actual values
-        for (Map.Entry<String, String> entry : placeholders.entrySet()) {
-            template = template.replace("{{" + entry.getKey() + "}}", entry.getValue());
+    private String resolveContent(MessageRequest request) {
+        if (request.getTemplateId() == null || request.getTemplateId().isEmpty() ||
+            request.getPlaceholders() == null || request.getPlaceholders().isEmpty()) {
+            return request.getMessage();
         }
-        
-        return template;
+        CompiledTemplate template = templateCache.find(request.getTemplateId())
+                .map(compiled -> compiled.getContentText().isEmpty() ? compiled.getContentHtml() : compiled.getContentText())
+                .orElseGet(() -> CompiledTemplate.compile(getTemplateContent(request.getTemplateId())));
+        return template.render(request.getPlaceholders());
     }
     
     private String getTemplateContent(String templateId) {
-        // Simplified implementation - in a real app, fetch from DB or config
-        // Here we just return a dummy template for demonstration
+        // Fallback for template ids that are not stored templates
         return "This is a template message with ID: " + templateId + ". " +
                "It can contain placeholders like {{name}} and {{date}}.";
     }
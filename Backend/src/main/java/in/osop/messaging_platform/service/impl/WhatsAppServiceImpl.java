@@ -7,6 +7,7 @@ import in.osop.messaging_platform.model.MessageChannel;
 import in.osop.messaging_platform.model.MessageLog;
 import in.osop.messaging_platform.model.MessageStatus;
 import in.osop.messaging_platform.repository.MessageLogRepository;
+import in.osop.messaging_platform.service.CompiledTemplate;
 import in.osop.messaging_platform.service.WhatsAppService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -42,10 +43,15 @@ public class WhatsAppServiceImpl implements WhatsAppService {
     public MessageResponse sendWhatsAppMessage(MessageRequest request) {
         Map<String, MessageStatus> details = new HashMap<>();
         List<String> recipients = request.getRecipients();
+        // Text messages fill their placeholders here once, template messages are filled in by WhatsApp
+        String textBody = request.getMessage();
+        if (textBody != null && request.getPlaceholders() != null && !request.getPlaceholders().isEmpty()) {
+            textBody = CompiledTemplate.compile(textBody).render(request.getPlaceholders());
+        }
         
         for (String recipient : recipients) {
             try {
-                sendWhatsAppToRecipient(recipient, request);
+                sendWhatsAppToRecipient(recipient, request, textBody);
                 details.put(recipient, MessageStatus.SENT);
                 logMessage(recipient, request.getMessage(), MessageStatus.SENT, null);
             } catch (Exception e) {
@@ -68,7 +74,7 @@ public class WhatsAppServiceImpl implements WhatsAppService {
                 .build();
     }
     
-    private void sendWhatsAppToRecipient(String recipient, MessageRequest request) {
+    private void sendWhatsAppToRecipient(String recipient, MessageRequest request, String textBody) {
         String endpoint = whatsappApiUrl + "/" + whatsappPhoneId + "/messages";
         
         // Normalize phone number to WhatsApp format if needed
@@ -108,7 +114,7 @@ public class WhatsAppServiceImpl implements WhatsAppService {
             // Regular text message
             Map<String, Object> textMessage = new HashMap<>();
             textMessage.put("preview_url", false);
-            textMessage.put("body", request.getMessage());
+            textMessage.put("body", textBody);
             requestBody.put("type", "text");
             requestBody.put("text", textMessage);
         }
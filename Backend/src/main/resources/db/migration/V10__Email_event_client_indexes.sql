@@ -0,0 +1,7 @@
+-- V10__Email_event_client_indexes.sql
+-- Device, client and OS breakdowns of a campaign's opens and clicks; the columns
+-- are filled in from the user agent as tracking events are ingested
+
+CREATE INDEX idx_email_events_campaign_device ON email_events(campaign_id, event_type, device_type);
+CREATE INDEX idx_email_events_campaign_browser ON email_events(campaign_id, event_type, browser);
+CREATE INDEX idx_email_events_campaign_os ON email_events(campaign_id, event_type, os);
@@ -0,0 +1,5 @@
+-- V11__Email_event_location_index.sql
+-- Per-country breakdowns of a campaign's opens and clicks; location holds the
+-- ISO country code resolved from the IP address as tracking events are ingested
+
+CREATE INDEX idx_email_events_campaign_location ON email_events(campaign_id, event_type, location);
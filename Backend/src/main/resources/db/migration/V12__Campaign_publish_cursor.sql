@@ -0,0 +1,7 @@
+-- V12__Campaign_publish_cursor.sql
+-- Queue dispatch saves its publish cursor as the broker confirms each batch, so
+-- a producer that dies part-way is resumed instead of leaving the campaign RUNNING;
+-- last_subscriber_id holds the last subscriber of the last confirmed batch
+
+ALTER TABLE campaign_progress
+ADD COLUMN published_batches INT NOT NULL DEFAULT 0;  -- batches confirmed by the broker so far
@@ -0,0 +1,4 @@
+-- V4__Audience_cursor_index.sql
+-- Supports keyset paging of campaign audiences (status = ? AND id > ? ORDER BY id)
+
+CREATE INDEX idx_subscribers_status_id ON subscribers(status, id);
@@ -0,0 +1,22 @@
+-- V5__Send_jobs.sql
+-- Shards of a campaign audience that send workers claim with FOR UPDATE SKIP LOCKED
+
+CREATE TABLE send_jobs (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    campaign_id BIGINT NOT NULL,
+    batch_number INT NOT NULL,
+    after_subscriber_id BIGINT NOT NULL,  -- exclusive lower bound of the shard
+    last_subscriber_id BIGINT NOT NULL,   -- inclusive upper bound of the shard
+    status VARCHAR(20) NOT NULL,          -- PENDING, CLAIMED, DONE, FAILED, CANCELLED
+    owner VARCHAR(100),
+    lease_expires_at TIMESTAMP NULL,
+    attempts INT NOT NULL DEFAULT 0,
+    error_message TEXT,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    UNIQUE KEY uk_send_jobs_campaign_batch (campaign_id, batch_number),
+    FOREIGN KEY (campaign_id) REFERENCES campaigns(id) ON DELETE CASCADE
+);
+
+CREATE INDEX idx_send_jobs_claim ON send_jobs(status, lease_expires_at);
+CREATE INDEX idx_send_jobs_owner ON send_jobs(owner, status);
@@ -0,0 +1,10 @@
+-- V6__Campaign_checkpoints.sql
+-- Durable send cursor so paused or crashed campaigns continue where they stopped
+
+ALTER TABLE campaign_progress
+ADD COLUMN last_subscriber_id BIGINT NOT NULL DEFAULT 0,  -- every subscriber up to this id has been handled
+ADD COLUMN inflight_last_subscriber_id BIGINT NULL,       -- batch (last_subscriber_id, this] is being sent
+ADD COLUMN heartbeat_at TIMESTAMP NULL;                   -- refreshed while a node is sending the campaign
+
+-- Looks up which recipients of an in-flight batch were already sent
+CREATE INDEX idx_message_logs_campaign_recipient ON message_logs(campaign_id, recipient);
@@ -0,0 +1,7 @@
+-- V7__Message_retries.sql
+-- When a transiently failed campaign message is due for its next automatic retry
+
+ALTER TABLE message_logs
+ADD COLUMN next_retry_at TIMESTAMP NULL;  -- NULL once sent, given up on or permanently failed
+
+CREATE INDEX idx_message_logs_next_retry ON message_logs(next_retry_at);
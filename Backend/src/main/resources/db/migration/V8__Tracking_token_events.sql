@@ -0,0 +1,6 @@
+-- V8__Tracking_token_events.sql
+-- Opens, clicks and unsubscribes are recorded from signed tracking tokens, which
+-- carry the campaign, subscriber and tenant ids but not the email address
+
+ALTER TABLE email_events
+MODIFY email VARCHAR(255) NULL;
@@ -0,0 +1,13 @@
+-- V9__Campaign_engagement.sql
+-- Subscribers that opened or clicked a campaign at least once, one serialized
+-- roaring bitmap of subscriber ids per campaign and event type
+
+CREATE TABLE campaign_engagement (
+    campaign_id BIGINT NOT NULL,
+    event_type VARCHAR(20) NOT NULL,      -- OPENED, CLICKED
+    subscribers LONGBLOB NOT NULL,        -- portable RoaringBitmap serialization
+    cardinality BIGINT NOT NULL,          -- number of subscribers in the bitmap
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    PRIMARY KEY (campaign_id, event_type),
+    FOREIGN KEY (campaign_id) REFERENCES campaigns(id) ON DELETE CASCADE
+);
@@ -0,0 +1,207 @@
+package in.osop.messaging_platform.service;
+
+import com.rabbitmq.client.Channel;
+import in.osop.messaging_platform.config.RabbitMQConfig;
+import in.osop.messaging_platform.dto.AudienceMember;
+import in.osop.messaging_platform.dto.SendBatchMessage;
+import in.osop.messaging_platform.model.Campaign;
+import in.osop.messaging_platform.model.CampaignProgress;
+import in.osop.messaging_platform.model.SubscriptionStatus;
+import in.osop.messaging_platform.repository.CampaignProgressRepository;
+import in.osop.messaging_platform.repository.SubscriberRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Publish, consume and complete for queue-dispatched campaigns, with the broker
+ * replaced by a template that confirms every publish and hands the batches to
+ * the test.
+ */
+class CampaignBatchQueueTest {
+
+	private static final long CAMPAIGN_ID = 7L;
+
+	private final RabbitTemplate rabbitTemplate = mock(RabbitTemplate.class);
+	private final SubscriberRepository subscriberRepository = mock(SubscriberRepository.class);
+	private final CampaignProgressRepository campaignProgressRepository = mock(CampaignProgressRepository.class);
+	private final CampaignBatchSender campaignBatchSender = mock(CampaignBatchSender.class);
+	private final CampaignRunRegistry campaignRunRegistry = mock(CampaignRunRegistry.class);
+	private final Channel channel = mock(Channel.class);
+	private final List<SendBatchMessage> published = new ArrayList<>();
+	private final Map<SendBatchMessage, Integer> parked = new HashMap<>();
+	private final Set<Integer> replayed = new HashSet<>();
+	private int brokerDownAfter = Integer.MAX_VALUE;
+
+	private CampaignBatchPublisher publisher;
+	private CampaignBatchConsumer consumer;
+
+	@BeforeEach
+	void setUp() {
+		publisher = new CampaignBatchPublisher(rabbitTemplate, subscriberRepository, campaignProgressRepository, campaignBatchSender);
+		ReflectionTestUtils.setField(publisher, "maxUnconfirmed", 2);
+		ReflectionTestUtils.setField(publisher, "confirmTimeoutMs", 1000L);
+		consumer = new CampaignBatchConsumer(campaignBatchSender, publisher, campaignProgressRepository, campaignRunRegistry);
+		ReflectionTestUtils.setField(consumer, "maxDeliveries", 3);
+
+		doAnswer(invocation -> {
+			Message message = new Message(new byte[0], new MessageProperties());
+			invocation.<MessagePostProcessor>getArgument(3).postProcessMessage(message);
+			Integer failed = message.getMessageProperties().getHeader(RabbitMQConfig.FAILED_DELIVERIES_HEADER);
+			SendBatchMessage batch = invocation.getArgument(2);
+			if (RabbitMQConfig.WAIT_ROUTING_KEY.equals(invocation.getArgument(1))) {
+				parked.put(batch, failed);
+			} else if (published.size() >= brokerDownAfter) {
+				throw new AmqpException("Connection lost");
+			} else {
+				published.add(batch);
+				if (Boolean.TRUE.equals(message.getMessageProperties().getHeader(RabbitMQConfig.REPLAYED_HEADER))) {
+					replayed.add(batch.getBatchNumber());
+				}
+			}
+			CorrelationData correlation = invocation.getArgument(4);
+			correlation.getFuture().complete(new CorrelationData.Confirm(true, null));
+			return null;
+		}).when(rabbitTemplate).convertAndSend(eq(RabbitMQConfig.CAMPAIGN_EXCHANGE), anyString(),
+			any(Object.class), any(MessagePostProcessor.class), any(CorrelationData.class));
+
+		// Five subscribers in pages of two
+		when(subscriberRepository.openAudienceCursor(any(), anyLong(), anyInt())).thenCallRealMethod();
+		when(subscriberRepository.findAudienceAfter(eq(SubscriptionStatus.ACTIVE), anyLong(), any(Pageable.class)))
+			.thenAnswer(invocation -> {
+				long lastId = invocation.getArgument(1);
+				List<AudienceMember> page = new ArrayList<>();
+				for (long id = lastId + 1; id <= Math.min(lastId + 2, 5); id++) {
+					page.add(new AudienceMember(id, "user" + id + "@example.com", "First" + id, "Last" + id));
+				}
+				return page;
+			});
+		when(campaignProgressRepository.findStatusByCampaignId(CAMPAIGN_ID))
+			.thenReturn(Optional.of(CampaignProgress.CampaignProgressStatus.RUNNING));
+	}
+
+	@Test
+	void publishedBatchesAreSentAcknowledgedAndCompleteTheCampaign() throws Exception {
+		Campaign campaign = new Campaign();
+		campaign.setId(CAMPAIGN_ID);
+		publisher.publishCampaign(campaign, 2);
+
+		assertEquals(3, published.size());
+		verify(campaignProgressRepository).updateTotalBatches(CAMPAIGN_ID, 3);
+		verify(campaignBatchSender).completeCampaignIfDone(CAMPAIGN_ID);
+
+		CampaignSendContext context = mock(CampaignSendContext.class);
+		when(campaignBatchSender.contextFor(CAMPAIGN_ID)).thenReturn(context);
+		when(campaignBatchSender.withoutDelivered(eq(CAMPAIGN_ID), any())).thenAnswer(invocation -> invocation.getArgument(1));
+		when(campaignBatchSender.sendBatch(eq(context), any(), anyInt())).thenReturn(CompletableFuture.completedFuture(true));
+
+		long deliveryTag = 0;
+		for (SendBatchMessage batch : published) {
+			consumer.onBatch(batch, channel, ++deliveryTag, null, null);
+			verify(channel).basicAck(deliveryTag, false);
+		}
+		verify(campaignBatchSender, times(3)).completeBatch(CAMPAIGN_ID);
+		verify(channel, never()).basicNack(anyLong(), any(Boolean.class), any(Boolean.class));
+	}
+
+	@Test
+	void producerResumesFromTheLastConfirmedBatch() throws Exception {
+		Campaign campaign = new Campaign();
+		campaign.setId(CAMPAIGN_ID);
+		brokerDownAfter = 2;
+		assertThrows(AmqpException.class, () -> publisher.publishCampaign(campaign, 2));
+		// Batch 1 was confirmed, batch 2 reached the broker unconfirmed
+		verify(campaignProgressRepository).savePublishCursor(eq(CAMPAIGN_ID), eq(2L), eq(1), any());
+		verify(campaignProgressRepository, never()).updateTotalBatches(anyLong(), anyInt());
+
+		brokerDownAfter = Integer.MAX_VALUE;
+		publisher.resumeCampaign(CampaignProgress.builder()
+			.campaignId(CAMPAIGN_ID)
+			.batchSize(2)
+			.lastSubscriberId(2L)
+			.publishedBatches(1)
+			.build());
+		assertEquals(List.of(1, 2, 2, 3), published.stream().map(SendBatchMessage::getBatchNumber).toList());
+		assertEquals(Set.of(2, 3), replayed);
+		verify(campaignProgressRepository).savePublishCursor(eq(CAMPAIGN_ID), eq(5L), eq(3), any());
+		verify(campaignProgressRepository).updateTotalBatches(CAMPAIGN_ID, 3);
+
+		// The first copy of batch 2 was sent, so the replayed one is dropped without counting
+		SendBatchMessage copy = published.get(2);
+		when(campaignBatchSender.withoutAttempted(CAMPAIGN_ID, copy.getRecipients())).thenReturn(List.of());
+		consumer.onBatch(copy, channel, 1L, null, true);
+		verify(channel).basicAck(1L, false);
+		verify(campaignBatchSender, never()).sendBatch(any(), any(), anyInt());
+		verify(campaignBatchSender, never()).completeBatch(CAMPAIGN_ID);
+	}
+
+	@Test
+	void failedBatchIsParkedForAnotherDelivery() throws Exception {
+		SendBatchMessage batch = new SendBatchMessage(CAMPAIGN_ID, 1,
+			List.of(new AudienceMember(1L, "user1@example.com", "First1", "Last1")));
+		when(campaignBatchSender.contextFor(CAMPAIGN_ID)).thenThrow(new IllegalStateException("database down"));
+
+		consumer.onBatch(batch, channel, 1L, null, null);
+		consumer.onBatch(batch, channel, 2L, 1, null);
+		verify(channel).basicAck(1L, false);
+		verify(channel).basicAck(2L, false);
+		assertEquals(2, parked.get(batch));
+		verify(campaignBatchSender, never()).failBatch(any(), any());
+		verify(channel, never()).basicNack(anyLong(), any(Boolean.class), any(Boolean.class));
+	}
+
+	@Test
+	void batchOutOfDeliveriesIsClosedOutAndDeadLettered() throws Exception {
+		SendBatchMessage batch = new SendBatchMessage(CAMPAIGN_ID, 1,
+			List.of(new AudienceMember(1L, "user1@example.com", "First1", "Last1")));
+		when(campaignBatchSender.contextFor(CAMPAIGN_ID)).thenThrow(new IllegalStateException("relay down"));
+
+		consumer.onBatch(batch, channel, 3L, 2, null);
+		verify(campaignBatchSender).failBatch(CAMPAIGN_ID, batch.getRecipients());
+		verify(channel).basicNack(3L, false, false);
+		verify(campaignBatchSender, never()).completeBatch(CAMPAIGN_ID);
+		assertTrue(parked.isEmpty());
+	}
+
+	@Test
+	void batchOfPausedCampaignKeepsItsFailedDeliveries() throws Exception {
+		when(campaignProgressRepository.findStatusByCampaignId(CAMPAIGN_ID))
+			.thenReturn(Optional.of(CampaignProgress.CampaignProgressStatus.PAUSED));
+		SendBatchMessage batch = new SendBatchMessage(CAMPAIGN_ID, 1, List.of());
+
+		consumer.onBatch(batch, channel, 1L, 1, null);
+		assertEquals(1, parked.get(batch));
+		verify(channel).basicAck(1L, false);
+	}
+}
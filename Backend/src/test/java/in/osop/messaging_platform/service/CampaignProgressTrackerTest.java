@@ -0,0 +1,75 @@
+package in.osop.messaging_platform.service;
+
+import in.osop.messaging_platform.dto.CampaignProgressDto;
+import in.osop.messaging_platform.model.CampaignProgress;
+import in.osop.messaging_platform.repository.CampaignProgressRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Send counts held in memory, flushed with relative UPDATEs and overlaid on the
+ * stored rows for the live feed.
+ */
+class CampaignProgressTrackerTest {
+
+	private static final long CAMPAIGN_ID = 7L;
+
+	private final CampaignProgressRepository campaignProgressRepository = mock(CampaignProgressRepository.class);
+	private final CampaignProgressTracker tracker = new CampaignProgressTracker(campaignProgressRepository);
+
+	@Test
+	void flushWritesSentAsSuccessPlusFailed() {
+		tracker.recordSuccess(CAMPAIGN_ID);
+		tracker.recordSuccess(CAMPAIGN_ID);
+		tracker.recordFailure(CAMPAIGN_ID);
+
+		tracker.flushAll();
+		verify(campaignProgressRepository).addBatchResults(eq(CAMPAIGN_ID), eq(3), eq(2), eq(1), any());
+
+		// Nothing new: no UPDATE and no read
+		tracker.flushAll();
+		verify(campaignProgressRepository).addBatchResults(anyLong(), anyInt(), anyInt(), anyInt(), any());
+		verify(campaignProgressRepository, never()).findByCampaignId(any());
+	}
+
+	@Test
+	void liveProgressCoversCampaignsSentElsewhere() {
+		when(campaignProgressRepository.findByStatus(CampaignProgress.CampaignProgressStatus.RUNNING))
+			.thenReturn(List.of(running(CAMPAIGN_ID, 10), running(8L, 40)));
+		tracker.recordSuccess(CAMPAIGN_ID);
+		tracker.recordFailure(CAMPAIGN_ID);
+
+		List<CampaignProgressDto> live = tracker.liveProgress();
+		assertEquals(2, live.size());
+		assertEquals(12, live.get(0).getEmailsSent());
+		assertEquals(6, live.get(0).getEmailsSuccess());
+		assertEquals(6, live.get(0).getEmailsFailed());
+		// Sent on another node: the stored row as it is
+		assertEquals(40, live.get(1).getEmailsSent());
+	}
+
+	private static CampaignProgress running(long campaignId, int sent) {
+		return CampaignProgress.builder()
+			.campaignId(campaignId)
+			.status(CampaignProgress.CampaignProgressStatus.RUNNING)
+			.totalRecipients(100)
+			.emailsSent(sent)
+			.emailsSuccess(sent / 2)
+			.emailsFailed(sent / 2)
+			.emailsInProgress(0)
+			.currentBatchNumber(0)
+			.totalBatches(2)
+			.build();
+	}
+}
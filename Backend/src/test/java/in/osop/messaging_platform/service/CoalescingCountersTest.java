@@ -0,0 +1,64 @@
+package in.osop.messaging_platform.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Increments racing the eviction of their counter must survive it.
+ */
+class CoalescingCountersTest {
+
+	private static final int WRITERS = 4;
+	private static final int INCREMENTS = 200_000;
+
+	@Test
+	void keepsIncrementsRacingEviction() throws Exception {
+		CoalescingCounters<String> counters = new CoalescingCounters<>();
+		AtomicBoolean writing = new AtomicBoolean(true);
+		List<Thread> writers = new ArrayList<>();
+		for (int i = 0; i < WRITERS; i++) {
+			Thread writer = new Thread(() -> {
+				for (int n = 0; n < INCREMENTS; n++) {
+					counters.add("campaign", 1);
+				}
+			});
+			writers.add(writer);
+			writer.start();
+		}
+
+		// Flush like the aggregators do, evicting the key whenever it reads as quiet
+		long flushed = 0;
+		Thread evictor = new Thread(() -> {
+			while (writing.get()) {
+				counters.evict("campaign");
+			}
+		});
+		evictor.start();
+		for (Thread writer : writers) {
+			while (writer.isAlive()) {
+				flushed += counters.take("campaign");
+			}
+			writer.join();
+		}
+		writing.set(false);
+		evictor.join();
+		flushed += counters.take("campaign");
+
+		assertEquals((long) WRITERS * INCREMENTS, flushed);
+	}
+
+	@Test
+	void sumLeavesTheCountInPlace() {
+		CoalescingCounters<String> counters = new CoalescingCounters<>();
+		counters.add("campaign", 3);
+		assertEquals(3, counters.sum("campaign"));
+		assertEquals(3, counters.take("campaign"));
+		assertEquals(0, counters.sum("campaign"));
+		assertEquals(0, counters.take("unknown"));
+	}
+}
@@ -0,0 +1,214 @@
+package in.osop.messaging_platform.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Allocation per rendered message before and after pre-compiling email bodies.
+ * The "before" side is the per-recipient rendering EmailServiceImpl used to do.
+ */
+class EmailSkeletonBenchmarkTest {
+
+	private static final String BASE_URL = "http://localhost:8080/api/tracking";
+	private static final TrackingTokenCodec CODEC = new TrackingTokenCodec("benchmark-secret-benchmark-secret-0123456789");
+	private static final int WARMUP = 20_000;
+	private static final int ITERATIONS = 50_000;
+
+	private static final String CONTENT = """
+		<h1>Spring sale</h1>
+		<p>Our biggest sale of the year starts today. Everything in the store is up to 40% off
+		until Sunday, and members get free shipping on every order.</p>
+		<p><a href="https://shop.example.com/sale?utm_source=email">Shop the sale</a></p>
+		<p><a href="https://shop.example.com/new">New arrivals</a> |
+		<a href='https://shop.example.com/account'>Your account</a> |
+		<a href="https://shop.example.com/help">Help</a></p>
+		<p>Thanks for being a customer.</p>
+		""";
+
+	@Test
+	void rendersTheSameHtmlAsBefore() {
+		String[] bodies = {CONTENT, "<html><body><a href=\"x\">x</a></body></html>", "<html><p>no body</p></html>"};
+		for (String body : bodies) {
+			// Click tracking now encodes the target, see rewritesAnchorLinksForClickTracking
+			for (int flags = 0; flags < 4; flags++) {
+				boolean opens = (flags & 1) != 0;
+				boolean clicks = false;
+				boolean unsubscribe = (flags & 2) != 0;
+				EmailSkeleton skeleton = EmailSkeleton.compileHtml(body, BASE_URL, CODEC, opens, clicks, unsubscribe);
+				assertEquals(legacyRender(body, null, null, opens, clicks, unsubscribe),
+					skeleton.render("jane@example.com", null, null, null));
+				TrackingToken tracking = TrackingToken.of(1L, 2L, 3L, 42L);
+				String token = CODEC.encode(tracking, null);
+				assertEquals(legacyRender(body, token, null, opens, clicks, unsubscribe),
+					skeleton.render("jane@example.com", null, null, tracking));
+			}
+		}
+	}
+
+	@Test
+	void rewritesAnchorLinksForClickTracking() {
+		String body = "<html><body><a class=x HREF=\"https://a.example/?q=1&amp;r=2\">a</a>"
+			+ "<a href='mailto:help@example.com'>mail</a><a href=#top>top</a>"
+			+ "<link href=\"style.css\"><!-- <a href=\"https://hidden.example\"> -->"
+			+ "<script>var s = '<a href=\"https://script.example\">';</script></BODY></html>";
+		TrackingToken tracking = TrackingToken.of(1L, 2L, 3L, 7L);
+		String target = "https://a.example/?q=1&r=2";
+		String token = CODEC.encode(tracking.forLink(1), target);
+
+		String rendered = EmailSkeleton.compileHtml(body, BASE_URL, CODEC, true, true, false)
+			.render("jane@example.com", null, null, tracking);
+
+		assertTrue(rendered.contains("<a class=x href='" + BASE_URL + "/click/" + token
+			+ "?url=https%3A%2F%2Fa.example%2F%3Fq%3D1%26r%3D2'>a</a>"), rendered);
+		assertEquals(Optional.of(tracking.forLink(1)), CODEC.decode(token, target));
+		assertEquals(Optional.empty(), CODEC.decode(token, "https://evil.example/"));
+		assertTrue(rendered.contains("<a href='mailto:help@example.com'>"), rendered);
+		assertTrue(rendered.contains("<a href=#top>"), rendered);
+		assertTrue(rendered.contains("<link href=\"style.css\">"), rendered);
+		assertTrue(rendered.contains("<a href=\"https://hidden.example\">"), rendered);
+		assertTrue(rendered.contains("<a href=\"https://script.example\">"), rendered);
+		assertTrue(rendered.contains("alt='' /></BODY>"), rendered);
+	}
+
+	@Test
+	void rendersMergeFields() {
+		EmailSkeleton skeleton = EmailSkeleton.compileText("Hi {{firstName}} {{lastName}}, this went to {{email}}. {{unknown}}");
+		assertEquals("Hi Jane {{lastName}}, this went to jane@example.com. {{unknown}}",
+			skeleton.render("jane@example.com", "Jane", null, null));
+	}
+
+	@Test
+	void keepsPlaceholdersOfMissingFieldsInHtml() {
+		assertEquals("<p>Hi {{firstName}} Doe</p>",
+			EmailSkeleton.compileHtml("<p>Hi {{firstName}} {{lastName}}</p>", BASE_URL, CODEC, false, false, false)
+				.render("jane@example.com", null, "Doe", null)
+				.replaceAll("(?s).*(<p>.*</p>).*", "$1"));
+	}
+
+	@Test
+	void escapesMergeFieldsInHtmlOnly() {
+		String body = "<p>Hi {{firstName}} {{lastName}}</p><p>Sent to {{email}}</p>";
+		String firstName = "<script>alert(1)</script>";
+		String lastName = "\"><a href='https://evil.example'>x</a>";
+
+		// The old rendering left merge fields in HTML bodies as literal text; they are now filled in, escaped
+		String expected = legacyRender(body, null, null, false, false, false)
+			.replace("{{firstName}}", "&lt;script&gt;alert(1)&lt;/script&gt;")
+			.replace("{{lastName}}", "&quot;&gt;&lt;a href=&#39;https://evil.example&#39;&gt;x&lt;/a&gt;")
+			.replace("{{email}}", "jane&amp;co@example.com");
+		assertEquals(expected, EmailSkeleton.compileHtml(body, BASE_URL, CODEC, false, false, false)
+			.render("jane&co@example.com", firstName, lastName, null));
+
+		assertEquals("Hi " + firstName + " " + lastName,
+			EmailSkeleton.compileText("Hi {{firstName}} {{lastName}}").render("jane@example.com", firstName, lastName, null));
+	}
+
+	@Test
+	void allocatesLessPerMessage() {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		if (!threads.isThreadAllocatedMemorySupported()) {
+			return;
+		}
+		threads.setThreadAllocatedMemoryEnabled(true);
+
+		EmailSkeleton skeleton = EmailSkeleton.compileHtml(CONTENT, BASE_URL, CODEC, true, true, true);
+		IntFunction<String> before = i -> {
+			String email = "user" + i + "@example.com";
+			return legacyRender(CONTENT, legacyToken(i + "|" + email), legacyToken(i + "|" + email + "|"), true, true, true);
+		};
+		IntFunction<String> after = i -> skeleton.render("user" + i + "@example.com", null, null,
+			TrackingToken.of(1L, 2L, (long) i, (long) i));
+
+		long beforeBytes = bytesPerMessage(threads, before);
+		long afterBytes = bytesPerMessage(threads, after);
+		assertTrue(afterBytes * 2 < beforeBytes,
+			"pre-compiled rendering allocated " + afterBytes + " bytes/message, legacy " + beforeBytes);
+	}
+
+	private static long bytesPerMessage(com.sun.management.ThreadMXBean threads, IntFunction<String> render) {
+		long threadId = Thread.currentThread().getId();
+		int sink = 0;
+		for (int i = 0; i < WARMUP; i++) {
+			sink += render.apply(i).length();
+		}
+		long start = threads.getThreadAllocatedBytes(threadId);
+		for (int i = 0; i < ITERATIONS; i++) {
+			sink += render.apply(i).length();
+		}
+		long allocated = threads.getThreadAllocatedBytes(threadId) - start;
+		assertTrue(sink > 0);
+		return allocated / ITERATIONS;
+	}
+
+	/**
+	 * Per-recipient rendering as EmailServiceImpl did it before bodies were pre-compiled;
+	 * a null token stands for an unknown email event
+	 */
+	private static String legacyRender(String emailContent, String token, String clickToken,
+									   boolean trackOpens, boolean trackClicks, boolean addUnsubscribeLink) {
+		if (!emailContent.trim().toLowerCase().startsWith("<!doctype html") &&
+			!emailContent.trim().toLowerCase().startsWith("<html")) {
+			emailContent = String.format("""
+				<!DOCTYPE html>
+				<html>
+				<head>
+				    <meta charset="UTF-8">
+				    <meta name="viewport" content="width=device-width, initial-scale=1.0">
+				    <style>
+				        body {
+				            font-family: Arial, sans-serif;
+				            line-height: 1.6;
+				            color: #333;
+				            max-width: 600px;
+				            margin: 0 auto;
+				            padding: 20px;
+				        }
+				        img { max-width: 100%%; height: auto; }
+				        a { color: #007bff; text-decoration: none; }
+				        a:hover { text-decoration: underline; }
+				        .footer { margin-top: 30px; font-size: 12px; color: #666; }
+				    </style>
+				</head>
+				<body>
+				    %s
+				</body>
+				</html>
+				""", emailContent);
+		}
+		if (trackOpens && token != null) {
+			String trackingData = token;
+			String trackingPixel = String.format(
+				"<img src='" + BASE_URL + "/open/%s' width='1' height='1' style='display:none;' alt='' />", trackingData);
+			if (emailContent.contains("</body>")) {
+				emailContent = emailContent.replace("</body>", trackingPixel + "</body>");
+			} else {
+				emailContent += trackingPixel;
+			}
+		}
+		if (trackClicks && clickToken != null) {
+			String trackingData = clickToken;
+			emailContent = emailContent.replaceAll("href=['\"]([^'\"]*)['\"]",
+				String.format("href='" + BASE_URL + "/click/%s?url=$1'", trackingData));
+		}
+		if (addUnsubscribeLink && token != null) {
+			String trackingData = token;
+			String unsubscribeLink = String.format(
+				"<div class='footer'><small><a href='" + BASE_URL + "/unsubscribe/%s'>Unsubscribe</a></small></div>",
+				trackingData);
+			emailContent = emailContent.replace("</body>", unsubscribeLink + "</body>");
+		}
+		return emailContent;
+	}
+
+	private static String legacyToken(String data) {
+		return Base64.getEncoder().encodeToString(data.getBytes(StandardCharsets.UTF_8));
+	}
+}
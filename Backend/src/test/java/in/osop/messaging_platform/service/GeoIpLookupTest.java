@@ -0,0 +1,114 @@
+package in.osop.messaging_platform.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Lookups against geoip/fixture.dat, which holds six ranges:
+ * 1.0.0.0/24 AU, 8.8.8.0/24 US, 81.2.69.0/24 GB, 103.21.244.0/22 IN,
+ * 200.0.0.0/8 BR and 223.255.255.0/24 JP.
+ */
+class GeoIpLookupTest {
+
+	private static GeoIpLookup fixture() throws Exception {
+		return new GeoIpLookup(Path.of(GeoIpLookupTest.class.getResource("/geoip/fixture.dat").toURI()).toString());
+	}
+
+	@Test
+	void resolvesAddressesInsideRanges() throws Exception {
+		GeoIpLookup geoIp = fixture();
+		assertTrue(geoIp.isEnabled());
+		assertEquals("AU", geoIp.country("1.0.0.0"));
+		assertEquals("AU", geoIp.country("1.0.0.255"));
+		assertEquals("US", geoIp.country("8.8.8.8"));
+		assertEquals("GB", geoIp.country("81.2.69.160"));
+		assertEquals("IN", geoIp.country("103.21.246.7"));
+		// Above 2^31: ranges compare as unsigned
+		assertEquals("BR", geoIp.country("200.147.3.1"));
+		assertEquals("JP", geoIp.country("223.255.255.255"));
+		assertEquals("US", geoIp.country("::ffff:8.8.8.8"));
+	}
+
+	@Test
+	void returnsNullOutsideRangesAndForUnparseableAddresses() throws Exception {
+		GeoIpLookup geoIp = fixture();
+		assertNull(geoIp.country("0.255.255.255"));
+		assertNull(geoIp.country("1.0.1.0"));
+		assertNull(geoIp.country("8.8.9.1"));
+		assertNull(geoIp.country("201.0.0.0"));
+		assertNull(geoIp.country("255.255.255.255"));
+		assertNull(geoIp.country("2001:4860:4860::8888"));
+		assertNull(geoIp.country("8.8.8"));
+		assertNull(geoIp.country("8.8.8.8.8"));
+		assertNull(geoIp.country("8.8.8.256"));
+		assertNull(geoIp.country("8..8.8"));
+		assertNull(geoIp.country("unknown"));
+		assertNull(geoIp.country(""));
+		assertNull(geoIp.country(null));
+	}
+
+	@Test
+	void sharesCountryCodeInstances() throws Exception {
+		GeoIpLookup geoIp = fixture();
+		assertSame(geoIp.country("8.8.8.8"), geoIp.country("8.8.8.9"));
+	}
+
+	@Test
+	void isDisabledWithoutADatabase() {
+		GeoIpLookup geoIp = new GeoIpLookup("");
+		assertFalse(geoIp.isEnabled());
+		assertNull(geoIp.country("8.8.8.8"));
+	}
+
+	@Test
+	void rejectsFilesThatAreNotADatabase() throws Exception {
+		Path file = Files.createTempFile("geoip", ".dat");
+		try {
+			Files.write(file, new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16});
+			assertThrows(IllegalStateException.class, () -> new GeoIpLookup(file.toString()));
+
+			byte[] truncated = Files.readAllBytes(Path.of(GeoIpLookupTest.class.getResource("/geoip/fixture.dat").toURI()));
+			Files.write(file, Arrays.copyOf(truncated, truncated.length - 1));
+			assertThrows(IllegalStateException.class, () -> new GeoIpLookup(file.toString()));
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	@Test
+	void doesNotAllocatePerLookup() throws Exception {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		if (!threads.isThreadAllocatedMemorySupported()) {
+			return;
+		}
+		threads.setThreadAllocatedMemoryEnabled(true);
+		GeoIpLookup geoIp = fixture();
+		String[] addresses = {"8.8.8.8", "81.2.69.160", "200.147.3.1", "8.8.9.1", "::ffff:1.0.0.7"};
+
+		int hits = 0;
+		for (int i = 0; i < 100_000; i++) {
+			hits += geoIp.country(addresses[i % addresses.length]) != null ? 1 : 0;
+		}
+		long threadId = Thread.currentThread().getId();
+		long start = threads.getThreadAllocatedBytes(threadId);
+		for (int i = 0; i < 1_000_000; i++) {
+			hits += geoIp.country(addresses[i % addresses.length]) != null ? 1 : 0;
+		}
+		long allocated = threads.getThreadAllocatedBytes(threadId) - start;
+
+		assertTrue(hits > 0);
+		// Allows for the odd allocation by the JVM itself, far below a byte per lookup
+		assertTrue(allocated < 64 * 1024, "1M lookups allocated " + allocated + " bytes");
+	}
+}
@@ -0,0 +1,50 @@
+package in.osop.messaging_platform.service;
+
+import in.osop.messaging_platform.model.EmailEventType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Side effects of ingested tracking events, with the database mocked out.
+ */
+class TrackingEventIngestTest {
+
+	private static final long CAMPAIGN_ID = 9L;
+
+	private final CampaignCounterAggregator campaignCounterAggregator = mock(CampaignCounterAggregator.class);
+	private final EmailDeliveryTrackingService emailDeliveryTrackingService = mock(EmailDeliveryTrackingService.class);
+
+	@Test
+	void failedSideEffectDoesNotSkipTheRestOfTheBatch() throws Exception {
+		UserAgentClassifier classifier = new UserAgentClassifier();
+		ReflectionTestUtils.setField(classifier, "maxEntries", 16);
+		TrackingEventIngest ingest = new TrackingEventIngest(mock(JdbcTemplate.class), campaignCounterAggregator,
+			mock(UniqueEngagementTracker.class), classifier, new GeoIpLookup(""), emailDeliveryTrackingService,
+			new SimpleMeterRegistry());
+		ReflectionTestUtils.setField(ingest, "consumers", 1);
+		ReflectionTestUtils.setField(ingest, "ringCapacity", 64);
+		ReflectionTestUtils.setField(ingest, "batchSize", 16);
+		ReflectionTestUtils.setField(ingest, "flushIntervalMs", 1000L);
+		ingest.start();
+
+		doThrow(new IllegalStateException("event 1 is gone"))
+			.when(emailDeliveryTrackingService).trackEmailOpen(eq(1L), any(), any());
+		for (long eventId = 1; eventId <= 3; eventId++) {
+			ingest.publish(TrackingEvent.opened(TrackingToken.of(1L, CAMPAIGN_ID, eventId, eventId), "10.0.0.1", null));
+		}
+		ingest.shutdown();
+
+		verify(campaignCounterAggregator, times(3)).record(CAMPAIGN_ID, EmailEventType.OPENED);
+		verify(emailDeliveryTrackingService, times(3)).trackEmailOpen(anyLong(), any(), any());
+	}
+}
@@ -0,0 +1,56 @@
+package in.osop.messaging_platform.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TrackingTokenCodecTest {
+
+	private static final TrackingTokenCodec CODEC = new TrackingTokenCodec("test-secret-test-secret-test-secret-0123");
+	private static final TrackingToken TOKEN = TrackingToken.of(1L, 22L, 333L, 4444L);
+	private static final String TARGET = "https://shop.example.com/sale";
+
+	@Test
+	void roundTripsOpenAndLinkTokens() {
+		assertEquals(Optional.of(TOKEN), CODEC.decode(CODEC.encode(TOKEN, null), null));
+		TrackingToken link = TOKEN.forLink(3);
+		assertEquals(Optional.of(link), CODEC.decode(CODEC.encode(link, TARGET), TARGET));
+	}
+
+	@Test
+	void linkTokenOnlyVerifiesForItsTarget() {
+		String encoded = CODEC.encode(TOKEN.forLink(1), TARGET);
+		assertEquals(Optional.empty(), CODEC.decode(encoded, "https://evil.example/"));
+		assertEquals(Optional.empty(), CODEC.decode(encoded, null));
+	}
+
+	@Test
+	void openTokenFailsClickVerification() {
+		// Every email carries its open pixel and unsubscribe token; neither may pass as a click
+		String encoded = CODEC.encode(TOKEN, null);
+		assertEquals(Optional.empty(), CODEC.decode(encoded, "https://evil.example/"));
+		assertEquals(Optional.empty(), CODEC.decode(encoded, TARGET));
+		assertEquals(Optional.empty(), CODEC.decode(CODEC.encode(TOKEN, TARGET), TARGET));
+	}
+
+	@Test
+	void rejectsTamperedAndMalformedTokens() {
+		String encoded = CODEC.encode(TOKEN, null);
+		char flipped = encoded.charAt(3) == 'A' ? 'B' : 'A';
+		assertEquals(Optional.empty(), CODEC.decode(encoded.substring(0, 3) + flipped + encoded.substring(4), null));
+		assertEquals(Optional.empty(), CODEC.decode(encoded.substring(1), null));
+		assertEquals(Optional.empty(), CODEC.decode("not*base64url*at*all", null));
+		assertEquals(Optional.empty(), CODEC.decode("", null));
+		assertEquals(Optional.empty(), CODEC.decode(null, null));
+		TrackingTokenCodec otherKey = new TrackingTokenCodec("another-secret-another-secret-0123456789");
+		assertEquals(Optional.empty(), otherKey.decode(encoded, null));
+	}
+
+	@Test
+	void requiresALongSecret() {
+		assertThrows(IllegalStateException.class, () -> new TrackingTokenCodec("too-short"));
+	}
+}
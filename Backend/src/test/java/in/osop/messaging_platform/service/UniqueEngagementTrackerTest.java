@@ -0,0 +1,107 @@
+package in.osop.messaging_platform.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tracking hits on their way from the ingest into the per-campaign bitmaps,
+ * with the database mocked out: nothing is stored yet for the campaign.
+ */
+class UniqueEngagementTrackerTest {
+
+	private static final long TENANT_ID = 1L;
+	private static final long CAMPAIGN_ID = 9L;
+	private static final String TARGET = "https://shop.example.com/sale";
+
+	private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+	private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+
+	private UniqueEngagementTracker tracker;
+	private TrackingEventIngest ingest;
+
+	@BeforeEach
+	void setUp() {
+		tracker = new UniqueEngagementTracker(jdbcTemplate, transactionTemplate);
+		ReflectionTestUtils.setField(tracker, "idleMinutes", 30L);
+
+		UserAgentClassifier classifier = new UserAgentClassifier();
+		ReflectionTestUtils.setField(classifier, "maxEntries", 16);
+		ingest = new TrackingEventIngest(jdbcTemplate, mock(CampaignCounterAggregator.class), tracker, classifier,
+			new GeoIpLookup(""), mock(EmailDeliveryTrackingService.class), new SimpleMeterRegistry());
+		ReflectionTestUtils.setField(ingest, "consumers", 1);
+		ReflectionTestUtils.setField(ingest, "ringCapacity", 64);
+		ReflectionTestUtils.setField(ingest, "batchSize", 16);
+		ReflectionTestUtils.setField(ingest, "flushIntervalMs", 10L);
+		ingest.start();
+	}
+
+	@Test
+	void countsEachSubscriberOncePerCampaign() throws Exception {
+		TrackingEvent firstOpen = TrackingEvent.opened(campaignToken(100L), "10.0.0.1", null);
+		TrackingEvent reopen = TrackingEvent.opened(campaignToken(100L), "10.0.0.1", null);
+		TrackingEvent otherOpen = TrackingEvent.opened(campaignToken(200L), "10.0.0.2", null);
+		// Clicked with the pixel blocked: still counts as an open
+		TrackingEvent click = TrackingEvent.clicked(campaignToken(300L).forLink(1), TARGET, "10.0.0.3", null);
+		TrackingEvent reclick = TrackingEvent.clicked(campaignToken(300L).forLink(1), TARGET, "10.0.0.3", null);
+		for (TrackingEvent event : List.of(firstOpen, reopen, otherOpen, click, reclick)) {
+			assertTrue(ingest.publish(event));
+		}
+		ingest.shutdown();
+
+		assertTrue(firstOpen.isUnique());
+		assertFalse(reopen.isUnique());
+		assertTrue(otherOpen.isUnique());
+		assertTrue(click.isUnique());
+		assertFalse(reclick.isUnique());
+
+		assertEquals(3, tracker.getUniqueOpens(CAMPAIGN_ID));
+		assertEquals(1, tracker.getUniqueClicks(CAMPAIGN_ID));
+		assertEquals(100.0 / 3, tracker.getClickToOpenRate(CAMPAIGN_ID), 1e-9);
+	}
+
+	@Test
+	void eventsWithoutCampaignOrSubscriberAreNotTracked() throws Exception {
+		TrackingEvent apiOpen = TrackingEvent.opened(TrackingToken.of(TENANT_ID, null, 100L, 5L), "10.0.0.1", null);
+		TrackingEvent anonymousOpen = TrackingEvent.opened(TrackingToken.of(TENANT_ID, CAMPAIGN_ID, null, null), "10.0.0.1", null);
+		ingest.publish(apiOpen);
+		ingest.publish(anonymousOpen);
+		ingest.shutdown();
+
+		assertTrue(apiOpen.isUnique());
+		assertTrue(anonymousOpen.isUnique());
+		assertEquals(0, tracker.getUniqueOpens(CAMPAIGN_ID));
+	}
+
+	@Test
+	void flushStoresTheBitmapWithItsCardinality() throws Exception {
+		when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+			invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+		ingest.publish(TrackingEvent.opened(campaignToken(100L), "10.0.0.1", null));
+		ingest.publish(TrackingEvent.opened(campaignToken(200L), "10.0.0.2", null));
+		ingest.shutdown();
+
+		tracker.flush();
+		verify(jdbcTemplate).update(anyString(), eq(CAMPAIGN_ID), eq("OPENED"), any(byte[].class), eq(2L), any());
+	}
+
+	private static TrackingToken campaignToken(long subscriberId) {
+		return TrackingToken.of(TENANT_ID, CAMPAIGN_ID, subscriberId, null);
+	}
+}
@@ -0,0 +1,36 @@
+package in.osop.messaging_platform.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Device type, client and OS of the user agents mail clients and proxies send.
+ */
+class UserAgentClassifierTest {
+
+	private final UserAgentClassifier classifier = new UserAgentClassifier();
+
+	{
+		ReflectionTestUtils.setField(classifier, "maxEntries", 16);
+	}
+
+	@Test
+	void classifiesChromeOsByItsPlatformToken() {
+		UserAgentClassifier.Classification chromebook = classifier.classify(
+			"Mozilla/5.0 (X11; CrOS x86_64 14541.0.0) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.0.0 Safari/537.36");
+		assertEquals("Desktop", chromebook.getDeviceType());
+		assertEquals("Chrome", chromebook.getClient());
+		assertEquals("Chrome OS", chromebook.getOs());
+	}
+
+	@Test
+	void microsoftIsNotChromeOs() {
+		UserAgentClassifier.Classification outlook = classifier.classify(
+			"Microsoft Office/16.0 (Microsoft Outlook 16.0.4266; Pro)");
+		assertEquals(UserAgentClassifier.UNKNOWN, outlook.getDeviceType());
+		assertEquals("Outlook", outlook.getClient());
+		assertEquals(UserAgentClassifier.UNKNOWN, outlook.getOs());
+	}
+}